@@ -1,7 +1,10 @@
 package i5.las2peer.api;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import i5.las2peer.api.exceptions.ArtifactNotFoundException;
 import i5.las2peer.api.exceptions.RemoteServiceException;
@@ -13,6 +16,7 @@ import i5.las2peer.p2p.AgentNotKnownException;
 import i5.las2peer.p2p.Node;
 import i5.las2peer.persistency.DecodingFailedException;
 import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeFetchResult;
 import i5.las2peer.security.Agent;
 import i5.las2peer.security.AgentLockedException;
 import i5.las2peer.security.GroupAgent;
@@ -174,6 +178,14 @@ public interface Context {
 
 	public Envelope fetchEnvelope(String identifier) throws StorageException;
 
+	/**
+	 * Fetches the latest versions for the given identifiers concurrently and waits for all of them.
+	 * 
+	 * @param identifiers The unique identifiers of the Envelopes.
+	 * @return Returns the fetched Envelope or the exception that prevented fetching it for each identifier.
+	 */
+	public Map<String, EnvelopeFetchResult> fetchEnvelopes(Collection<String> identifiers);
+
 	public Envelope createEnvelope(String identifier, Serializable content, Agent... reader)
 			throws IllegalArgumentException, SerializationException, CryptoException;
 
@@ -197,11 +209,28 @@ public interface Context {
 	public void storeEnvelopeAsync(Envelope envelope, Agent author, StorageStoreResultHandler resultHandler,
 			StorageCollisionHandler collisionHandler, StorageExceptionHandler exceptionHandler);
 
+	/**
+	 * Stores the given Envelope without blocking the calling thread.
+	 * 
+	 * @param envelope The Envelope to store in the network.
+	 * @param author The author that is used to sign the content.
+	 * @return Returns a future that completes when the Envelope is stored.
+	 */
+	public CompletableFuture<Void> storeEnvelopeAsync(Envelope envelope, Agent author);
+
 	public Envelope fetchEnvelope(String identifier, long timeoutMs) throws StorageException;
 
 	public void fetchEnvelopeAsync(String identifier, StorageEnvelopeHandler envelopeHandler,
 			StorageExceptionHandler exceptionHandler);
 
+	/**
+	 * Fetches the latest version for the given identifier without blocking the calling thread.
+	 * 
+	 * @param identifier An unique identifier for the Envelope.
+	 * @return Returns a future that completes with the fetched Envelope.
+	 */
+	public CompletableFuture<Envelope> fetchEnvelopeAsync(String identifier);
+
 	public Envelope createEnvelope(String identifier, Serializable content) throws IllegalArgumentException,
 			SerializationException, CryptoException;
 
@@ -6,6 +6,12 @@ import java.util.Comparator;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+/**
+ * request for the methods of a service and the answer listing them
+ * 
+ * Answers for a class are built once by {@link #forClass(Class)} and shared afterwards, since reflecting over a service
+ * class on every request is expensive.
+ */
 public class ListMethodsContent implements Serializable {
 
 	public class MethodComparator implements Comparator<String[]>, Serializable {
@@ -35,6 +41,18 @@ public class ListMethodsContent implements Serializable {
 	 */
 	private static final long serialVersionUID = -8167152562828966791L;
 
+	private static final ClassValue<ListMethodsContent> classMethods = new ClassValue<ListMethodsContent>() {
+		@Override
+		protected ListMethodsContent computeValue(Class<?> cls) {
+			ListMethodsContent result = new ListMethodsContent(false);
+			for (Method method : cls.getMethods()) {
+				result.addMethod(method);
+			}
+			result.finalize();
+			return result;
+		}
+	};
+
 	private TreeMap<String, TreeSet<String[]>> htMethodDescriptions = null;
 
 	private boolean bFinalized = false;
@@ -61,6 +79,18 @@ public class ListMethodsContent implements Serializable {
 		}
 	}
 
+	/**
+	 * get the finalized response listing all public methods of the given class
+	 * 
+	 * The listing is computed once per class and shared, it must not be modified.
+	 * 
+	 * @param cls
+	 * @return response containing the methods of the class
+	 */
+	public static ListMethodsContent forClass(Class<?> cls) {
+		return classMethods.get(cls);
+	}
+
 	/**
 	 * add a method to this response
 	 * 
@@ -0,0 +1,71 @@
+package i5.las2peer.communication;
+
+import java.io.Serializable;
+
+/**
+ * the load of a node, attached to RMI responses, discovery answers and service announcements
+ *
+ * Callers use it to prefer less loaded instances of a service.
+ */
+public class LoadDescriptor implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * cpu load of the node, between 0 and 1
+	 */
+	private final float cpuLoad;
+
+	/**
+	 * number of service invocations currently executed at the node
+	 */
+	private final int executing;
+
+	/**
+	 * number of service invocations waiting for execution at the node
+	 */
+	private final int queued;
+
+	/**
+	 * create a load descriptor
+	 *
+	 * @param cpuLoad
+	 * @param executing
+	 * @param queued
+	 */
+	public LoadDescriptor(double cpuLoad, int executing, int queued) {
+		this.cpuLoad = (float) cpuLoad;
+		this.executing = executing;
+		this.queued = queued;
+	}
+
+	public double getCpuLoad() {
+		return cpuLoad;
+	}
+
+	public int getExecuting() {
+		return executing;
+	}
+
+	public int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * a single value for the load, 0 for an idle node
+	 *
+	 * The cpu load is added to the number of waiting invocations per running invocation, so a node with a growing
+	 * queue is considered hot even if its cpu is not saturated.
+	 *
+	 * @return load value, higher is more loaded
+	 */
+	public double getPressure() {
+		return cpuLoad + (double) queued / (executing + 1);
+	}
+
+	@Override
+	public String toString() {
+		return "cpu=" + cpuLoad + ", executing=" + executing + ", queued=" + queued;
+	}
+
+}
@@ -368,6 +368,41 @@ public class Message implements XmlAble, Cloneable {
 		finalizeConstructor();
 	}
 
+	/**
+	 * Generate a new message in response to a topic message. Since a topic message has no single recipient, the
+	 * sender of the response has to be given.
+	 * 
+	 * @param responseTo
+	 * @param from
+	 * @param data
+	 * @param timeoutMs
+	 * @throws EncodingFailedException
+	 * @throws L2pSecurityException the private key of the sender is not accessible for signing
+	 * @throws SerializationException
+	 */
+	public Message(Message responseTo, Agent from, Serializable data, long timeoutMs) throws EncodingFailedException,
+			L2pSecurityException, SerializationException {
+		if (!responseTo.isOpen()) {
+			throw new IllegalStateException("the original message has to be open to create a response to it!");
+		}
+
+		if (from == null) {
+			throw new IllegalArgumentException("null not allowed as sender!");
+		}
+
+		sender = from;
+		senderId = from.getId();
+		recipient = responseTo.getSender();
+		recipientId = responseTo.getSenderId();
+
+		validMs = timeoutMs;
+		content = data;
+
+		responseToId = responseTo.getId();
+
+		finalizeConstructor();
+	}
+
 	/**
 	 * Generate a new message in response to the given one. Sender and recipient will be derived from the given message.
 	 * 
@@ -707,6 +742,34 @@ public class Message implements XmlAble, Cloneable {
 		}
 	}
 
+	/**
+	 * get the class of the content of a topic message without opening it
+	 * 
+	 * The class name is taken from the unverified content block, so it may only be used to decide whether to open
+	 * the message.
+	 * 
+	 * @return canonical class name of the content or null, if this is no topic message or the class is not given
+	 */
+	public String getTopicContentClass() {
+		if (!isTopic() || baEncryptedContent == null) {
+			return null;
+		}
+		// topic messages are not encrypted, the class is an attribute of the root element
+		String head = new String(baEncryptedContent, 0, Math.min(baEncryptedContent.length, 1024),
+				StandardCharsets.UTF_8);
+		int end = head.indexOf('>');
+		int start = head.indexOf(" class=\"");
+		if (start < 0 || (end >= 0 && start > end)) {
+			return null;
+		}
+		start += 8;
+		int close = head.indexOf('"', start);
+		if (close < 0) {
+			return null;
+		}
+		return head.substring(start, close);
+	}
+
 	/**
 	 * close this message (envelope)
 	 */
@@ -16,6 +16,11 @@ public class RMIExceptionContent implements Serializable {
 	private static final long serialVersionUID = -3811848605195392152L;
 	private Exception exception;
 
+	/**
+	 * load of the answering node
+	 */
+	private LoadDescriptor load;
+
 	public RMIExceptionContent(Exception content) {
 		exception = content;
 	}
@@ -24,4 +29,17 @@ public class RMIExceptionContent implements Serializable {
 		return exception;
 	}
 
+	/**
+	 * the load of the answering node
+	 * 
+	 * @return load or null, if the answering node did not report its load
+	 */
+	public LoadDescriptor getLoad() {
+		return load;
+	}
+
+	public void setLoad(LoadDescriptor load) {
+		this.load = load;
+	}
+
 }
@@ -16,6 +16,11 @@ public class RMIResultContent implements Serializable {
 	private static final long serialVersionUID = -4804271575347018920L;
 	private Serializable content;
 
+	/**
+	 * load of the answering node
+	 */
+	private LoadDescriptor load;
+
 	public RMIResultContent(Serializable content) {
 		this.content = content;
 	}
@@ -24,4 +29,17 @@ public class RMIResultContent implements Serializable {
 		return content;
 	}
 
+	/**
+	 * the load of the answering node
+	 * 
+	 * @return load or null, if the answering node did not report its load
+	 */
+	public LoadDescriptor getLoad() {
+		return load;
+	}
+
+	public void setLoad(LoadDescriptor load) {
+		this.load = load;
+	}
+
 }
@@ -0,0 +1,81 @@
+package i5.las2peer.communication;
+
+import java.io.Serializable;
+
+import i5.las2peer.p2p.ServiceNameVersion;
+
+/**
+ * periodically published by a service agent to announce that it is running at the sending node
+ *
+ * The content is sent as topic message signed by the service agent itself, so receivers can check that the announced
+ * service belongs to the sender.
+ */
+public class ServiceAnnouncementContent implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * the announced service's name and version
+	 */
+	private ServiceNameVersion service;
+
+	/**
+	 * load of the sending node
+	 */
+	private LoadDescriptor load;
+
+	/**
+	 * indicates if the service has been stopped at the sending node
+	 */
+	private boolean withdrawn;
+
+	/**
+	 * creates an announcement
+	 *
+	 * @param service
+	 * @param load
+	 */
+	public ServiceAnnouncementContent(ServiceNameVersion service, LoadDescriptor load) {
+		this.service = service;
+		this.load = load;
+		this.withdrawn = false;
+	}
+
+	/**
+	 * creates a withdrawal, i.e. the service is no longer available at the sending node
+	 *
+	 * @param service
+	 */
+	public ServiceAnnouncementContent(ServiceNameVersion service) {
+		this.service = service;
+		this.withdrawn = true;
+	}
+
+	/**
+	 * the announced service
+	 *
+	 * @return
+	 */
+	public ServiceNameVersion getService() {
+		return service;
+	}
+
+	/**
+	 * load of the sending node
+	 *
+	 * @return load or null for a withdrawal
+	 */
+	public LoadDescriptor getLoad() {
+		return load;
+	}
+
+	/**
+	 * check if the service has been stopped
+	 *
+	 * @return
+	 */
+	public boolean isWithdrawn() {
+		return withdrawn;
+	}
+
+}
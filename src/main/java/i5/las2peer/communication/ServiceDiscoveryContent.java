@@ -1,9 +1,18 @@
 package i5.las2peer.communication;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import i5.las2peer.p2p.ServiceNameVersion;
 
+/**
+ * request for the instances of a service and the answers to it
+ * 
+ * A node answers a request once for all of its matching service agents, so a response may contain several instances.
+ */
 public class ServiceDiscoveryContent implements Serializable {
 	/**
 	 * 
@@ -20,6 +29,11 @@ public class ServiceDiscoveryContent implements Serializable {
 	 */
 	private boolean exact;
 
+	/**
+	 * indicates if the method listings of the services are requested
+	 */
+	private boolean includeMethods;
+
 	/**
 	 * the service agent's id
 	 */
@@ -30,6 +44,22 @@ public class ServiceDiscoveryContent implements Serializable {
 	 */
 	private ServiceNameVersion service;
 
+	/**
+	 * all matching instances of the answering node, mapped from service agent id to service (aggregated responses
+	 * only)
+	 */
+	private LinkedHashMap<Long, ServiceNameVersion> instances;
+
+	/**
+	 * load of the answering node (responses only)
+	 */
+	private LoadDescriptor load;
+
+	/**
+	 * method listings of the instances, if requested (responses only)
+	 */
+	private HashMap<Long, ListMethodsContent> methods;
+
 	/**
 	 * creates a request
 	 * 
@@ -37,9 +67,21 @@ public class ServiceDiscoveryContent implements Serializable {
 	 * @param exact
 	 */
 	public ServiceDiscoveryContent(ServiceNameVersion requestedService, boolean exact) {
+		this(requestedService, exact, false);
+	}
+
+	/**
+	 * creates a request, optionally asking for the methods of the found services
+	 * 
+	 * @param requestedService
+	 * @param exact
+	 * @param includeMethods
+	 */
+	public ServiceDiscoveryContent(ServiceNameVersion requestedService, boolean exact, boolean includeMethods) {
 		this.request = true;
 		this.service = requestedService;
 		this.exact = exact;
+		this.includeMethods = includeMethods;
 	}
 
 	/**
@@ -49,9 +91,36 @@ public class ServiceDiscoveryContent implements Serializable {
 	 * @param serviceNameVersion
 	 */
 	public ServiceDiscoveryContent(long agentId, ServiceNameVersion serviceNameVersion) {
+		this(agentId, serviceNameVersion, null);
+	}
+
+	/**
+	 * creates a response containing the load of the answering node
+	 * 
+	 * @param agentId
+	 * @param serviceNameVersion
+	 * @param load
+	 */
+	public ServiceDiscoveryContent(long agentId, ServiceNameVersion serviceNameVersion, LoadDescriptor load) {
 		this.agentId = agentId;
 		this.request = false;
 		this.service = serviceNameVersion;
+		this.load = load;
+	}
+
+	/**
+	 * creates a response containing all matching instances of the answering node
+	 * 
+	 * @param instances service agent ids mapped to the services they are running, must not be empty
+	 * @param load
+	 */
+	public ServiceDiscoveryContent(Map<Long, ServiceNameVersion> instances, LoadDescriptor load) {
+		this.request = false;
+		this.instances = new LinkedHashMap<>(instances);
+		Map.Entry<Long, ServiceNameVersion> first = this.instances.entrySet().iterator().next();
+		this.agentId = first.getKey();
+		this.service = first.getValue();
+		this.load = load;
 	}
 
 	/**
@@ -81,6 +150,67 @@ public class ServiceDiscoveryContent implements Serializable {
 		return service;
 	}
 
+	/**
+	 * check if the method listings of the found services are requested
+	 * 
+	 * @return
+	 */
+	public boolean isIncludeMethods() {
+		return includeMethods;
+	}
+
+	/**
+	 * attach the method listing of an instance to this response
+	 * 
+	 * @param agentId
+	 * @param methodList
+	 */
+	public void addMethods(long agentId, ListMethodsContent methodList) {
+		if (request) {
+			throw new IllegalStateException("method listings can only be added to a response");
+		}
+		if (methods == null) {
+			methods = new HashMap<>();
+		}
+		methods.put(agentId, methodList);
+	}
+
+	/**
+	 * the method listing of an instance contained in this response
+	 * 
+	 * @param agentId
+	 * @return method listing or null, if it has not been requested
+	 */
+	public ListMethodsContent getMethods(long agentId) {
+		if (methods == null) {
+			return null;
+		}
+		return methods.get(agentId);
+	}
+
+	/**
+	 * all instances contained in this response
+	 * 
+	 * @return service agent ids mapped to the services they are running
+	 */
+	public Map<Long, ServiceNameVersion> getInstances() {
+		if (request) {
+			return Collections.emptyMap();
+		} else if (instances == null) {
+			return Collections.singletonMap(agentId, service);
+		}
+		return Collections.unmodifiableMap(instances);
+	}
+
+	/**
+	 * the load of the answering node
+	 * 
+	 * @return load or null, if this is a request or the node did not report its load
+	 */
+	public LoadDescriptor getLoad() {
+		return load;
+	}
+
 	/**
 	 * checks if the service is accepted by this request
 	 * 
@@ -1,7 +1,10 @@
 package i5.las2peer.execution;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import i5.las2peer.api.Context;
 import i5.las2peer.api.Service;
@@ -18,6 +21,7 @@ import i5.las2peer.p2p.AgentNotKnownException;
 import i5.las2peer.p2p.Node;
 import i5.las2peer.persistency.DecodingFailedException;
 import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeFetchResult;
 import i5.las2peer.security.Agent;
 import i5.las2peer.security.AgentContext;
 import i5.las2peer.security.AgentLockedException;
@@ -44,6 +48,8 @@ public class L2pThread extends Thread implements Context {
 
 	private boolean bFinished = false;
 
+	private final CompletableFuture<L2pThread> completion = new CompletableFuture<>();
+
 	/**
 	 * Gets the current las2peer context.
 	 * 
@@ -110,9 +116,24 @@ public class L2pThread extends Thread implements Context {
 			bFinished = true;
 		} catch (Exception e) {
 			exception = e;
+		} finally {
+			completion.complete(this);
 		}
 	}
 
+	/**
+	 * get a future that completes when the execution of this task is finished (either successfully or with an
+	 * exception)
+	 * 
+	 * Dependent actions registered on the future run at the end of this thread, unless the future is already
+	 * completed. The future completes exceptionally, if the task is never executed.
+	 * 
+	 * @return the completion of this task
+	 */
+	public CompletableFuture<L2pThread> getCompletion() {
+		return completion;
+	}
+
 	/**
 	 * is the execution of this task finished (either successfully or with an exception)
 	 * 
@@ -245,6 +266,11 @@ public class L2pThread extends Thread implements Context {
 		return callerContext.fetchEnvelope(identifier);
 	}
 
+	@Override
+	public Map<String, EnvelopeFetchResult> fetchEnvelopes(Collection<String> identifiers) {
+		return callerContext.fetchEnvelopes(identifiers);
+	}
+
 	@Override
 	public Envelope createEnvelope(String identifier, Serializable content, Agent... reader)
 			throws IllegalArgumentException, SerializationException, CryptoException {
@@ -292,6 +318,11 @@ public class L2pThread extends Thread implements Context {
 		callerContext.storeEnvelopeAsync(envelope, author, resultHandler, collisionHandler, exceptionHandler);
 	}
 
+	@Override
+	public CompletableFuture<Void> storeEnvelopeAsync(Envelope envelope, Agent author) {
+		return callerContext.storeEnvelopeAsync(envelope, author);
+	}
+
 	@Override
 	public Envelope fetchEnvelope(String identifier, long timeoutMs) throws StorageException {
 		return callerContext.fetchEnvelope(identifier, timeoutMs);
@@ -303,6 +334,11 @@ public class L2pThread extends Thread implements Context {
 		callerContext.fetchEnvelopeAsync(identifier, envelopeHandler, exceptionHandler);
 	}
 
+	@Override
+	public CompletableFuture<Envelope> fetchEnvelopeAsync(String identifier) {
+		return callerContext.fetchEnvelopeAsync(identifier);
+	}
+
 	@Override
 	public Envelope createEnvelope(String identifier, Serializable content) throws IllegalArgumentException,
 			SerializationException, CryptoException {
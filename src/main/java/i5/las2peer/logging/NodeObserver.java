@@ -58,6 +58,9 @@ public interface NodeObserver {
 		RMI_SENT(4000), // All at the sending node
 		RMI_SUCCESSFUL(4100),
 		RMI_FAILED(-4100),
+		RMI_CIRCUIT_CLOSED(4200), // circuit breaker of a remote service instance
+		RMI_CIRCUIT_HALF_OPEN(4210),
+		RMI_CIRCUIT_OPENED(-4200),
 
 		MESSAGE_RECEIVED(5000),
 		MESSAGE_RECEIVED_ANSWER(5001),
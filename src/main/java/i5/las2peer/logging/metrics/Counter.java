@@ -0,0 +1,43 @@
+package i5.las2peer.logging.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter, cheap to increment from many threads.
+ *
+ */
+public class Counter {
+
+	private final LongAdder value = new LongAdder();
+
+	/**
+	 * increment this counter by one
+	 */
+	public void inc() {
+		value.increment();
+	}
+
+	/**
+	 * increment this counter by the given amount
+	 * 
+	 * @param amount
+	 */
+	public void add(long amount) {
+		value.add(amount);
+	}
+
+	/**
+	 * get the current value
+	 * 
+	 * @return current value of this counter
+	 */
+	public long get() {
+		return value.sum();
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+
+}
@@ -0,0 +1,118 @@
+package i5.las2peer.logging.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds.
+ * 
+ * Values are collected in buckets of powers of two, so percentiles are upper bounds with a precision of a factor of two.
+ * Recording a value is lock free and does not allocate.
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * record a latency
+	 * 
+	 * @param nanos latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos) - 1 + (nanos == 0 ? 1 : 0));
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * record the time passed since the given start
+	 * 
+	 * @param startNanos start time as given by {@link System#nanoTime()}
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * get the number of recorded values
+	 * 
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * get the mean of all recorded values
+	 * 
+	 * @return mean latency in nanoseconds
+	 */
+	public long getMean() {
+		long n = count.sum();
+		return (n == 0) ? 0 : sum.sum() / n;
+	}
+
+	/**
+	 * get the maximum of all recorded values
+	 * 
+	 * @return maximum latency in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * get an upper bound for the given percentile
+	 * 
+	 * @param percentile between 0 and 100
+	 * @return upper bound of the percentile in nanoseconds
+	 */
+	public long getPercentile(double percentile) {
+		long n = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			n += snapshot[i];
+		}
+		if (n == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(n * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= threshold && snapshot[i] > 0) {
+				return Math.min((i == BUCKETS - 1) ? Long.MAX_VALUE : (1L << (i + 1)) - 1, getMax());
+			}
+		}
+		return getMax();
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " mean=" + formatNanos(getMean()) + " p50<=" + formatNanos(getPercentile(50))
+				+ " p99<=" + formatNanos(getPercentile(99)) + " max=" + formatNanos(getMax());
+	}
+
+	private static String formatNanos(long nanos) {
+		if (nanos < 10000) {
+			return nanos + "ns";
+		} else if (nanos < 10000000) {
+			return (nanos / 1000) + "us";
+		}
+		return (nanos / 1000000) + "ms";
+	}
+
+}
@@ -0,0 +1,127 @@
+package i5.las2peer.logging.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A lightweight registry of named counters, gauges and latency histograms.
+ *
+ * Metrics are created on first access and live as long as the registry. Callers on hot paths should keep a reference
+ * to the metric instead of looking it up by name for each event.
+ *
+ */
+public class MetricsRegistry {
+
+	private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * get (or create) the counter with the given name
+	 *
+	 * @param name
+	 * @return a counter
+	 */
+	public Counter counter(String name) {
+		Counter result = counters.get(name);
+		if (result == null) {
+			result = counters.computeIfAbsent(name, n -> new Counter());
+		}
+		return result;
+	}
+
+	/**
+	 * get (or create) the latency histogram with the given name
+	 *
+	 * @param name
+	 * @return a histogram
+	 */
+	public LatencyHistogram histogram(String name) {
+		LatencyHistogram result = histograms.get(name);
+		if (result == null) {
+			result = histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+		}
+		return result;
+	}
+
+	/**
+	 * register a gauge, an already registered gauge of the same name is replaced
+	 *
+	 * @param name
+	 * @param gauge supplier of the current value, called on each read
+	 */
+	public void gauge(String name, LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * remove a gauge
+	 *
+	 * @param name
+	 */
+	public void removeGauge(String name) {
+		gauges.remove(name);
+	}
+
+	/**
+	 * get the current values of all counters
+	 *
+	 * @return counter values sorted by name
+	 */
+	public Map<String, Long> getCounters() {
+		TreeMap<String, Long> result = new TreeMap<>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().get());
+		}
+		return result;
+	}
+
+	/**
+	 * get the current values of all gauges
+	 *
+	 * @return gauge values sorted by name
+	 */
+	public Map<String, Long> getGauges() {
+		TreeMap<String, Long> result = new TreeMap<>();
+		for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().getAsLong());
+		}
+		return result;
+	}
+
+	/**
+	 * get all histograms
+	 *
+	 * @return histograms sorted by name
+	 */
+	public Map<String, LatencyHistogram> getHistograms() {
+		return new TreeMap<>(histograms);
+	}
+
+	/**
+	 * get a human readable report of all metrics
+	 *
+	 * @return one line per metric
+	 */
+	public String toReport() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Long> entry : getCounters().entrySet()) {
+			sb.append("counter   ").append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+		}
+		for (Map.Entry<String, Long> entry : getGauges().entrySet()) {
+			sb.append("gauge     ").append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+		}
+		for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+			sb.append("histogram ").append(entry.getKey()).append(" : ").append(entry.getValue()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toReport();
+	}
+
+}
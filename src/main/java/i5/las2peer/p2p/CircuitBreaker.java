@@ -0,0 +1,142 @@
+package i5.las2peer.p2p;
+
+/**
+ * circuit breaker for the invocations of a single remote service instance
+ *
+ * After {@link #getFailureThreshold()} consecutive failures (timeouts or unreachable nodes) the breaker opens and the
+ * instance is skipped. After the cooldown one trial invocation is let through (half open). If it succeeds, the breaker
+ * closes again, otherwise it stays open for another cooldown. If the trial does not report back within the cooldown,
+ * another trial is allowed.
+ */
+public class CircuitBreaker {
+
+	/**
+	 * the states of a circuit breaker
+	 */
+	public enum State {
+		/**
+		 * invocations are passed
+		 */
+		CLOSED,
+		/**
+		 * invocations are blocked
+		 */
+		OPEN,
+		/**
+		 * a single trial invocation is running
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * receives the state changes of a circuit breaker
+	 */
+	public interface Listener {
+		void stateChanged(CircuitBreaker breaker, State from, State to);
+	}
+
+	private final int failureThreshold;
+	private final long cooldownMs;
+	private final Listener listener;
+
+	private State state = State.CLOSED;
+	private int failures = 0;
+	private long changedAt;
+
+	/**
+	 * create a closed circuit breaker
+	 *
+	 * @param failureThreshold number of consecutive failures opening the breaker
+	 * @param cooldownMs time before a trial invocation is allowed
+	 * @param listener notified about state changes, may be null
+	 */
+	public CircuitBreaker(int failureThreshold, long cooldownMs, Listener listener) {
+		this.failureThreshold = failureThreshold;
+		this.cooldownMs = cooldownMs;
+		this.listener = listener;
+	}
+
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * check if an invocation could be passed, without reserving the trial invocation
+	 *
+	 * @return true if the breaker is closed or a trial invocation is due
+	 */
+	public synchronized boolean isAvailable() {
+		return state == State.CLOSED || cooldownOver();
+	}
+
+	/**
+	 * ask for permission to invoke the instance, an open breaker whose cooldown is over switches to half open
+	 *
+	 * @return true if the invocation may be sent
+	 */
+	public boolean tryAcquire() {
+		State from;
+		synchronized (this) {
+			if (state == State.CLOSED) {
+				return true;
+			} else if (!cooldownOver()) {
+				return false;
+			}
+			from = state;
+			state = State.HALF_OPEN;
+			changedAt = System.currentTimeMillis();
+		}
+		if (from != State.HALF_OPEN) {
+			notifyListener(from, State.HALF_OPEN);
+		}
+		return true;
+	}
+
+	/**
+	 * report a successful invocation (i.e. an answer has been received)
+	 */
+	public void success() {
+		State from;
+		synchronized (this) {
+			failures = 0;
+			if (state == State.CLOSED) {
+				return;
+			}
+			from = state;
+			state = State.CLOSED;
+		}
+		notifyListener(from, State.CLOSED);
+	}
+
+	/**
+	 * report a failed invocation
+	 */
+	public void failure() {
+		State from;
+		synchronized (this) {
+			failures++;
+			if (state == State.OPEN || (state == State.CLOSED && failures < failureThreshold)) {
+				return;
+			}
+			from = state;
+			state = State.OPEN;
+			changedAt = System.currentTimeMillis();
+		}
+		notifyListener(from, State.OPEN);
+	}
+
+	private boolean cooldownOver() {
+		return changedAt + cooldownMs <= System.currentTimeMillis();
+	}
+
+	private void notifyListener(State from, State to) {
+		if (listener != null) {
+			listener.stateChanged(this, from, to);
+		}
+	}
+
+}
@@ -1,10 +1,13 @@
 package i5.las2peer.p2p;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 import i5.las2peer.api.StorageCollisionHandler;
 import i5.las2peer.api.StorageEnvelopeHandler;
@@ -18,6 +21,7 @@ import i5.las2peer.classLoaders.libraries.FileSystemRepository;
 import i5.las2peer.communication.Message;
 import i5.las2peer.communication.MessageException;
 import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeFetchResult;
 import i5.las2peer.persistency.LocalStorage;
 import i5.las2peer.persistency.MalformedXMLException;
 import i5.las2peer.security.Agent;
@@ -95,8 +99,7 @@ public class LocalNode extends Node {
 	@Override
 	public void registerReceiver(MessageReceiver receiver)
 			throws AgentAlreadyRegisteredException, L2pSecurityException, AgentException {
-		super.registerReceiver(receiver);
-
+		// the agent has to be known before the registration, since services announce themselves on registration
 		if (receiver instanceof Agent) {
 			Agent agent = (Agent) receiver;
 			try {
@@ -106,6 +109,8 @@ public class LocalNode extends Node {
 			}
 		}
 
+		super.registerReceiver(receiver);
+
 		deliverPendingMessages(receiver.getResponsibleForAgentId(), getNodeId());
 	}
 
@@ -443,6 +448,11 @@ public class LocalNode extends Node {
 	 * do a complete restart of all nodes, artifacts and messages
 	 */
 	public static void reset() {
+		// stop the periodic tasks (e.g. service announcements) of the discarded nodes
+		for (LocalNode node : htLocalNodes.values()) {
+			node.getThreadPools().shutdownNow();
+		}
+
 		htPendingMessages = new Hashtable<Long, Hashtable<Message, MessageResultListener>>();
 		storage = new LocalStorage();
 		htKnownAgents = new Hashtable<Long, String>();
@@ -674,8 +684,13 @@ public class LocalNode extends Node {
 				} catch (InterruptedException e1) {
 				}
 
+				LocalNode node = getNode(nodeId);
+				if (node == null) {
+					// the node has been removed by a reset in the meantime
+					return;
+				}
 				try {
-					getNode(nodeId).receiveMessage(message.clone());
+					node.receiveMessage(message.clone());
 				} catch (Exception e) {
 					System.out.println("problems at node " + nodeId);
 					throw new RuntimeException(e);
@@ -714,6 +729,12 @@ public class LocalNode extends Node {
 		return storage.fetchEnvelope(identifier, 10000);
 	}
 
+	@Override
+	public Map<String, EnvelopeFetchResult> fetchEnvelopes(Collection<String> identifiers) {
+		// XXX make configurable
+		return fetchEnvelopes(identifiers, getFetchBatchParallelism(), 10000);
+	}
+
 	@Override
 	public Envelope createEnvelope(String identifier, Serializable content, List<Agent> readers)
 			throws IllegalArgumentException, SerializationException, CryptoException {
@@ -750,6 +771,11 @@ public class LocalNode extends Node {
 		storage.storeEnvelopeAsync(envelope, author, resultHandler, collisionHandler, exceptionHandler);
 	}
 
+	@Override
+	public CompletableFuture<Void> storeEnvelopeAsync(Envelope envelope, Agent author) {
+		return storage.storeEnvelopeAsync(envelope, author);
+	}
+
 	@Override
 	public Envelope fetchEnvelope(String identifier, long timeoutMs)
 			throws ArtifactNotFoundException, StorageException {
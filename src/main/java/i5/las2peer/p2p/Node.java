@@ -6,10 +6,12 @@ import i5.las2peer.api.exceptions.EnvelopeAlreadyExistsException;
 import i5.las2peer.api.exceptions.StorageException;
 import i5.las2peer.classLoaders.L2pClassManager;
 import i5.las2peer.classLoaders.libraries.Repository;
+import i5.las2peer.communication.LoadDescriptor;
 import i5.las2peer.communication.Message;
 import i5.las2peer.communication.MessageException;
 import i5.las2peer.communication.RMIExceptionContent;
 import i5.las2peer.communication.RMIResultContent;
+import i5.las2peer.communication.ServiceAnnouncementContent;
 import i5.las2peer.execution.L2pServiceException;
 import i5.las2peer.execution.L2pThread;
 import i5.las2peer.execution.NoSuchServiceException;
@@ -19,10 +21,12 @@ import i5.las2peer.execution.ServiceInvocationException;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.logging.NodeObserver;
 import i5.las2peer.logging.NodeObserver.Event;
+import i5.las2peer.logging.metrics.MetricsRegistry;
 import i5.las2peer.logging.monitoring.MonitoringObserver;
 import i5.las2peer.p2p.NodeServiceCache.ServiceInstance;
 import i5.las2peer.persistency.EncodingFailedException;
 import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeCache;
 import i5.las2peer.persistency.NodeStorageInterface;
 import i5.las2peer.security.Agent;
 import i5.las2peer.security.AgentContext;
@@ -45,29 +49,30 @@ import i5.las2peer.tools.SerializationException;
 
 import java.io.File;
 import java.io.Serializable;
-import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rice.pastry.NodeHandle;
 import rice.pastry.PastryNode;
 import rice.pastry.socket.SocketNodeHandle;
 
-import com.sun.management.OperatingSystemMXBean;
-
 /**
  * Base class for nodes in the las2peer environment.
  * 
@@ -100,17 +105,54 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	/**
 	 * For performance measurement (load balance)
 	 */
-	private OperatingSystemMXBean osBean = (com.sun.management.OperatingSystemMXBean) ManagementFactory
-			.getOperatingSystemMXBean();
+	private final NodeLoadMonitor loadMonitor;
 
 	private NodeServiceCache nodeServiceCache;
 
+	private final EnvelopeCache envelopeCache;
+
+	/**
+	 * metrics of this node, e.g. of the transport layer
+	 */
+	private final MetricsRegistry metrics = new MetricsRegistry();
+
+	/**
+	 * thread pools of this node, separated by concern
+	 */
+	private final NodeThreadPools threadPools;
+
+	private static final AtomicInteger nodeCounter = new AtomicInteger();
+
+	public static final String DEFAULT_THREAD_POOL_SIZES = "";
+	/**
+	 * sizes of the thread pools of this node, see {@link NodeThreadPools#setSizes(String)}
+	 */
+	private String threadPoolSizes = DEFAULT_THREAD_POOL_SIZES;
+
 	public static final double DEFAULT_CPU_LOAD_TRESHOLD = 0.5;
 	/**
 	 * cpu load threshold to determine whether the node is considered busy
 	 */
 	private double cpuLoadThreshold = DEFAULT_CPU_LOAD_TRESHOLD;
 
+	public static final double DEFAULT_HEAP_USAGE_TRESHOLD = 0.9;
+	/**
+	 * heap usage threshold to determine whether the node is considered busy
+	 */
+	private double heapUsageThreshold = DEFAULT_HEAP_USAGE_TRESHOLD;
+
+	public static final int DEFAULT_LOAD_SAMPLE_INTERVAL = 1000;
+	/**
+	 * interval (in milliseconds) in which the load of the node is sampled
+	 */
+	private int loadSampleInterval = DEFAULT_LOAD_SAMPLE_INTERVAL;
+
+	public static final double DEFAULT_LOAD_SMOOTHING = 0.3;
+	/**
+	 * weight of a new load sample in the smoothed load values
+	 */
+	private double loadSmoothing = DEFAULT_LOAD_SMOOTHING;
+
 	public static final int DEFAULT_NODE_SERVICE_CACHE_LIFETIME = 60;
 	/**
 	 * time before cached service information becomes invalidated
@@ -123,6 +165,54 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	private int nodeServiceCacheResultCount = DEFAULT_NODE_SERVICE_CACHE_RESULT_COUNT;
 
+	public static final int DEFAULT_NODE_SERVICE_CACHE_NEGATIVE_LIFETIME = 5;
+	/**
+	 * time a service discovery without result is remembered
+	 */
+	private int nodeServiceCacheNegativeLifetime = DEFAULT_NODE_SERVICE_CACHE_NEGATIVE_LIFETIME;
+
+	public static final int DEFAULT_INVOCATION_BREAKER_THRESHOLD = 3;
+	/**
+	 * number of consecutive timeouts or transport errors after which a remote service instance is skipped
+	 */
+	private int invocationBreakerThreshold = DEFAULT_INVOCATION_BREAKER_THRESHOLD;
+
+	public static final int DEFAULT_INVOCATION_BREAKER_COOLDOWN = 10;
+	/**
+	 * time (in seconds) before a skipped remote service instance is tried again
+	 */
+	private int invocationBreakerCooldown = DEFAULT_INVOCATION_BREAKER_COOLDOWN;
+
+	public static final double DEFAULT_NODE_SERVICE_CACHE_REFRESH_AHEAD = 0.2;
+	/**
+	 * fraction of the service cache lifetime before expiry in which frequently used entries are refreshed
+	 */
+	private double nodeServiceCacheRefreshAhead = DEFAULT_NODE_SERVICE_CACHE_REFRESH_AHEAD;
+
+	public static final int DEFAULT_SERVICE_ANNOUNCEMENT_INTERVAL = 20;
+	/**
+	 * interval in seconds in which the local services are announced to the network, 0 disables the announcements
+	 */
+	private int serviceAnnouncementInterval = DEFAULT_SERVICE_ANNOUNCEMENT_INTERVAL;
+
+	public static final long DEFAULT_ENVELOPE_CACHE_SIZE = 16 * 1024 * 1024;
+	/**
+	 * maximum size (in bytes) of the decoded envelopes cached by this node, 0 disables the cache
+	 */
+	private long envelopeCacheSize = DEFAULT_ENVELOPE_CACHE_SIZE;
+
+	public static final long DEFAULT_ENVELOPE_CACHE_LATEST_MAX_AGE = 0;
+	/**
+	 * time (in milliseconds) a latest envelope version known to this node is used without asking the network
+	 */
+	private long envelopeCacheLatestMaxAge = DEFAULT_ENVELOPE_CACHE_LATEST_MAX_AGE;
+
+	public static final int DEFAULT_FETCH_BATCH_PARALLELISM = 16;
+	/**
+	 * maximum number of envelopes fetched at the same time by a batch fetch
+	 */
+	private int fetchBatchParallelism = DEFAULT_FETCH_BATCH_PARALLELISM;
+
 	public static final int DEFAULT_TIDY_UP_TIMER_INTERVAL = 60;
 	/**
 	 * frequency of the tidy up timer
@@ -154,7 +244,12 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	/**
 	 * Timer to tidy up hashtables etc (Contexts)
 	 */
-	private Timer tidyUpTimer;
+	private ScheduledFuture<?> tidyUpTimer;
+
+	/**
+	 * periodic announcement of the local services
+	 */
+	private ScheduledFuture<?> serviceAnnouncementTimer;
 
 	/**
 	 * status of this node
@@ -182,6 +277,15 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	private static final String DEFAULT_INFORMATION_FILE = "etc/nodeInfo.xml";
 	private String sInformationFileName = DEFAULT_INFORMATION_FILE;
 
+	/**
+	 * the last signed information about this node, see {@link #getNodeInformation()}
+	 */
+	private final Object nodeInformationLock = new Object();
+	private NodeInformation signedNodeInformation;
+	private Set<ServiceAgent> signedNodeInformationServices;
+	private String signedNodeInformationFile;
+	private long signedNodeInformationFileModified;
+
 	private KeyPair nodeKeyPair;
 
 	/**
@@ -237,6 +341,13 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	public Node(L2pClassManager baseClassLoader, boolean standardObserver, boolean monitoringObserver) {
 		setFieldValues();
 
+		threadPools = new NodeThreadPools("node" + nodeCounter.incrementAndGet(), metrics);
+		threadPools.setSizes(threadPoolSizes);
+		loadMonitor = new NodeLoadMonitor(threadPools::getRunningExecutions, threadPools::getWaitingExecutions,
+				metrics);
+		loadMonitor.configure(loadSmoothing, cpuLoadThreshold, heapUsageThreshold);
+		envelopeCache = new EnvelopeCache(envelopeCacheSize, envelopeCacheLatestMaxAge, metrics);
+
 		if (standardObserver) {
 			initStandardLogfile();
 		}
@@ -252,6 +363,9 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 
 		nodeKeyPair = CryptoTools.generateKeyPair();
 		nodeServiceCache = new NodeServiceCache(this, nodeServiceCacheLifetime, nodeServiceCacheResultCount);
+		nodeServiceCache.setNegativeLifeTimeSeconds(nodeServiceCacheNegativeLifetime);
+		nodeServiceCache.setRefreshAheadFraction(nodeServiceCacheRefreshAhead);
+		nodeServiceCache.setCircuitBreaker(invocationBreakerThreshold, invocationBreakerCooldown * 1000L);
 
 		userManager = new UserAgentManager(this);
 		aliasManager = new ServiceAliasManager(this);
@@ -493,22 +607,42 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 * @throws CryptoException If an issue occurs with the given key or selected algorithm.
 	 */
 	public NodeInformation getNodeInformation() throws CryptoException {
-		NodeInformation result = new NodeInformation(getRegisteredServices());
+		ServiceAgent[] services = getRegisteredServices();
+		String informationFile = sInformationFileName;
+		long informationFileModified = (informationFile != null) ? new File(informationFile).lastModified() : 0;
+
+		synchronized (nodeInformationLock) {
+			// the signed information is reused until the hosted services or the information file change
+			if (signedNodeInformation != null
+					&& Objects.equals(getNodeId(), signedNodeInformation.getNodeHandle())
+					&& new HashSet<>(Arrays.asList(services)).equals(signedNodeInformationServices)
+					&& Objects.equals(informationFile, signedNodeInformationFile)
+					&& informationFileModified == signedNodeInformationFileModified) {
+				return signedNodeInformation;
+			}
 
-		try {
-			if (sInformationFileName != null && new File(sInformationFileName).exists()) {
-				result = NodeInformation.createFromXmlFile(sInformationFileName, getRegisteredServices());
+			NodeInformation result = new NodeInformation(services);
+
+			try {
+				if (informationFile != null && new File(informationFile).exists()) {
+					result = NodeInformation.createFromXmlFile(informationFile, services);
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
 
-		result.setNodeHandle(getNodeId());
-		result.setNodeKey(nodeKeyPair.getPublic());
+			result.setNodeHandle(getNodeId());
+			result.setNodeKey(nodeKeyPair.getPublic());
 
-		result.setSignature(CryptoTools.signContent(result.getSignatureContent(), nodeKeyPair.getPrivate()));
+			result.setSignature(CryptoTools.signContent(result.getSignatureContent(), nodeKeyPair.getPrivate()));
 
-		return result;
+			signedNodeInformation = result;
+			signedNodeInformationServices = new HashSet<>(Arrays.asList(services));
+			signedNodeInformationFile = informationFile;
+			signedNodeInformationFileModified = informationFileModified;
+
+			return result;
+		}
 	}
 
 	/**
@@ -545,7 +679,9 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		// store anonymous if not stored yet
 		getAnonymous();
 
+		loadMonitor.start(threadPools.getScheduled(), loadSampleInterval);
 		startTidyUpTimer();
+		startServiceAnnouncements();
 	}
 
 	/**
@@ -553,6 +689,8 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	public synchronized void shutDown() {
 		stopTidyUpTimer();
+		stopServiceAnnouncements();
+		loadMonitor.stop();
 
 		Long[] receivers = htRegisteredReceivers.keySet().toArray(new Long[0]); // avoid ConcurrentModificationEception
 		for (Long id : receivers) {
@@ -571,6 +709,7 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 			}
 		}
 		htRegisteredReceivers = new Hashtable<Long, MessageReceiver>();
+		threadPools.shutdownNow();
 	}
 
 	/**
@@ -737,7 +876,7 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 * @return true if someone is registered to the topic
 	 */
 	protected boolean hasTopic(long topic) {
-		return mapTopicListeners.containsKey(topic);
+		return topic == NodeServiceCache.SERVICE_ANNOUNCEMENT_TOPIC || mapTopicListeners.containsKey(topic);
 	}
 
 	/**
@@ -803,7 +942,8 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 * Sends a message, recipient and sender are stated in the message. Depending on the mode, either all nodes running
 	 * the given agent will be notified of this message, or only a random one.
 	 * 
-	 * NOTE: Pastry nodes will always use broadcast at the moment!
+	 * NOTE: Pastry nodes publish an any-cast message to all running instances, if no node hosting the agent accepts
+	 * it in time.
 	 * 
 	 * @param message the message to send
 	 * @param listener a listener for getting the result separately
@@ -873,6 +1013,10 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 			}
 
 			receiver.receiveMessage(message, getAgentContext(message.getSenderId()));
+		} else if (message.getTopicId() == NodeServiceCache.SERVICE_ANNOUNCEMENT_TOPIC) {
+			nodeServiceCache.receiveAnnouncement(message);
+		} else if (nodeServiceCache.answerDiscovery(message)) {
+			// discovery requests are answered once for all local service agents
 		} else {
 			TreeMap<Long, MessageReceiver> map = mapTopicListeners.get(message.getTopicId());
 
@@ -1377,8 +1521,11 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		RMITask task = new RMITask(serviceAgent.getServiceNameVersion(), method, parameters);
 		AgentContext context = getAgentContext(executing);
 		L2pThread thread = new L2pThread(serviceAgent, task, context);
-		thread.start();
-		thread.join();
+		try {
+			threadPools.runExecution(thread);
+		} catch (RejectedExecutionException e) {
+			throw new ServiceInvocationException("node is overloaded, too many service invocations waiting", e);
+		}
 
 		if (thread.hasException()) {
 			Exception e = thread.getException();
@@ -1458,20 +1605,33 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 			}
 			Message resultMessage;
 
-			if (nodeId != null) {
-				try {
+			// the round-trip time is used to choose between instances of a service, failures are handled by the
+			// circuit breaker
+			NodeServiceCache.InvocationStatistics statistics = nodeServiceCache.getInvocationStatistics(serviceAgentId,
+					nodeId);
+			long started = statistics.started();
+			try {
+				if (nodeId != null) {
 					resultMessage = sendMessageAndWaitForAnswer(rmiMessage, nodeId);
-				} catch (NodeNotFoundException nex) {
-					throw nex;
+				} else {
+					resultMessage = sendMessageAndWaitForAnswer(rmiMessage);
 				}
-			} else {
-				resultMessage = sendMessageAndWaitForAnswer(rmiMessage);
+			} catch (NodeNotFoundException | TimeoutException e) {
+				statistics.getCircuitBreaker().failure();
+				statistics.aborted();
+				throw e;
+			} catch (Exception e) {
+				statistics.aborted();
+				throw e;
 			}
+			statistics.getCircuitBreaker().success();
+			statistics.finished(started);
 
 			resultMessage.open(executing, this);
 			Object resultContent = resultMessage.getContent();
 
 			if (resultContent instanceof RMIExceptionContent) {
+				statistics.updateLoad(((RMIExceptionContent) resultContent).getLoad());
 				Exception thrown = ((RMIExceptionContent) resultContent).getException();
 				// Do not log service class name (privacy..)
 				this.observerNotice(Event.RMI_FAILED, this.getNodeId(), executing, thrown.toString());
@@ -1486,6 +1646,7 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 				}
 
 			} else if (resultContent instanceof RMIResultContent) {
+				statistics.updateLoad(((RMIResultContent) resultContent).getLoad());
 				// Do not log service class name (privacy..)
 				this.observerNotice(Event.RMI_SUCCESSFUL, this.getNodeId(), executing, null);
 				return ((RMIResultContent) resultContent).getContent();
@@ -1716,24 +1877,162 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		return this.nodeServiceCache;
 	}
 
+	/**
+	 * get the metrics registry of this node
+	 * 
+	 * @return the metrics of this node
+	 */
+	public MetricsRegistry getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * get the thread pools of this node
+	 * 
+	 * @return the thread pools of this node
+	 */
+	public NodeThreadPools getThreadPools() {
+		return threadPools;
+	}
+
+	/**
+	 * set the sizes of the thread pools of this node, has to be called before the node is launched
+	 * 
+	 * @param sizes comma separated list of <i>concern=threads[:queue]</i> entries, e.g.
+	 *            <code>delivery=32:2000,storage=8</code>
+	 */
+	public void setThreadPoolSizes(String sizes) {
+		if (getStatus() != NodeStatus.UNCONFIGURED && getStatus() != NodeStatus.CONFIGURED) {
+			throw new IllegalStateException("thread pools can only be configured before the node is launched");
+		}
+		threadPools.setSizes(sizes);
+		threadPoolSizes = sizes;
+	}
+
 	/**
 	 * Gets the approximate CPU load of the JVM the Node is running on. Correct value only available a few seconds after
 	 * the start of the Node.
 	 * 
+	 * The value is sampled in the background and smoothed, see {@link NodeLoadMonitor}.
+	 * 
 	 * @return value between 0 and 1: CPU load of the JVM process running this node
 	 */
 	public double getNodeCpuLoad() {
-		double load = osBean.getProcessCpuLoad();
-		if (load < 0) { // no CPU load information are available
-			load = 0;
-		} else if (load > 1) {
-			load = 1;
-		}
-		return load;
+		return loadMonitor.getCpuLoad();
 	}
 
+	/**
+	 * checks if the sampled cpu load or heap usage of this node is above its threshold
+	 * 
+	 * @return true if the node should not take additional work
+	 */
 	public boolean isBusy() {
-		return (getNodeCpuLoad() > cpuLoadThreshold);
+		return loadMonitor.isBusy();
+	}
+
+	/**
+	 * get the load monitor of this node
+	 * 
+	 * @return the load monitor
+	 */
+	public NodeLoadMonitor getLoadMonitor() {
+		return loadMonitor;
+	}
+
+	/**
+	 * get the cache of decoded envelopes of this node
+	 * 
+	 * @return the envelope cache
+	 */
+	public EnvelopeCache getEnvelopeCache() {
+		return envelopeCache;
+	}
+
+	/**
+	 * get the maximum number of envelopes fetched at the same time by a batch fetch
+	 * 
+	 * @return the batch parallelism
+	 */
+	public int getFetchBatchParallelism() {
+		return fetchBatchParallelism;
+	}
+
+	/**
+	 * get the current load of this node, as reported to other nodes
+	 * 
+	 * @return cpu load, running and waiting service invocations
+	 */
+	public LoadDescriptor getLoadDescriptor() {
+		return loadMonitor.getLoadDescriptor();
+	}
+
+	// Service announcements
+
+	/**
+	 * starts the periodic announcement of the local services
+	 */
+	private void startServiceAnnouncements() {
+		if (serviceAnnouncementTimer != null || serviceAnnouncementInterval <= 0) {
+			return;
+		}
+		serviceAnnouncementTimer = threadPools.getScheduled().scheduleAtFixedRate(this::announceServices, 0,
+				serviceAnnouncementInterval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * stops the periodic announcement of the local services
+	 */
+	private void stopServiceAnnouncements() {
+		if (serviceAnnouncementTimer != null) {
+			serviceAnnouncementTimer.cancel(false);
+			serviceAnnouncementTimer = null;
+		}
+	}
+
+	/**
+	 * announces all local services to the network
+	 */
+	public void announceServices() {
+		for (ServiceAgent agent : nodeServiceCache.getLocalServiceAgents()) {
+			announceService(agent);
+		}
+	}
+
+	/**
+	 * announces a local service to the network, the announcement contains the current load of this node
+	 * 
+	 * @param agent a running service agent
+	 */
+	public void announceService(ServiceAgent agent) {
+		sendServiceAnnouncement(agent, new ServiceAnnouncementContent(agent.getServiceNameVersion(),
+				getLoadDescriptor()));
+	}
+
+	/**
+	 * tells the network that a local service is no longer available
+	 * 
+	 * @param agent a service agent about to be stopped
+	 */
+	public void withdrawService(ServiceAgent agent) {
+		sendServiceAnnouncement(agent, new ServiceAnnouncementContent(agent.getServiceNameVersion()));
+	}
+
+	private void sendServiceAnnouncement(ServiceAgent agent, ServiceAnnouncementContent content) {
+		if (getStatus() != NodeStatus.RUNNING || serviceAnnouncementInterval <= 0) {
+			return;
+		}
+		try {
+			final long timeout = serviceAnnouncementInterval * 1000L;
+			final Message message = new Message(agent, NodeServiceCache.SERVICE_ANNOUNCEMENT_TOPIC, content, timeout);
+			message.setSendingNodeId(getNodeId());
+			threadPools.execute(NodeThreadPools.Concern.HOUSEKEEPING,
+					() -> sendMessage(message, new MessageResultListener(timeout), SendMode.BROADCAST));
+			metrics.counter("services.announcements.sent").inc();
+		} catch (EncodingFailedException | L2pSecurityException | SerializationException e) {
+			observerNotice(Event.SERVICE_ERROR, getNodeId(), agent, "unable to announce service: " + e);
+		} catch (RejectedExecutionException e) {
+			// node is shutting down
+		}
 	}
 
 	// Tidy up Timer
@@ -1745,13 +2044,8 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 		if (tidyUpTimer != null) {
 			return;
 		}
-		tidyUpTimer = new Timer();
-		tidyUpTimer.scheduleAtFixedRate(new TimerTask() {
-			@Override
-			public void run() {
-				runTidyUpTimer();
-			}
-		}, 0, tidyUpTimerInterval * 1000);
+		tidyUpTimer = threadPools.getScheduled().scheduleAtFixedRate(this::runTidyUpTimer, 0, tidyUpTimerInterval,
+				TimeUnit.SECONDS);
 	}
 
 	/**
@@ -1759,7 +2053,7 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 */
 	private void stopTidyUpTimer() {
 		if (tidyUpTimer != null) {
-			tidyUpTimer.cancel();
+			tidyUpTimer.cancel(false);
 			tidyUpTimer = null;
 		}
 	}
@@ -1768,6 +2062,8 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 	 * executed by the tidy up timer, currently it does:
 	 * 
 	 * * Deleting old {@link AgentContext} objects from {@link #htLocalExecutionContexts}
+	 * 
+	 * * Deleting outdated service instances and their round-trip statistics
 	 */
 	protected void runTidyUpTimer() {
 		Set<Entry<Long, AgentContext>> s = htLocalExecutionContexts.entrySet();
@@ -1780,6 +2076,8 @@ public abstract class Node extends Configurable implements AgentStorage, NodeSto
 				}
 			}
 		}
+		nodeServiceCache.removeOutdatedGlobalServiceInstances();
+		nodeServiceCache.removeStaleStatistics();
 	}
 
 }
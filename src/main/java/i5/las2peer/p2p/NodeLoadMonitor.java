@@ -0,0 +1,213 @@
+package i5.las2peer.p2p;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import com.sun.management.OperatingSystemMXBean;
+
+import i5.las2peer.communication.LoadDescriptor;
+import i5.las2peer.logging.metrics.MetricsRegistry;
+
+/**
+ * samples the load of a node in the background
+ *
+ * Reading the process cpu load from the operating system bean is comparatively expensive and a single reading is
+ * noisy. The monitor therefore samples cpu load, heap usage, garbage collection time and the number of executing
+ * service invocations at a fixed interval and keeps exponentially smoothed values, which are cheap to read on every
+ * invocation.
+ */
+public class NodeLoadMonitor {
+
+	private final OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory
+			.getOperatingSystemMXBean();
+	private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+	private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+	private final IntSupplier executingTasks;
+	private final IntSupplier waitingTasks;
+
+	private double smoothing = 0.3;
+	private double cpuThreshold = 0.5;
+	private double heapThreshold = 0.9;
+
+	private volatile double cpuLoad = -1;
+	private volatile double heapUsage;
+	private volatile double gcTime;
+	private volatile int executing;
+	private volatile int waiting;
+
+	private long lastGcTimeMs = -1;
+	private long lastSampleNanos;
+
+	private ScheduledFuture<?> sampler;
+
+	/**
+	 * create a load monitor, it has to be started to take samples periodically
+	 *
+	 * @param executingTasks number of currently executed service invocations
+	 * @param waitingTasks number of service invocations waiting for execution
+	 * @param metrics registry to report the smoothed values to, may be null
+	 */
+	public NodeLoadMonitor(IntSupplier executingTasks, IntSupplier waitingTasks, MetricsRegistry metrics) {
+		this.executingTasks = executingTasks;
+		this.waitingTasks = waitingTasks;
+		if (metrics != null) {
+			metrics.gauge("load.cpu.permille", () -> Math.round(getCpuLoad() * 1000));
+			metrics.gauge("load.heap.permille", () -> Math.round(heapUsage * 1000));
+			metrics.gauge("load.gc.permille", () -> Math.round(gcTime * 1000));
+		}
+	}
+
+	/**
+	 * configure the monitor
+	 *
+	 * @param smoothing weight of a new sample, between 0 (exclusive) and 1 (no smoothing)
+	 * @param cpuThreshold smoothed cpu load above which the node is busy
+	 * @param heapThreshold smoothed heap usage above which the node is busy
+	 */
+	public synchronized void configure(double smoothing, double cpuThreshold, double heapThreshold) {
+		if (smoothing <= 0 || smoothing > 1) {
+			throw new IllegalArgumentException("smoothing has to be in (0, 1], got " + smoothing);
+		}
+		this.smoothing = smoothing;
+		this.cpuThreshold = cpuThreshold;
+		this.heapThreshold = heapThreshold;
+	}
+
+	/**
+	 * start sampling
+	 *
+	 * @param executor executor to schedule the sampling in
+	 * @param intervalMs sampling interval
+	 */
+	public synchronized void start(ScheduledExecutorService executor, long intervalMs) {
+		if (sampler != null) {
+			return;
+		}
+		sampler = executor.scheduleAtFixedRate(this::sample, 0, intervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * stop sampling, the last values are kept
+	 */
+	public synchronized void stop() {
+		if (sampler != null) {
+			sampler.cancel(false);
+			sampler = null;
+		}
+	}
+
+	/**
+	 * take a sample and update the smoothed values
+	 */
+	public synchronized void sample() {
+		long now = System.nanoTime();
+
+		double cpu = osBean.getProcessCpuLoad();
+		if (cpu < 0) { // no CPU load information are available
+			cpu = 0;
+		} else if (cpu > 1) {
+			cpu = 1;
+		}
+
+		MemoryUsage heap = memoryBean.getHeapMemoryUsage();
+		long maxHeap = (heap.getMax() > 0) ? heap.getMax() : heap.getCommitted();
+		double heapSample = (maxHeap > 0) ? (double) heap.getUsed() / maxHeap : 0;
+
+		long gcTimeMs = 0;
+		for (GarbageCollectorMXBean gcBean : gcBeans) {
+			gcTimeMs += Math.max(0, gcBean.getCollectionTime());
+		}
+		double gcSample = 0;
+		if (lastGcTimeMs >= 0 && now > lastSampleNanos) {
+			gcSample = Math.min(1, (gcTimeMs - lastGcTimeMs) / ((now - lastSampleNanos) / 1000000.0));
+		}
+		lastGcTimeMs = gcTimeMs;
+		lastSampleNanos = now;
+
+		if (cpuLoad < 0) {
+			// first sample
+			cpuLoad = cpu;
+			heapUsage = heapSample;
+			gcTime = gcSample;
+		} else {
+			cpuLoad = smooth(cpuLoad, cpu);
+			heapUsage = smooth(heapUsage, heapSample);
+			gcTime = smooth(gcTime, gcSample);
+		}
+		executing = executingTasks.getAsInt();
+		waiting = waitingTasks.getAsInt();
+	}
+
+	private double smooth(double old, double sample) {
+		return smoothing * sample + (1 - smoothing) * old;
+	}
+
+	/**
+	 * smoothed cpu load of this process
+	 *
+	 * @return value between 0 and 1
+	 */
+	public double getCpuLoad() {
+		if (cpuLoad < 0) {
+			sample();
+		}
+		return cpuLoad;
+	}
+
+	/**
+	 * smoothed ratio of used to maximum heap
+	 *
+	 * @return value between 0 and 1
+	 */
+	public double getHeapUsage() {
+		return heapUsage;
+	}
+
+	/**
+	 * smoothed fraction of time spent in garbage collection
+	 *
+	 * @return value between 0 and 1
+	 */
+	public double getGcTime() {
+		return gcTime;
+	}
+
+	/**
+	 * number of executing service invocations at the last sample
+	 *
+	 * @return number of executing invocations
+	 */
+	public int getExecuting() {
+		return executing;
+	}
+
+	/**
+	 * check if the node should not take additional work
+	 *
+	 * @return true if the smoothed cpu load or heap usage is above its threshold
+	 */
+	public boolean isBusy() {
+		return getCpuLoad() > cpuThreshold || heapUsage > heapThreshold;
+	}
+
+	/**
+	 * the current load as reported to other nodes
+	 *
+	 * The number of executing and waiting invocations is read directly, since it changes faster than the sampling
+	 * interval and is cheap to get.
+	 *
+	 * @return load descriptor
+	 */
+	public LoadDescriptor getLoadDescriptor() {
+		return new LoadDescriptor(getCpuLoad(), executingTasks.getAsInt(), waitingTasks.getAsInt());
+	}
+
+}
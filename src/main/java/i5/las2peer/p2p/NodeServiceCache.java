@@ -1,40 +1,145 @@
 package i5.las2peer.p2p;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
-
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import i5.las2peer.communication.LoadDescriptor;
 import i5.las2peer.communication.Message;
+import i5.las2peer.communication.MessageException;
+import i5.las2peer.communication.ServiceAnnouncementContent;
 import i5.las2peer.communication.ServiceDiscoveryContent;
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.logging.NodeObserver.Event;
+import i5.las2peer.logging.metrics.Counter;
 import i5.las2peer.persistency.EncodingFailedException;
 import i5.las2peer.security.Agent;
 import i5.las2peer.security.L2pSecurityException;
 import i5.las2peer.security.ServiceAgent;
 import i5.las2peer.tools.SerializationException;
+import i5.las2peer.tools.SimpleTools;
 
 /**
  * Caches the knowledge about existing services
+ * 
+ * The global part of the cache is filled by the periodic {@link ServiceAnnouncementContent}s of other nodes. Only if no
+ * matching instance is known, a discovery request is sent to the service's topic.
+ * 
+ * If several instances of the requested version are known, one is chosen by comparing two random instances by their
+ * measured round-trip time, their number of outstanding requests and the load their nodes reported with their last
+ * answer (power of two choices). Instances whose circuit breaker is open are skipped.
+ * 
+ * Discoveries that found nothing are remembered for a short time, so requests for services nobody hosts do not flood
+ * the network. Concurrent requests for the same service wait for the discovery already in progress.
+ * 
+ * Frequently requested services are discovered again in the background shortly before their entries expire, so callers
+ * keep using the known instances instead of waiting for a discovery. The refresh point is jittered, so nodes do not
+ * refresh in lockstep.
+ * 
+ * A node answers a discovery request once for all of its matching service agents, so the requester receives and
+ * verifies a single signed message per node instead of one per service version.
+ * 
+ * Lookups do not lock: the local and global part of the cache are immutable snapshots, which are replaced as a whole
+ * (copy on write) when services are added or removed.
  */
 public class NodeServiceCache {
 
+	private static final L2pLogger logger = L2pLogger.getInstance(NodeServiceCache.class);
+
+	/**
+	 * topic all nodes listen to for service announcements
+	 */
+	public static final long SERVICE_ANNOUNCEMENT_TOPIC = SimpleTools
+			.longHash("i5.las2peer.p2p.NodeServiceCache#announcements");
+
+	/**
+	 * weight of a new round-trip time sample in the moving average
+	 */
+	public static final double RTT_EWMA_WEIGHT = 0.2;
+
+	/**
+	 * round-trip times older than this are ignored, so slow instances are tried again eventually
+	 */
+	public static final long RTT_MAX_AGE_MS = 60000;
+
+	/**
+	 * used for instances that have not been invoked yet
+	 */
+	private static final CircuitBreaker CLOSED_BREAKER = new CircuitBreaker(Integer.MAX_VALUE, 0, null);
+
 	private final Node runningAt;
 
-	private Map<String, SortedMap<ServiceVersion, ServiceInstance>> localServices = new HashMap<>();
-	private Map<String, SortedMap<ServiceVersion, SortedSet<ServiceInstance>>> globalServices = new HashMap<>();
+	private final Counter announcementsReceived;
+	private final Counter announcementsRejected;
+	private final Counter discoveriesSent;
+	private final Counter discoveriesSuppressed;
+	private final Counter discoveriesRefreshed;
+	private final Counter discoveriesAnswered;
+	private final Counter breakersOpened;
+	private final Counter breakersClosed;
+
+	private final Map<InstanceKey, InvocationStatistics> invocationStatistics = new ConcurrentHashMap<>();
+	/**
+	 * number of breakers not closed, only statistics with closed breakers are removed
+	 */
+	private final AtomicInteger openBreakers = new AtomicInteger();
+	/**
+	 * discoveries without result, mapped to the time (ms) when they may be repeated
+	 */
+	private final Map<String, Long> negativeEntries = new ConcurrentHashMap<>();
+
+	/**
+	 * discoveries in progress
+	 */
+	private final Map<String, CompletableFuture<Boolean>> discoveriesInFlight = new ConcurrentHashMap<>();
+
+	/**
+	 * accesses to a global service since its last refresh
+	 */
+	private final Map<String, AtomicLong> accessCounts = new ConcurrentHashMap<>();
+
+	private final AtomicReference<Map<String, ServiceVersionIndex<ServiceInstance>>> localServices =
+			new AtomicReference<>(Collections.emptyMap());
+	private final AtomicReference<Map<String, ServiceVersionIndex<List<ServiceInstance>>>> globalServices =
+			new AtomicReference<>(Collections.emptyMap());
 
 	private long lifeTimeSeconds = 30;
 	private int waitForResults = 3;
 	private int timeoutMs = 2000;
+	private long negativeLifeTimeSeconds = 5;
+	private int breakerFailureThreshold = 3;
+	private long breakerCooldownMs = 10000;
+	private double refreshAheadFraction = 0.2;
+	private double refreshAheadJitter = 0.1;
+	private int refreshAheadMinAccesses = 3;
 
 	public NodeServiceCache(Node parent, long lifeTime, int resultCount) {
 		this.runningAt = parent;
 		this.lifeTimeSeconds = lifeTime;
 		this.waitForResults = resultCount;
+
+		announcementsReceived = parent.getMetrics().counter("services.announcements.received");
+		announcementsRejected = parent.getMetrics().counter("services.announcements.rejected");
+		discoveriesSent = parent.getMetrics().counter("services.discovery.sent");
+		discoveriesSuppressed = parent.getMetrics().counter("services.discovery.suppressed");
+		discoveriesRefreshed = parent.getMetrics().counter("services.discovery.refreshed");
+		discoveriesAnswered = parent.getMetrics().counter("services.discovery.answered");
+		breakersOpened = parent.getMetrics().counter("services.breaker.opened");
+		breakersClosed = parent.getMetrics().counter("services.breaker.closed");
+		parent.getMetrics().gauge("services.breaker.open", openBreakers::get);
 	}
 
 	public void setWaitForResults(int c) {
@@ -45,11 +150,64 @@ public class NodeServiceCache {
 		this.lifeTimeSeconds = c;
 	}
 
+	/**
+	 * set how long a discovery without result is remembered
+	 * 
+	 * @param c seconds, 0 disables negative caching
+	 */
+	public void setNegativeLifeTimeSeconds(long c) {
+		this.negativeLifeTimeSeconds = c;
+	}
+
+	/**
+	 * configure the circuit breakers of new global service instances
+	 * 
+	 * @param failureThreshold number of consecutive timeouts or transport errors opening a breaker
+	 * @param cooldownMs time before an open breaker lets a trial invocation through
+	 */
+	public void setCircuitBreaker(int failureThreshold, long cooldownMs) {
+		if (failureThreshold < 1 || cooldownMs < 0) {
+			throw new IllegalArgumentException("invalid circuit breaker threshold " + failureThreshold
+					+ " or cooldown " + cooldownMs);
+		}
+		this.breakerFailureThreshold = failureThreshold;
+		this.breakerCooldownMs = cooldownMs;
+	}
+
+	/**
+	 * set the fraction of the lifetime before expiry in which frequently used entries are refreshed in the background
+	 * 
+	 * @param fraction 0 disables refresh-ahead
+	 */
+	public void setRefreshAheadFraction(double fraction) {
+		setRefreshAhead(fraction, refreshAheadJitter, refreshAheadMinAccesses);
+	}
+
+	/**
+	 * set when frequently used entries are refreshed in the background
+	 * 
+	 * @param fraction fraction of the lifetime before expiry, 0 disables refresh-ahead
+	 * @param jitter random part of the refresh point, as fraction of the refresh-ahead period
+	 * @param minAccesses number of accesses since the last refresh needed for an entry to be refreshed
+	 */
+	public void setRefreshAhead(double fraction, double jitter, int minAccesses) {
+		if (fraction < 0 || fraction >= 1 || jitter < 0 || jitter > 1) {
+			throw new IllegalArgumentException("invalid refresh-ahead fraction " + fraction + " or jitter " + jitter);
+		}
+		this.refreshAheadFraction = fraction;
+		this.refreshAheadJitter = jitter;
+		this.refreshAheadMinAccesses = minAccesses;
+	}
+
 	/**
 	 * clears the global cache (needed for units tests)
 	 */
 	public void clear() {
-		this.globalServices.clear();
+		this.globalServices.set(Collections.emptyMap());
+		this.invocationStatistics.clear();
+		this.openBreakers.set(0);
+		this.negativeEntries.clear();
+		this.accessCounts.clear();
 	}
 
 	/**
@@ -71,63 +229,42 @@ public class NodeServiceCache {
 		ServiceInstance local = null, global = null;
 
 		// search locally
-		if (exact) {
-			synchronized (localServices) {
-				if (localServices.containsKey(service.getName())
-						&& localServices.get(service.getName()).containsKey(service.getVersion())) {
-					local = localServices.get(service.getName()).get(service.getVersion());
-				}
-			}
-		} else {
-			synchronized (localServices) {
-				if (localServices.containsKey(service.getName())) {
-					for (Map.Entry<ServiceVersion, ServiceInstance> e : localServices.get(service.getName())
-							.entrySet()) {
-						if (e.getKey().fits(service.getVersion())) {
-							local = e.getValue();
-							break;
-						}
-					}
+		ServiceVersionIndex<ServiceInstance> localVersions = localServices.get().get(service.getName());
+		if (localVersions != null) {
+			if (exact) {
+				local = localVersions.get(service.getVersion());
+			} else {
+				List<ServiceInstance> fitting = localVersions.getFitting(service.getVersion());
+				if (!fitting.isEmpty()) {
+					local = fitting.get(0);
 				}
 			}
 		}
 
-		// search globally
+		// search globally, if all known instances are blocked by their circuit breaker, others may be discovered
+		boolean blocked = false;
 		if (!localOnly && (local == null || runningAt.isBusy())) {
 			if (exact) {
-				ServiceInstance instance = getBestGlobalInstanceOfVersion(service.getName(), service.getVersion());
+				ServiceInstance instance = getBestGlobalInstanceOfVersion(service.getName(), service.getVersion(),
+						false);
+				blocked = instance == null && hasGlobalInstances(service, true);
 
 				if (instance == null) {
-					try {
-						update(service, true, acting);
-					} catch (Exception e) {
-						if (local == null) {
-							throw new AgentNotKnownException("Could not retrieve service information from the network.",
-									e);
-						}
-					}
-					instance = getBestGlobalInstanceOfVersion(service.getName(), service.getVersion());
+					discoverInstances(service, true, acting, local != null, blocked);
+					instance = getBestGlobalInstanceOfVersion(service.getName(), service.getVersion(), false);
 				}
 
 				if (instance != null) {
 					global = instance;
 				}
 			} else {
-				ServiceInstance instance = getBestGlobalInstanceFitsVersion(service.getName(), service.getVersion());
-				if (instance != null) {
-					global = instance;
-				}
+				ServiceInstance instance = getBestGlobalInstanceFitsVersion(service.getName(), service.getVersion(),
+						false);
+				blocked = instance == null && hasGlobalInstances(service, false);
 
 				if (instance == null) {
-					try {
-						update(service, false, acting);
-					} catch (Exception e) {
-						if (local == null) {
-							throw new AgentNotKnownException("Could not retrieve service information from the network.",
-									e);
-						}
-					}
-					instance = getBestGlobalInstanceFitsVersion(service.getName(), service.getVersion());
+					discoverInstances(service, false, acting, local != null, blocked);
+					instance = getBestGlobalInstanceFitsVersion(service.getName(), service.getVersion(), false);
 				}
 
 				if (instance != null) {
@@ -136,81 +273,273 @@ public class NodeServiceCache {
 			}
 		}
 
+		if (global != null) {
+			refreshAhead(service, exact, global);
+		}
+
 		if (local != null && (!runningAt.isBusy() || global == null)) {
 			return local;
 		} else if (global != null) {
-			return global;
+			// a half open breaker lets a single trial through, so it is reserved only for the instance returned
+			if (getCircuitBreaker(global).tryAcquire()) {
+				return global;
+			} else if (local != null) {
+				return local;
+			}
+			// another caller got the trial invocation, try the other instances
+			global = exact ? getBestGlobalInstanceOfVersion(service.getName(), service.getVersion(), true)
+					: getBestGlobalInstanceFitsVersion(service.getName(), service.getVersion(), true);
+			if (global != null) {
+				return global;
+			}
+			blocked = true;
 		}
 
+		if (blocked) {
+			throw new AgentNotKnownException("All known instances of this service are unavailable at the moment!");
+		}
 		throw new AgentNotKnownException("Could not find any agent for this service on the network!");
 	}
 
-	private ServiceInstance getBestGlobalInstanceFitsVersion(String name, ServiceVersion version) {
-		synchronized (globalServices) {
-			ServiceInstance result = null;
-
-			if (globalServices.containsKey(name)) {
-				SortedMap<ServiceVersion, SortedSet<ServiceInstance>> versions = globalServices.get(name);
-				Iterator<Map.Entry<ServiceVersion, SortedSet<ServiceInstance>>> it_versions = versions.entrySet()
-						.iterator();
-
-				while (it_versions.hasNext()) {
-					Map.Entry<ServiceVersion, SortedSet<ServiceInstance>> e = it_versions.next();
-
-					if (e.getKey().fits(version)) {
-						Iterator<ServiceInstance> it_instances = e.getValue().iterator();
-						while (it_instances.hasNext()) {
-							ServiceInstance i = it_instances.next();
-							if (!i.outdated()) {
-								if (result == null) {
-									result = i;
-								}
-							} else {
-								it_instances.remove();
-							}
-						}
-						if (e.getValue().isEmpty()) {
-							it_versions.remove();
-						}
-					}
+	/**
+	 * discover instances of a service not known or blocked by their circuit breakers
+	 * 
+	 * @param service
+	 * @param exact
+	 * @param acting
+	 * @param hasLocal if a local instance can be used, a failed discovery is ignored
+	 * @param blocked if all known instances are blocked
+	 * @throws AgentNotKnownException if the discovery failed and there is no local instance
+	 */
+	private void discoverInstances(ServiceNameVersion service, boolean exact, Agent acting, boolean hasLocal,
+			boolean blocked) throws AgentNotKnownException {
+		try {
+			discover(service, exact, acting);
+			ServiceInstance found = exact ? getBestGlobalInstanceOfVersion(service.getName(), service.getVersion(),
+					false) : getBestGlobalInstanceFitsVersion(service.getName(), service.getVersion(), false);
+			if (blocked && found == null) {
+				// only the blocked instances have been found again, do not discover them on every call
+				rememberNegative(service.toString() + (exact ? "#exact" : ""));
+			}
+		} catch (Exception e) {
+			if (!hasLocal) {
+				if (blocked) {
+					throw new AgentNotKnownException(
+							"All known instances of this service are unavailable at the moment!", e);
 				}
+				throw new AgentNotKnownException("Could not retrieve service information from the network.", e);
+			}
+		}
+	}
 
-				if (versions.isEmpty()) {
-					globalServices.remove(name);
-				}
+	/**
+	 * check if current global instances of a service are known, regardless of their circuit breakers
+	 * 
+	 * Only the cache is asked, no discovery is started.
+	 * 
+	 * @param service
+	 * @param exact
+	 * @return true if an instance is known that has not expired yet
+	 */
+	public boolean hasGlobalInstances(ServiceNameVersion service, boolean exact) {
+		ServiceVersionIndex<List<ServiceInstance>> versions = globalServices.get().get(service.getName());
+		if (versions == null) {
+			return false;
+		}
+		if (exact) {
+			List<ServiceInstance> instances = versions.get(service.getVersion());
+			return instances != null && !current(instances).isEmpty();
+		}
+		for (List<ServiceInstance> instances : versions.getFitting(service.getVersion())) {
+			if (!current(instances).isEmpty()) {
+				return true;
 			}
+		}
+		return false;
+	}
 
-			return result;
+	private ServiceInstance getBestGlobalInstanceFitsVersion(String name, ServiceVersion version, boolean acquire) {
+		ServiceVersionIndex<List<ServiceInstance>> versions = globalServices.get().get(name);
+		if (versions == null) {
+			return null;
+		}
+
+		// candidates are all available instances of the newest fitting version, older versions are used if all
+		// instances of the newer ones are blocked by their circuit breakers
+		for (List<ServiceInstance> instances : versions.getFitting(version)) {
+			ServiceInstance instance = selectAvailableInstance(current(instances), acquire);
+			if (instance != null) {
+				return instance;
+			}
 		}
+		return null;
 	}
 
-	private ServiceInstance getBestGlobalInstanceOfVersion(String name, ServiceVersion version) {
-		synchronized (globalServices) {
-			ServiceInstance result = null;
-
-			if (globalServices.containsKey(name) && globalServices.get(name).containsKey(version)) {
-				SortedSet<ServiceInstance> instances = globalServices.get(name).get(version);
-				Iterator<ServiceInstance> it_instances = instances.iterator();
-				while (it_instances.hasNext()) {
-					ServiceInstance i = it_instances.next();
-					if (!i.outdated()) {
-						if (result == null) {
-							result = i;
-						}
-					} else {
-						it_instances.remove();
-					}
-				}
+	private ServiceInstance getBestGlobalInstanceOfVersion(String name, ServiceVersion version, boolean acquire) {
+		ServiceVersionIndex<List<ServiceInstance>> versions = globalServices.get().get(name);
+		if (versions == null) {
+			return null;
+		}
 
-				if (instances.isEmpty()) {
-					globalServices.get(name).remove(version);
-				}
-				if (globalServices.get(name).isEmpty()) {
-					globalServices.remove(name);
-				}
+		List<ServiceInstance> instances = versions.get(version);
+		if (instances == null) {
+			return null;
+		}
+		return selectAvailableInstance(current(instances), acquire);
+	}
+
+	private static List<ServiceInstance> current(List<ServiceInstance> instances) {
+		List<ServiceInstance> result = new ArrayList<>(instances.size());
+		for (ServiceInstance instance : instances) {
+			if (!instance.outdated()) {
+				result.add(instance);
 			}
+		}
+		return result;
+	}
 
-			return result;
+	/**
+	 * choose one of the given instances, whose circuit breaker lets an invocation through
+	 * 
+	 * @param candidates
+	 * @param acquire reserve the invocation, i.e. the trial invocation of a half open breaker
+	 * @return the chosen instance or null, if no instance is available
+	 */
+	private ServiceInstance selectAvailableInstance(List<ServiceInstance> candidates, boolean acquire) {
+		List<ServiceInstance> available = new ArrayList<>(candidates.size());
+		for (ServiceInstance instance : candidates) {
+			if (getCircuitBreaker(instance).isAvailable()) {
+				available.add(instance);
+			}
+		}
+
+		while (!available.isEmpty()) {
+			ServiceInstance instance = selectInstance(available);
+			if (!acquire || getCircuitBreaker(instance).tryAcquire()) {
+				return instance;
+			}
+			// another caller got the trial invocation
+			available.remove(instance);
+		}
+		return null;
+	}
+
+	private CircuitBreaker getCircuitBreaker(ServiceInstance instance) {
+		InvocationStatistics statistics = invocationStatistics.get(new InstanceKey(instance.serviceAgentId,
+				instance.nodeId));
+		if (statistics == null) {
+			return CLOSED_BREAKER;
+		}
+		return statistics.getCircuitBreaker();
+	}
+
+	/**
+	 * choose one of the given instances of the same service version
+	 * 
+	 * Two random candidates are compared by their expected waiting time, i.e. the moving average of their round-trip
+	 * times multiplied by the number of requests still waiting for them and the load reported by their nodes. This
+	 * avoids slow or overloaded instances without sending all requests to the single fastest one.
+	 * 
+	 * @param candidates
+	 * @return the chosen instance or null, if there are no candidates
+	 */
+	ServiceInstance selectInstance(List<ServiceInstance> candidates) {
+		if (candidates.isEmpty()) {
+			return null;
+		} else if (candidates.size() == 1) {
+			return candidates.get(0);
+		}
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(candidates.size());
+		int second = random.nextInt(candidates.size() - 1);
+		if (second >= first) {
+			second++;
+		}
+		ServiceInstance a = candidates.get(first);
+		ServiceInstance b = candidates.get(second);
+
+		int result = Double.compare(getScore(a), getScore(b));
+		if (result == 0) {
+			result = Double.compare(getPressure(a), getPressure(b));
+		}
+		if (result == 0) {
+			result = a.compareTo(b);
+		}
+		return (result <= 0) ? a : b;
+	}
+
+	private double getPressure(ServiceInstance instance) {
+		InvocationStatistics statistics = invocationStatistics.get(new InstanceKey(instance.serviceAgentId,
+				instance.nodeId));
+		if (statistics == null) {
+			return 0;
+		}
+		return statistics.getPressure();
+	}
+
+	private double getScore(ServiceInstance instance) {
+		InvocationStatistics statistics = invocationStatistics.get(new InstanceKey(instance.serviceAgentId,
+				instance.nodeId));
+		if (statistics == null) {
+			// unknown instances are tried first
+			return 0;
+		}
+		return statistics.getScore();
+	}
+
+	/**
+	 * get the round-trip statistics of a global service instance, they are created on first access
+	 * 
+	 * @param serviceAgentId
+	 * @param nodeId
+	 * @return the statistics of the instance
+	 */
+	public InvocationStatistics getInvocationStatistics(long serviceAgentId, Object nodeId) {
+		return invocationStatistics.computeIfAbsent(new InstanceKey(serviceAgentId, nodeId),
+				k -> new InvocationStatistics(new CircuitBreaker(breakerFailureThreshold, breakerCooldownMs,
+						(breaker, from, to) -> circuitChanged(serviceAgentId, nodeId, from, to))));
+	}
+
+	private void circuitChanged(long serviceAgentId, Object nodeId, CircuitBreaker.State from,
+			CircuitBreaker.State state) {
+		if (from == CircuitBreaker.State.CLOSED) {
+			openBreakers.incrementAndGet();
+		} else if (state == CircuitBreaker.State.CLOSED) {
+			openBreakers.decrementAndGet();
+		}
+		String remarks = "circuit of service agent " + serviceAgentId + " at node " + nodeId + " is " + state;
+		if (state == CircuitBreaker.State.OPEN) {
+			breakersOpened.inc();
+			runningAt.observerNotice(Event.RMI_CIRCUIT_OPENED, runningAt.getNodeId(), remarks);
+		} else if (state == CircuitBreaker.State.HALF_OPEN) {
+			runningAt.observerNotice(Event.RMI_CIRCUIT_HALF_OPEN, runningAt.getNodeId(), remarks);
+		} else {
+			breakersClosed.inc();
+			runningAt.observerNotice(Event.RMI_CIRCUIT_CLOSED, runningAt.getNodeId(), remarks);
+		}
+	}
+
+	/**
+	 * remove the statistics of instances that have not been invoked for a while
+	 */
+	public void removeStaleStatistics() {
+		long now = System.currentTimeMillis();
+		invocationStatistics.values().removeIf(s -> s.getOutstanding() == 0 && s.isStale(now)
+				&& s.getCircuitBreaker().getState() == CircuitBreaker.State.CLOSED);
+	}
+
+	/**
+	 * store the load reported for a global service instance
+	 * 
+	 * @param instance
+	 * @param load the reported load, may be null
+	 */
+	private void updateLoad(ServiceInstance instance, LoadDescriptor load) {
+		if (load != null) {
+			instance.cpuLoad = load.getCpuLoad();
+			instance.runningInvocations = load.getExecuting();
+			getInvocationStatistics(instance.serviceAgentId, instance.nodeId).updateLoad(load);
 		}
 	}
 
@@ -219,49 +548,198 @@ public class NodeServiceCache {
 	 * 
 	 * @param instance
 	 */
-	private void addGlobalServiceInstance(ServiceInstance instance) {
+	void addGlobalServiceInstance(ServiceInstance instance) {
+		updateGlobalInstances(instance.service, instances -> {
+			// replace an already known entry of the same instance
+			instances.removeIf(i -> i.equals(instance));
+			instances.add(instance);
+		});
+
+		String name = instance.service.getName() + "@";
+		negativeEntries.keySet().removeIf(k -> k.startsWith(name));
+	}
+
+	/**
+	 * removes a global service instance
+	 * 
+	 * to be called when an instance is detected as not available
+	 * 
+	 * @param instance
+	 */
+	public void removeGlobalServiceInstance(ServiceInstance instance) {
+		updateGlobalInstances(instance.service, instances -> instances.removeIf(i -> i.equals(instance)));
+	}
+
+	/**
+	 * removes all outdated global service instances
+	 */
+	public void removeOutdatedGlobalServiceInstances() {
 		synchronized (globalServices) {
-			SortedMap<ServiceVersion, SortedSet<ServiceInstance>> versions = globalServices
-					.get(instance.service.getName());
+			Map<String, ServiceVersionIndex<List<ServiceInstance>>> updated = new HashMap<>();
+			for (Map.Entry<String, ServiceVersionIndex<List<ServiceInstance>>> e : globalServices.get().entrySet()) {
+				ServiceVersionIndex<List<ServiceInstance>> versions = e.getValue();
+				for (List<ServiceInstance> instances : e.getValue().values()) {
+					List<ServiceInstance> current = current(instances);
+					if (current.size() != instances.size()) {
+						ServiceVersion version = instances.get(0).service.getVersion();
+						versions = current.isEmpty() ? versions.without(version) : versions.with(version,
+								Collections.unmodifiableList(current));
+					}
+				}
+				if (!versions.isEmpty()) {
+					updated.put(e.getKey(), versions);
+				}
+			}
+			globalServices.set(Collections.unmodifiableMap(updated));
+		}
+	}
 
+	/**
+	 * replace the instances of a service version in the global cache
+	 * 
+	 * Writers are serialized, readers keep using the previous snapshot until the new one is published.
+	 * 
+	 * @param service
+	 * @param modification modifies a copy of the current instances, outdated instances have already been removed
+	 */
+	private void updateGlobalInstances(ServiceNameVersion service, Consumer<List<ServiceInstance>> modification) {
+		synchronized (globalServices) {
+			Map<String, ServiceVersionIndex<List<ServiceInstance>>> snapshot = globalServices.get();
+			ServiceVersionIndex<List<ServiceInstance>> versions = snapshot.get(service.getName());
 			if (versions == null) {
-				versions = new TreeMap<>(Comparator.comparing((ServiceVersion s) -> s).reversed());
-				globalServices.put(instance.service.getName(), versions);
+				versions = ServiceVersionIndex.empty();
 			}
 
-			SortedSet<ServiceInstance> instances = versions.get(instance.service.getVersion());
-			if (instances == null) {
-				instances = new TreeSet<>();
-				versions.put(instance.service.getVersion(), instances);
+			List<ServiceInstance> instances = versions.get(service.getVersion());
+			instances = (instances == null) ? new ArrayList<>() : current(instances);
+			modification.accept(instances);
+			Collections.sort(instances);
+
+			if (instances.isEmpty()) {
+				versions = versions.without(service.getVersion());
+			} else {
+				versions = versions.with(service.getVersion(), Collections.unmodifiableList(instances));
 			}
 
-			if (!instances.contains(instance)) {
-				instances.add(instance);
+			Map<String, ServiceVersionIndex<List<ServiceInstance>>> updated = new HashMap<>(snapshot);
+			if (versions.isEmpty()) {
+				updated.remove(service.getName());
+			} else {
+				updated.put(service.getName(), versions);
 			}
+			globalServices.set(Collections.unmodifiableMap(updated));
 		}
 	}
 
 	/**
-	 * removes a global service instance
+	 * search for services in the network, unless the same search recently found nothing or is already in progress
 	 * 
-	 * to be called when an instance is detected as not available
+	 * @param service
+	 * @param exact
+	 * @param acting
+	 * @return true if instances have been found
+	 * @throws Exception if the search failed, the exceptions of {@link #update(ServiceNameVersion, boolean, Agent)}
+	 */
+	private boolean discover(ServiceNameVersion service, boolean exact, Agent acting) throws Exception {
+		return discover(service, exact, acting, false);
+	}
+
+	/**
+	 * search for services in the network, unless the same search recently found nothing or is already in progress
 	 * 
-	 * @param instance
+	 * @param service
+	 * @param exact
+	 * @param acting
+	 * @param refresh true for a refresh of known instances, whose failure is not cached as a negative result
+	 * @return true if instances have been found
+	 * @throws Exception if the search failed, the exceptions of {@link #update(ServiceNameVersion, boolean, Agent)}
 	 */
-	public void removeGlobalServiceInstance(ServiceInstance instance) {
-		synchronized (globalServices) {
-			if (globalServices.containsKey(instance.service.getName())
-					&& globalServices.get(instance.service.getName()).containsKey(instance.service.getVersion())) {
-				globalServices.get(instance.service.getName()).get(instance.service.getVersion()).remove(instance);
+	private boolean discover(ServiceNameVersion service, boolean exact, Agent acting, boolean refresh)
+			throws Exception {
+		String key = service.toString() + (exact ? "#exact" : "");
+
+		Long until = negativeEntries.get(key);
+		if (until != null) {
+			if (until > System.currentTimeMillis()) {
+				discoveriesSuppressed.inc();
+				throw new AgentNotKnownException("No instance of " + service + " found by a recent discovery");
+			}
+			negativeEntries.remove(key, until);
+		}
 
-				if (globalServices.get(instance.service.getName()).get(instance.service.getVersion()).size() == 0) {
-					globalServices.get(instance.service.getName()).remove(instance.service.getVersion());
+		CompletableFuture<Boolean> discovery = new CompletableFuture<>();
+		CompletableFuture<Boolean> running = discoveriesInFlight.putIfAbsent(key, discovery);
+		if (running != null) {
+			// wait for the discovery of another caller
+			discoveriesSuppressed.inc();
+			try {
+				return running.get();
+			} catch (ExecutionException e) {
+				throw (Exception) e.getCause();
+			}
+		}
 
-					if (globalServices.get(instance.service.getName()).size() == 0) {
-						globalServices.remove(instance.service.getName());
-					}
-				}
+		try {
+			boolean found = update(service, exact, acting);
+			if (!found && !refresh) {
+				rememberNegative(key);
 			}
+			discovery.complete(found);
+			return found;
+		} catch (TimeoutException e) {
+			if (!refresh) {
+				rememberNegative(key);
+			}
+			discovery.completeExceptionally(e);
+			throw e;
+		} catch (Exception e) {
+			discovery.completeExceptionally(e);
+			throw e;
+		} finally {
+			discoveriesInFlight.remove(key, discovery);
+		}
+	}
+
+	/**
+	 * start a discovery in the background, if the given entry is used frequently and about to expire
+	 * 
+	 * The discovery is sent by the anonymous agent of the node, since it runs after the request triggering it has
+	 * returned. A failed refresh is not cached as a negative result, the known instances may still work.
+	 * 
+	 * @param service
+	 * @param exact
+	 * @param instance the instance found for the request
+	 */
+	private void refreshAhead(ServiceNameVersion service, boolean exact, ServiceInstance instance) {
+		if (refreshAheadFraction <= 0) {
+			return;
+		}
+		String key = service.toString() + (exact ? "#exact" : "");
+		AtomicLong accesses = accessCounts.computeIfAbsent(key, k -> new AtomicLong());
+		if (accesses.incrementAndGet() < refreshAheadMinAccesses || !instance.dueForRefresh()
+				|| discoveriesInFlight.containsKey(key)) {
+			return;
+		}
+
+		accesses.set(0);
+		try {
+			// the discovery blocks until the answers arrive, so it must not hold a housekeeping thread
+			runningAt.getThreadPools().execute(NodeThreadPools.Concern.DISCOVERY, () -> {
+				try {
+					discover(service, exact, runningAt.getAnonymous(), true);
+				} catch (Exception e) {
+					logger.fine("refresh of " + service + " failed: " + e);
+				}
+			});
+			discoveriesRefreshed.inc();
+		} catch (RejectedExecutionException e) {
+			// too many refreshes running or node is shutting down, the entry is refreshed on expiry
+		}
+	}
+
+	private void rememberNegative(String key) {
+		if (negativeLifeTimeSeconds > 0) {
+			negativeEntries.put(key, System.currentTimeMillis() + negativeLifeTimeSeconds * 1000);
 		}
 	}
 
@@ -286,42 +764,230 @@ public class NodeServiceCache {
 		Message m = new Message(acting, ServiceAgent.serviceNameToTopicId(service.getName()),
 				new ServiceDiscoveryContent(service, exact), timeoutMs);
 		m.setSendingNodeId(runningAt.getNodeId());
-		Message[] results = runningAt.sendMessageAndCollectAnswers(m, waitForResults);
+		discoveriesSent.inc();
+		DiscoveryListener listener = new DiscoveryListener(service, acting);
+		runningAt.sendMessage(m, listener, Node.SendMode.BROADCAST);
+		listener.waitForAllAnswers(false);
 
-		if (results.length > 0) {
-			boolean added = false;
-			long i = 1;
-			for (Message res : results) {
-				try {
-					res.open(acting, runningAt);
-				} catch (Exception e) {
-					// XXX logging
+		if (listener.getNumberOfResults() == 0) {
+			throw new TimeoutException("No answer received!");
+		}
+		List<ServiceInstance> instances = listener.getInstances();
+		for (ServiceInstance instance : instances) {
+			addGlobalServiceInstance(instance);
+		}
+		return !instances.isEmpty();
+	}
+
+	/**
+	 * collects the instances listed by the answers to a discovery
+	 * 
+	 * Each node answers once for all its matching service agents, so the discovery is finished once the expected number
+	 * of instances is received, no matter how many nodes they are running at.
+	 */
+	private class DiscoveryListener extends MessageResultListener {
+
+		private final ServiceNameVersion service;
+		private final Agent acting;
+		private final List<ServiceInstance> instances = new ArrayList<>();
+
+		private DiscoveryListener(ServiceNameVersion service, Agent acting) {
+			super(timeoutMs, 0);
+			this.service = service;
+			this.acting = acting;
+		}
+
+		@Override
+		public synchronized void collectAnswer(Message answer) {
+			instances.addAll(instancesOf(answer));
+			super.collectAnswer(answer);
+		}
+
+		@Override
+		public synchronized boolean isFinished() {
+			return instances.size() >= waitForResults || isTimedOut();
+		}
+
+		private synchronized List<ServiceInstance> getInstances() {
+			return new ArrayList<>(instances);
+		}
+
+		private List<ServiceInstance> instancesOf(Message answer) {
+			List<ServiceInstance> result = new ArrayList<>();
+			try {
+				answer.open(acting, runningAt);
+			} catch (Exception e) {
+				// XXX logging
+				return result;
+			}
+			Object content;
+			try {
+				content = answer.getContent();
+			} catch (L2pSecurityException e) {
+				return result;
+			}
+			if (!(content instanceof ServiceDiscoveryContent)) {
+				// XXX logging
+				return result;
+			}
+
+			ServiceDiscoveryContent discovery = (ServiceDiscoveryContent) content;
+			if (!discovery.getInstances().containsKey(answer.getSenderId())) {
+				// the answer has to be signed by one of the listed service agents
+				return result;
+			}
+
+			// the signer vouches for the other agents at its node, but only for instances of the requested
+			// service, invocations are addressed to and answered by each agent itself anyway
+			for (Map.Entry<Long, ServiceNameVersion> entry : discovery.getInstances().entrySet()) {
+				if (!entry.getValue().getName().equals(service.getName())) {
 					continue;
 				}
+				ServiceInstance instance = new ServiceInstance(entry.getValue(), entry.getKey(),
+						answer.getSendingNodeId());
+				updateLoad(instance, discovery.getLoad());
+				result.add(instance);
+			}
+			return result;
+		}
 
-				if (!(res.getContent() instanceof ServiceDiscoveryContent)) {
-					// XXX logging
-					continue;
+	}
+
+	/**
+	 * answer a discovery request sent to a service topic once for all matching local service agents
+	 * 
+	 * The answer is signed by one of the matching service agents and lists all of them together with the load of this
+	 * node and, if requested, their method listings. So the signature of one agent vouches for the ids and versions of
+	 * the other agents of this node. Requesters only accept the listed instances of the requested service.
+	 * 
+	 * Only messages claiming to contain a discovery request are opened, other messages are passed on unopened.
+	 * 
+	 * @param message a message sent to the topic of a service
+	 * @return false if the message does not contain a discovery request and has to be passed to the topic's listeners
+	 * @throws MessageException if the request can not be opened or answered
+	 * @throws L2pSecurityException
+	 * @throws AgentNotKnownException
+	 */
+	public boolean answerDiscovery(Message message) throws MessageException, L2pSecurityException,
+			AgentNotKnownException {
+		if (!ServiceDiscoveryContent.class.getCanonicalName().equals(message.getTopicContentClass())) {
+			return false;
+		}
+		Object opened;
+		try {
+			message.open(runningAt);
+			opened = message.getContent();
+		} catch (L2pSecurityException | AgentNotKnownException e) {
+			throw new MessageException("security problems", e);
+		}
+		if (!(opened instanceof ServiceDiscoveryContent)) {
+			throw new MessageException("message claims to contain a discovery request, but it does not");
+		}
+
+		ServiceDiscoveryContent content = (ServiceDiscoveryContent) opened;
+		if (!content.isRequest()) {
+			throw new MessageException("Got a ServiceDiscovery response - can't handle it!");
+		}
+		if (message.getSendingNodeId() == null) {
+			throw new MessageException("If no sendind node is given - where should I send the answer to?!");
+		}
+
+		// only answer if requirements are met
+		ServiceVersionIndex<ServiceInstance> versions = localServices.get().get(content.getService().getName());
+		if (versions == null) {
+			return true;
+		}
+		ServiceAgent signer = null;
+		LinkedHashMap<Long, ServiceNameVersion> matching = new LinkedHashMap<>();
+		for (ServiceInstance instance : versions.values()) {
+			if (content.accepts(instance.getService())) {
+				if (signer == null) {
+					signer = instance.getServiceAgent();
 				}
+				matching.put(instance.getServiceAgent().getId(), instance.getService());
+			}
+		}
+		if (signer == null) {
+			return true;
+		}
 
-				ServiceInstance instance = new ServiceInstance(
-						((ServiceDiscoveryContent) res.getContent()).getService(), res.getSenderId(),
-						res.getSendingNodeId());
+		ServiceDiscoveryContent result = new ServiceDiscoveryContent(matching, runningAt.getLoadDescriptor());
+		if (content.isIncludeMethods()) {
+			for (ServiceInstance instance : versions.values()) {
+				if (matching.containsKey(instance.getServiceAgent().getId())) {
+					result.addMethods(instance.getServiceAgent().getId(), instance.getServiceAgent().getMethodList());
+				}
+			}
+		}
 
-				// ok, should be replaced by a real measure in future...
-				instance.responseTimeMs = i;
+		try {
+			Message response = new Message(message, signer, result, Message.DEFAULT_TIMEOUT);
+			response.setSendingNodeId(runningAt.getNodeId());
+			runningAt.sendResponse(response, message.getSendingNodeId());
+			discoveriesAnswered.inc();
+		} catch (EncodingFailedException | SerializationException e) {
+			throw new MessageException("message problems", e);
+		} catch (NodeNotFoundException e) {
+			throw new MessageException("answer destination not found", e);
+		}
+		return true;
+	}
 
-				addGlobalServiceInstance(instance);
+	/**
+	 * handle a service announcement of another node
+	 * 
+	 * The announcement is only accepted, if it is signed by a service agent running the announced service.
+	 * 
+	 * @param message a message containing a {@link ServiceAnnouncementContent}
+	 */
+	public void receiveAnnouncement(Message message) {
+		if (message.getSendingNodeId() == null || message.getSendingNodeId().equals(runningAt.getNodeId())) {
+			// own services are known locally
+			return;
+		}
 
-				added = true;
+		try {
+			message.open(runningAt);
 
-				i++;
+			if (!(message.getContent() instanceof ServiceAnnouncementContent)) {
+				throw new L2pSecurityException("unexpected content on announcement topic: "
+						+ message.getContent().getClass().getName());
+			}
+			ServiceAnnouncementContent content = (ServiceAnnouncementContent) message.getContent();
+			if (!(message.getSender() instanceof ServiceAgent)
+					|| !((ServiceAgent) message.getSender()).getServiceNameVersion().equals(content.getService())) {
+				throw new L2pSecurityException("announcement of " + content.getService()
+						+ " is not signed by a corresponding service agent");
 			}
 
-			return added;
-		} else {
-			return false;
+			ServiceInstance instance = new ServiceInstance(content.getService(), message.getSenderId(),
+					message.getSendingNodeId());
+			if (content.isWithdrawn()) {
+				removeGlobalServiceInstance(instance);
+			} else {
+				updateLoad(instance, content.getLoad());
+				addGlobalServiceInstance(instance);
+			}
+			announcementsReceived.inc();
+		} catch (L2pSecurityException | AgentNotKnownException e) {
+			announcementsRejected.inc();
+			logger.warning("rejected service announcement from node " + message.getSendingNodeId() + ": " + e);
+		}
+	}
+
+	/**
+	 * get all locally registered service agents
+	 * 
+	 * @return the local service agents
+	 */
+	public List<ServiceAgent> getLocalServiceAgents() {
+		ArrayList<ServiceAgent> result = new ArrayList<>();
+		for (ServiceVersionIndex<ServiceInstance> versions : localServices.get().values()) {
+			for (ServiceInstance instance : versions.values()) {
+				result.add(instance.getServiceAgent());
+			}
 		}
+		return result;
 	}
 
 	/**
@@ -333,15 +999,18 @@ public class NodeServiceCache {
 		synchronized (localServices) {
 			ServiceNameVersion service = agent.getServiceNameVersion();
 
-			SortedMap<ServiceVersion, ServiceInstance> versions = localServices.get(service.getName());
+			Map<String, ServiceVersionIndex<ServiceInstance>> snapshot = localServices.get();
+			ServiceVersionIndex<ServiceInstance> versions = snapshot.get(service.getName());
 			if (versions == null) {
-				versions = new TreeMap<>(Comparator.comparing((ServiceVersion s) -> s).reversed());
-				localServices.put(service.getName(), versions);
+				versions = ServiceVersionIndex.empty();
 			}
 
-			if (!versions.containsKey(service.getVersion())) {
-				versions.put(service.getVersion(), new ServiceInstance(agent));
-			} else if (versions.get(service.getVersion()).getServiceAgent() != agent) {
+			ServiceInstance registered = versions.get(service.getVersion());
+			if (registered == null) {
+				Map<String, ServiceVersionIndex<ServiceInstance>> updated = new HashMap<>(snapshot);
+				updated.put(service.getName(), versions.with(service.getVersion(), new ServiceInstance(agent)));
+				localServices.set(Collections.unmodifiableMap(updated));
+			} else if (registered.getServiceAgent() != agent) {
 				throw new IllegalStateException(
 						"Another ServiceAgent running the same Service is present on this Node - something went wrong!");
 			}
@@ -357,21 +1026,28 @@ public class NodeServiceCache {
 		synchronized (localServices) {
 			ServiceNameVersion service = agent.getServiceNameVersion();
 
-			Map<ServiceVersion, ServiceInstance> versions = localServices.get(service.getName());
+			Map<String, ServiceVersionIndex<ServiceInstance>> snapshot = localServices.get();
+			ServiceVersionIndex<ServiceInstance> versions = snapshot.get(service.getName());
 			if (versions == null) {
 				return;
 			}
-			if (versions.get(service.getVersion()) == null) {
+			ServiceInstance registered = versions.get(service.getVersion());
+			if (registered == null) {
 				return;
 			}
-			if (versions.get(service.getVersion()).getServiceAgent() != agent) {
+			if (registered.getServiceAgent() != agent) {
 				throw new IllegalStateException(
 						"Another ServiceAgent running the same Service is present on this Node - something went wrong!");
 			}
-			versions.remove(service.getVersion());
-			if (versions.size() == 0) {
-				localServices.remove(service.getName());
+
+			versions = versions.without(service.getVersion());
+			Map<String, ServiceVersionIndex<ServiceInstance>> updated = new HashMap<>(snapshot);
+			if (versions.isEmpty()) {
+				updated.remove(service.getName());
+			} else {
+				updated.put(service.getName(), versions);
 			}
+			localServices.set(Collections.unmodifiableMap(updated));
 		}
 	}
 
@@ -383,16 +1059,191 @@ public class NodeServiceCache {
 	 * @throws AgentNotKnownException
 	 */
 	public ServiceAgent getLocalService(ServiceNameVersion service) throws AgentNotKnownException {
-		synchronized (localServices) {
-			Map<ServiceVersion, ServiceInstance> versions = localServices.get(service.getName());
-			if (versions == null) {
-				throw new AgentNotKnownException("No local agent registered for this service!");
+		ServiceVersionIndex<ServiceInstance> versions = localServices.get().get(service.getName());
+		ServiceInstance instance = (versions != null) ? versions.get(service.getVersion()) : null;
+		if (instance == null) {
+			throw new AgentNotKnownException("No local agent registered for this service!");
+		}
+		return instance.getServiceAgent();
+	}
+
+	/**
+	 * identifies a global service instance for its statistics
+	 */
+	private static class InstanceKey {
+		private final long serviceAgentId;
+		private final Object nodeId;
+
+		private InstanceKey(long serviceAgentId, Object nodeId) {
+			this.serviceAgentId = serviceAgentId;
+			this.nodeId = nodeId;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof InstanceKey)) {
+				return false;
+			}
+			InstanceKey o = (InstanceKey) other;
+			return serviceAgentId == o.serviceAgentId && Objects.equals(nodeId, o.nodeId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(serviceAgentId) ^ Objects.hashCode(nodeId);
+		}
+	}
+
+	/**
+	 * round-trip times and outstanding requests of a global service instance, as measured by this node, and the load
+	 * last reported by the instance's node
+	 */
+	public static class InvocationStatistics {
+		private final CircuitBreaker circuitBreaker;
+		private final AtomicInteger outstanding = new AtomicInteger();
+		private double rttMs = -1;
+		private long samples;
+		private long lastSample;
+		private LoadDescriptor load;
+		private long lastLoad;
+
+		private InvocationStatistics(CircuitBreaker circuitBreaker) {
+			this.circuitBreaker = circuitBreaker;
+		}
+
+		/**
+		 * the circuit breaker of the instance
+		 * 
+		 * @return circuit breaker
+		 */
+		public CircuitBreaker getCircuitBreaker() {
+			return circuitBreaker;
+		}
+
+		/**
+		 * to be called before a request is sent to the instance
+		 * 
+		 * @return start time to be passed to {@link #finished(long)}
+		 */
+		public long started() {
+			outstanding.incrementAndGet();
+			return System.nanoTime();
+		}
+
+		/**
+		 * to be called when the answer has been received
+		 * 
+		 * @param startNanos the value returned by {@link #started()}
+		 */
+		public void finished(long startNanos) {
+			completed((System.nanoTime() - startNanos) / 1000000L);
+		}
+
+		/**
+		 * to be called when the answer to a request started with {@link #started()} has been received
+		 * 
+		 * @param rttMs measured round-trip time
+		 */
+		public void completed(long rttMs) {
+			outstanding.decrementAndGet();
+			record(rttMs);
+		}
+
+		/**
+		 * to be called when a request started with {@link #started()} got no answer, because it could not be sent,
+		 * timed out or the instance was not reachable
+		 * 
+		 * No sample is recorded, since the time until a failure is no round-trip time. Failing instances are avoided by
+		 * their circuit breaker instead.
+		 */
+		public void aborted() {
+			outstanding.decrementAndGet();
+		}
+
+		/**
+		 * store the load reported by the instance's node
+		 * 
+		 * @param load
+		 */
+		public synchronized void updateLoad(LoadDescriptor load) {
+			if (load != null) {
+				this.load = load;
+				this.lastLoad = System.currentTimeMillis();
+			}
+		}
+
+		/**
+		 * the load last reported by the instance's node
+		 * 
+		 * @return load or null, if no recent load is known
+		 */
+		public synchronized LoadDescriptor getLoad() {
+			if (load == null || lastLoad + RTT_MAX_AGE_MS < System.currentTimeMillis()) {
+				return null;
+			}
+			return load;
+		}
+
+		/**
+		 * the pressure of the last reported load
+		 * 
+		 * @return pressure, 0 if no recent load is known
+		 */
+		public double getPressure() {
+			LoadDescriptor current = getLoad();
+			return (current != null) ? current.getPressure() : 0;
+		}
+
+		/**
+		 * add a round-trip time sample to the moving average
+		 * 
+		 * @param sampleMs
+		 */
+		public synchronized void record(long sampleMs) {
+			if (rttMs < 0) {
+				rttMs = sampleMs;
+			} else {
+				rttMs = RTT_EWMA_WEIGHT * sampleMs + (1 - RTT_EWMA_WEIGHT) * rttMs;
 			}
-			ServiceInstance instance = versions.get(service.getVersion());
-			if (instance == null) {
-				throw new AgentNotKnownException("No local agent registered for this service!");
+			samples++;
+			lastSample = System.currentTimeMillis();
+		}
+
+		/**
+		 * moving average of the round-trip times
+		 * 
+		 * @return average in milliseconds or -1, if no sample has been recorded
+		 */
+		public synchronized double getRttMs() {
+			return rttMs;
+		}
+
+		public synchronized long getSamples() {
+			return samples;
+		}
+
+		public int getOutstanding() {
+			return outstanding.get();
+		}
+
+		private synchronized boolean isStale(long now) {
+			return (samples == 0 || lastSample + RTT_MAX_AGE_MS < now) && (load == null || lastLoad
+					+ RTT_MAX_AGE_MS < now);
+		}
+
+		/**
+		 * expected waiting time for a new request, lower is better
+		 * 
+		 * The measured round-trip time is scaled by the load the node reported, so hot nodes are avoided before their
+		 * round-trip times grow.
+		 * 
+		 * @return score, 0 if no recent sample is known
+		 */
+		public synchronized double getScore() {
+			if (samples == 0 || lastSample + RTT_MAX_AGE_MS < System.currentTimeMillis()) {
+				return 0;
 			}
-			return instance.getServiceAgent();
+			return rttMs * (outstanding.get() + 1) * (1 + getPressure());
 		}
 	}
 
@@ -401,16 +1252,19 @@ public class NodeServiceCache {
 	 *
 	 */
 	public class ServiceInstance implements Comparable<ServiceInstance> {
-		private ServiceNameVersion service;
+		private final ServiceNameVersion service;
 
-		private boolean isLocal;
+		private final boolean isLocal;
 
-		private ServiceAgent agent;
+		private final ServiceAgent agent;
 
-		long serviceAgentId;
-		Object nodeId;
-		long responseTimeMs;
-		private long lastSeen;
+		final long serviceAgentId;
+		final Object nodeId;
+		// updated while the instance is shared by the lookup snapshots
+		volatile double cpuLoad;
+		volatile int runningInvocations;
+		private volatile long lastSeen;
+		private volatile long refreshAt;
 
 		/**
 		 * create a local service instance
@@ -421,6 +1275,8 @@ public class NodeServiceCache {
 			this.isLocal = true;
 			this.agent = agent;
 			this.service = agent.getServiceNameVersion();
+			this.serviceAgentId = 0;
+			this.nodeId = null;
 			touch();
 		}
 
@@ -434,6 +1290,7 @@ public class NodeServiceCache {
 		public ServiceInstance(ServiceNameVersion service, long serviceAgentId, Object nodeId) {
 			this.service = service;
 			this.isLocal = false;
+			this.agent = null;
 			this.serviceAgentId = serviceAgentId;
 			this.nodeId = nodeId;
 			touch();
@@ -454,10 +1311,18 @@ public class NodeServiceCache {
 			if (this.isLocal) {
 				return this.agent.equals(o.agent);
 			} else {
-				return this.serviceAgentId == o.serviceAgentId && this.nodeId == o.nodeId;
+				return this.serviceAgentId == o.serviceAgentId && Objects.equals(this.nodeId, o.nodeId);
 			}
 		}
 
+		@Override
+		public int hashCode() {
+			if (isLocal) {
+				return agent.hashCode();
+			}
+			return Long.hashCode(serviceAgentId) ^ Objects.hashCode(nodeId);
+		}
+
 		@Override
 		public int compareTo(ServiceInstance other) {
 			// this decides which service agents are preferred
@@ -465,18 +1330,35 @@ public class NodeServiceCache {
 				throw new NullPointerException();
 			}
 
-			if (this.responseTimeMs < other.responseTimeMs) {
-				return -1;
-			} else if (this.responseTimeMs == other.responseTimeMs) {
-				return 0;
+			if (this.cpuLoad != other.cpuLoad) {
+				// prefer less loaded nodes
+				return Double.compare(this.cpuLoad, other.cpuLoad);
+			} else if (this.runningInvocations != other.runningInvocations) {
+				return Integer.compare(this.runningInvocations, other.runningInvocations);
+			} else if (this.serviceAgentId != other.serviceAgentId) {
+				return Long.compare(this.serviceAgentId, other.serviceAgentId);
 			} else {
-				// (this.responseTimeMs > other.responseTimeMs)
-				return 1;
+				// different instances must not be considered equal by the sorted sets
+				return String.valueOf(this.nodeId).compareTo(String.valueOf(other.nodeId));
 			}
 		}
 
 		public void touch() {
-			this.lastSeen = System.currentTimeMillis() / 1000L;
+			long now = System.currentTimeMillis();
+			this.lastSeen = now / 1000L;
+			// refresh within the last fraction of the lifetime, a random part of it earlier
+			double refreshBefore = refreshAheadFraction * (1 + refreshAheadJitter * ThreadLocalRandom.current()
+					.nextDouble());
+			this.refreshAt = now + (long) (lifeTimeSeconds * 1000 * (1 - Math.min(1, refreshBefore)));
+		}
+
+		/**
+		 * check if this entry should be refreshed before it is outdated
+		 * 
+		 * @return true if the refresh point has passed
+		 */
+		public boolean dueForRefresh() {
+			return !isLocal && refreshAt <= System.currentTimeMillis();
 		}
 
 		public boolean outdated() {
@@ -502,6 +1384,24 @@ public class NodeServiceCache {
 		public Object getNodeId() {
 			return nodeId;
 		}
+
+		/**
+		 * cpu load of the node running this instance, as announced by the node
+		 * 
+		 * @return value between 0 and 1
+		 */
+		public double getCpuLoad() {
+			return cpuLoad;
+		}
+
+		/**
+		 * number of running invocations at the node running this instance, as announced by the node
+		 * 
+		 * @return
+		 */
+		public int getRunningInvocations() {
+			return runningInvocations;
+		}
 	}
 
 }
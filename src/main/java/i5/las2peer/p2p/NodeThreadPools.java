@@ -0,0 +1,447 @@
+package i5.las2peer.p2p;
+
+import java.util.EnumMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import i5.las2peer.execution.L2pThread;
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.logging.metrics.Counter;
+import i5.las2peer.logging.metrics.MetricsRegistry;
+
+/**
+ * The thread pools of a node, separated by concern, so that e.g. a slow storage can not starve message delivery.
+ *
+ * Each pool has a maximum number of threads and a maximum number of queued tasks. If the queue is full, the task is
+ * rejected and counted, it is never executed in the calling thread, which often is a network thread. The queues of
+ * the response and the housekeeping pool are not bounded, so responses and timers are never dropped. Threads are
+ * named after the node and the concern and the pool sizes, queue lengths and rejections are reported to the metrics
+ * of the node.
+ *
+ * Pool sizes are given as a comma separated list of <i>concern=threads[:queue]</i> entries, e.g.
+ * <code>delivery=32:2000,storage=8</code>. Concerns not listed use their default sizes, the unbounded queues of the
+ * response and the housekeeping pool can not be sized.
+ *
+ * Service methods are always executed in their own {@link L2pThread}, since the service context is bound to it. The
+ * execution pool therefore limits the number of concurrently running and waiting L2pThreads, see
+ * {@link #startExecution(L2pThread)}.
+ *
+ */
+public class NodeThreadPools {
+
+	private static final L2pLogger logger = L2pLogger.getInstance(NodeThreadPools.class);
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	/**
+	 * the concerns, each handled by a separate pool
+	 */
+	public enum Concern {
+		/**
+		 * handing over received messages to the node
+		 */
+		DELIVERY(16, 1000),
+		/**
+		 * handing over responses to the waiting senders, the queue of this pool is not bounded
+		 */
+		RESPONSE(4, 0),
+		/**
+		 * execution of service methods
+		 */
+		EXECUTION(32, 256),
+		/**
+		 * storage callbacks and lookups
+		 */
+		STORAGE(32, 1000),
+		/**
+		 * signing, verification and encryption off the network threads
+		 */
+		CRYPTO(Math.max(2, Runtime.getRuntime().availableProcessors()), 500),
+		/**
+		 * background service discoveries, which block while waiting for answers
+		 */
+		DISCOVERY(4, 64),
+		/**
+		 * reading envelopes with more parts than fit into the fetch window, which blocks until the parts arrive
+		 */
+		READER(8, 32),
+		/**
+		 * timers and periodic tasks, the queue of this pool is not bounded
+		 */
+		HOUSEKEEPING(2, 0);
+
+		private final int defaultThreads;
+		private final int defaultQueue;
+
+		private Concern(int defaultThreads, int defaultQueue) {
+			this.defaultThreads = defaultThreads;
+			this.defaultQueue = defaultQueue;
+		}
+
+		public int getDefaultThreads() {
+			return defaultThreads;
+		}
+
+		public int getDefaultQueue() {
+			return defaultQueue;
+		}
+
+		/**
+		 * @return false, if tasks of this concern are never rejected because of a full queue
+		 */
+		public boolean isQueueBounded() {
+			return defaultQueue > 0;
+		}
+
+		public String getName() {
+			return name().toLowerCase();
+		}
+	}
+
+	private final String name;
+	private final MetricsRegistry metrics;
+	private final EnumMap<Concern, int[]> sizes = new EnumMap<>(Concern.class);
+	private final EnumMap<Concern, ExecutorService> pools = new EnumMap<>(Concern.class);
+
+	private Semaphore executionPermits;
+	private final AtomicInteger executionWaiting = new AtomicInteger();
+	private final ConcurrentLinkedQueue<L2pThread> executionQueue = new ConcurrentLinkedQueue<>();
+	private boolean shutDown = false;
+
+	/**
+	 * create the (not yet started) thread pools of a node
+	 *
+	 * @param name prefix for the thread names
+	 * @param metrics registry to report the pool metrics to
+	 */
+	public NodeThreadPools(String name, MetricsRegistry metrics) {
+		this.name = name;
+		this.metrics = metrics;
+		for (Concern concern : Concern.values()) {
+			sizes.put(concern, new int[] { concern.getDefaultThreads(), concern.getDefaultQueue() });
+		}
+	}
+
+	/**
+	 * set the size of the pool for the given concern
+	 *
+	 * @param concern
+	 * @param threads maximum number of threads
+	 * @param queue maximum number of waiting tasks, 0 for the pools with unbounded queues
+	 * @throws IllegalStateException if the pool has already been started
+	 * @throws IllegalArgumentException if the size is invalid
+	 */
+	public synchronized void setSize(Concern concern, int threads, int queue) {
+		checkSize(concern, threads, queue);
+		sizes.put(concern, new int[] { threads, queue });
+	}
+
+	/**
+	 * set the sizes of several pools, either all of them or, if one entry is invalid, none
+	 *
+	 * @param spec comma separated list of <i>concern=threads[:queue]</i> entries
+	 * @throws IllegalStateException if one of the pools has already been started
+	 * @throws IllegalArgumentException if the specification can not be parsed or a size is invalid
+	 */
+	public synchronized void setSizes(String spec) {
+		if (spec == null || spec.trim().isEmpty()) {
+			return;
+		}
+		EnumMap<Concern, int[]> parsed = new EnumMap<>(Concern.class);
+		for (String entry : spec.trim().split("\\s*,\\s*")) {
+			String[] parts = entry.split("\\s*[=:]\\s*");
+			if (parts.length < 2 || parts.length > 3) {
+				throw new IllegalArgumentException("invalid thread pool size '" + entry + "'");
+			}
+			Concern concern;
+			try {
+				concern = Concern.valueOf(parts[0].trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("unknown thread pool '" + parts[0] + "'");
+			}
+			int threads, queue;
+			try {
+				threads = Integer.parseInt(parts[1]);
+				queue = (parts.length == 3) ? Integer.parseInt(parts[2]) : sizes.get(concern)[1];
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("invalid thread pool size '" + entry + "'");
+			}
+			checkSize(concern, threads, queue);
+			parsed.put(concern, new int[] { threads, queue });
+		}
+		sizes.putAll(parsed);
+	}
+
+	private void checkSize(Concern concern, int threads, int queue) {
+		if (pools.containsKey(concern) || (concern == Concern.EXECUTION && executionPermits != null)) {
+			throw new IllegalStateException("the " + concern.getName() + " pool has already been started");
+		}
+		if (threads < 1 || queue < 0 || (queue > 0 && !concern.isQueueBounded())) {
+			throw new IllegalArgumentException("invalid size for the " + concern.getName() + " pool: " + threads
+					+ ":" + queue);
+		}
+	}
+
+	/**
+	 * get the pool for the given concern, it is started on first access
+	 *
+	 * @param concern
+	 * @return the executor service for the concern
+	 */
+	public synchronized ExecutorService get(Concern concern) {
+		if (concern == Concern.HOUSEKEEPING) {
+			return getScheduled();
+		}
+		ExecutorService result = pools.get(concern);
+		if (result == null) {
+			int[] size = sizes.get(concern);
+			BlockingQueue<Runnable> queue;
+			if (concern.isQueueBounded()) {
+				queue = new ArrayBlockingQueue<Runnable>(Math.max(1, size[1]));
+			} else {
+				queue = new LinkedBlockingQueue<Runnable>();
+			}
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(size[0], size[0], KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					queue, new NamedThreadFactory(concern), new CountingRejectionHandler(concern));
+			pool.allowCoreThreadTimeOut(true);
+			registerGauges(concern, pool);
+			if (shutDown) {
+				pool.shutdown();
+			}
+			pools.put(concern, pool);
+			result = pool;
+		}
+		return result;
+	}
+
+	/**
+	 * get the pool for timers and periodic tasks
+	 *
+	 * @return the scheduled executor service for housekeeping tasks
+	 */
+	public synchronized ScheduledThreadPoolExecutor getScheduled() {
+		ScheduledThreadPoolExecutor result = (ScheduledThreadPoolExecutor) pools.get(Concern.HOUSEKEEPING);
+		if (result == null) {
+			result = new ScheduledThreadPoolExecutor(sizes.get(Concern.HOUSEKEEPING)[0], new NamedThreadFactory(
+					Concern.HOUSEKEEPING), new CountingRejectionHandler(Concern.HOUSEKEEPING));
+			result.setRemoveOnCancelPolicy(true);
+			registerGauges(Concern.HOUSEKEEPING, result);
+			if (shutDown) {
+				result.shutdown();
+			}
+			pools.put(Concern.HOUSEKEEPING, result);
+		}
+		return result;
+	}
+
+	/**
+	 * execute a task in the pool for the given concern
+	 *
+	 * @param concern
+	 * @param task
+	 * @throws RejectedExecutionException if the pool is shut down or its queue is full
+	 */
+	public void execute(Concern concern, Runnable task) {
+		get(concern).execute(task);
+	}
+
+	/**
+	 * start a service method in the given (not yet started) L2pThread without waiting for it
+	 *
+	 * At most <i>threads</i> of the execution pool run at the same time, at most <i>queue</i> further executions wait
+	 * for a free slot. Waiting executions are started by the executions finishing before them, so no thread is
+	 * blocked while waiting. Nested invocations from a running service method are not limited, since they would
+	 * otherwise wait for a slot held by their caller.
+	 *
+	 * @param thread
+	 * @return the completion of the thread, see {@link L2pThread#getCompletion()}
+	 * @throws RejectedExecutionException if too many executions are already waiting
+	 */
+	public CompletableFuture<L2pThread> startExecution(L2pThread thread) {
+		thread.setName(name + "-" + Concern.EXECUTION.getName() + "-" + thread.getId());
+		if (Thread.currentThread() instanceof L2pThread) {
+			thread.start();
+			return thread.getCompletion();
+		}
+		Semaphore permits = getExecutionPermits();
+		if (permits.tryAcquire()) {
+			startWithPermit(thread, permits);
+		} else {
+			if (executionWaiting.incrementAndGet() > sizes.get(Concern.EXECUTION)[1]) {
+				executionWaiting.decrementAndGet();
+				metrics.counter(metricName(Concern.EXECUTION, "rejected")).inc();
+				throw new RejectedExecutionException("too many service executions waiting at node " + name);
+			}
+			executionQueue.add(thread);
+			// a slot may have been freed in the meantime
+			startWaiting(permits);
+		}
+		return thread.getCompletion();
+	}
+
+	/**
+	 * run a service method in the given (not yet started) L2pThread and wait for it to finish
+	 *
+	 * @param thread
+	 * @throws InterruptedException
+	 * @throws RejectedExecutionException if too many executions are already waiting or the pools are shut down
+	 *             before the execution started
+	 * @see #startExecution(L2pThread)
+	 */
+	public void runExecution(L2pThread thread) throws InterruptedException {
+		try {
+			startExecution(thread).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RejectedExecutionException) {
+				throw (RejectedExecutionException) e.getCause();
+			}
+			throw new RejectedExecutionException(e.getCause());
+		}
+	}
+
+	private void startWithPermit(L2pThread thread, Semaphore permits) {
+		metrics.counter(metricName(Concern.EXECUTION, "started")).inc();
+		thread.getCompletion().whenComplete((finished, e) -> {
+			permits.release();
+			startWaiting(permits);
+		});
+		thread.start();
+	}
+
+	private void startWaiting(Semaphore permits) {
+		while (!executionQueue.isEmpty() && !isShutDown() && permits.tryAcquire()) {
+			L2pThread next = executionQueue.poll();
+			if (next == null) {
+				// taken by another thread
+				permits.release();
+				continue;
+			}
+			executionWaiting.decrementAndGet();
+			startWithPermit(next, permits);
+		}
+	}
+
+	/**
+	 * get the number of service methods currently executed in the execution pool
+	 *
+	 * @return number of running executions
+	 */
+	public synchronized int getRunningExecutions() {
+		if (executionPermits == null) {
+			return 0;
+		}
+		return sizes.get(Concern.EXECUTION)[0] - executionPermits.availablePermits();
+	}
+
+	/**
+	 * get the number of service methods waiting for a free slot in the execution pool
+	 *
+	 * @return number of waiting executions
+	 */
+	public int getWaitingExecutions() {
+		return executionWaiting.get();
+	}
+
+	private synchronized Semaphore getExecutionPermits() {
+		if (executionPermits == null) {
+			final int threads = sizes.get(Concern.EXECUTION)[0];
+			executionPermits = new Semaphore(threads);
+			metrics.gauge(metricName(Concern.EXECUTION, "active"),
+					() -> threads - executionPermits.availablePermits());
+			metrics.gauge(metricName(Concern.EXECUTION, "queue"), executionWaiting::get);
+		}
+		return executionPermits;
+	}
+
+	/**
+	 * stop all pools, running tasks are interrupted
+	 */
+	public void shutdownNow() {
+		synchronized (this) {
+			shutDown = true;
+			for (ExecutorService pool : pools.values()) {
+				pool.shutdownNow();
+			}
+		}
+		// fail the waiting executions outside the lock, their dependent actions may send responses
+		L2pThread waiting;
+		while ((waiting = executionQueue.poll()) != null) {
+			executionWaiting.decrementAndGet();
+			waiting.getCompletion()
+					.completeExceptionally(new RejectedExecutionException("node " + name + " is shut down"));
+		}
+	}
+
+	private synchronized boolean isShutDown() {
+		return shutDown;
+	}
+
+	private void registerGauges(Concern concern, final ThreadPoolExecutor pool) {
+		metrics.gauge(metricName(concern, "active"), pool::getActiveCount);
+		metrics.gauge(metricName(concern, "size"), pool::getPoolSize);
+		metrics.gauge(metricName(concern, "queue"), () -> pool.getQueue().size());
+		metrics.gauge(metricName(concern, "completed"), pool::getCompletedTaskCount);
+	}
+
+	private static String metricName(Concern concern, String metric) {
+		return "pool." + concern.getName() + "." + metric;
+	}
+
+	/**
+	 * names the threads of a pool after the node and the concern
+	 */
+	private class NamedThreadFactory implements ThreadFactory {
+
+		private final String prefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		private NamedThreadFactory(Concern concern) {
+			this.prefix = name + "-" + concern.getName() + "-";
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * counts and logs rejected tasks before rejecting them
+	 */
+	private class CountingRejectionHandler implements RejectedExecutionHandler {
+
+		private final Concern concern;
+		private final Counter rejected;
+
+		private CountingRejectionHandler(Concern concern) {
+			this.concern = concern;
+			this.rejected = metrics.counter(metricName(concern, "rejected"));
+		}
+
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			rejected.inc();
+			if (!executor.isShutdown()) {
+				logger.warning("rejected task in " + concern.getName() + " pool of " + name + ", queue is full");
+			}
+			throw new RejectedExecutionException("the " + concern.getName() + " pool of " + name + " is "
+					+ (executor.isShutdown() ? "shut down" : "exhausted"));
+		}
+	}
+
+}
@@ -11,13 +11,17 @@ import java.net.ServerSocket;
 import java.net.UnknownHostException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import i5.las2peer.api.StorageCollisionHandler;
@@ -35,6 +39,7 @@ import i5.las2peer.logging.NodeObserver.Event;
 import i5.las2peer.p2p.pastry.MessageEnvelope;
 import i5.las2peer.p2p.pastry.NodeApplication;
 import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeFetchResult;
 import i5.las2peer.persistency.MalformedXMLException;
 import i5.las2peer.persistency.SharedStorage;
 import i5.las2peer.persistency.SharedStorage.STORAGE_MODE;
@@ -69,6 +74,7 @@ public class PastryNodeImpl extends Node {
 	private static final int AGENT_STORE_TIMEOUT = 10000;
 	private static final int ARTIFACT_GET_TIMEOUT = 10000;
 	private static final int ARTIFACT_STORE_TIMEOUT = 10000;
+	private static final int AGENT_SUBSCRIBE_TIMEOUT = 10000;
 
 	private InetAddress pastryBindAddress = null; // null = detect Internet address
 
@@ -86,6 +92,11 @@ public class PastryNodeImpl extends Node {
 	private STORAGE_MODE mode = STORAGE_MODE.FILESYSTEM;
 	private String storageDir; // null = default choosen by SharedStorage
 	private Long nodeIdSeed;
+	private boolean sharedEnvironment = false;
+
+	// one environment (selector, processor, timer) used by all nodes of this JVM started with a shared environment
+	private static Environment sharedPastryEnvironment;
+	private static int sharedPastryEnvironmentUsers;
 
 	/**
 	 * This is the regular constructor used by the {@link i5.las2peer.tools.L2pNodeLauncher}. Its parameters can be set
@@ -130,8 +141,33 @@ public class PastryNodeImpl extends Node {
 		this(null, null, bootstrap, storageMode, storageDir, nodeIdSeed);
 	}
 
+	/**
+	 * This constructor is mainly used by the {@link i5.las2peer.testing.TestSuite} and sets all parameters for
+	 * debugging and testing operation mode.
+	 * 
+	 * @param bootstrap A bootstrap address that should be used, like hostname:port or <code>null</code> to start a new
+	 *            network.
+	 * @param storageMode A storage mode to be used by this node, see
+	 *            {@link i5.las2peer.persistency.SharedStorage.STORAGE_MODE}.
+	 * @param storageDir A directory to persist data to. Only considered in persistent storage mode, but overwrites
+	 *            {@link SharedStorage} configurations.
+	 * @param nodeIdSeed A node id (random) seed to enforce a specific node id. If <code>null</code>, the node id will
+	 *            be random.
+	 * @param sharedEnvironment If <code>true</code>, this node uses the Pastry environment (selector, processor and
+	 *            timer threads) shared by all nodes of this JVM, that have been started with this option.
+	 */
+	public PastryNodeImpl(String bootstrap, STORAGE_MODE storageMode, String storageDir, Long nodeIdSeed,
+			boolean sharedEnvironment) {
+		this(null, null, bootstrap, storageMode, storageDir, nodeIdSeed, sharedEnvironment);
+	}
+
 	public PastryNodeImpl(L2pClassManager classManager, Integer port, String bootstrap, STORAGE_MODE storageMode,
 			String storageDir, Long nodeIdSeed) {
+		this(classManager, port, bootstrap, storageMode, storageDir, nodeIdSeed, false);
+	}
+
+	public PastryNodeImpl(L2pClassManager classManager, Integer port, String bootstrap, STORAGE_MODE storageMode,
+			String storageDir, Long nodeIdSeed, boolean sharedEnvironment) {
 		super(classManager, true, false);
 		pastryBindAddress = InetAddress.getLoopbackAddress();
 		if (port == null) {
@@ -150,15 +186,52 @@ public class PastryNodeImpl extends Node {
 		this.mode = storageMode;
 		this.storageDir = storageDir;
 		this.nodeIdSeed = nodeIdSeed;
+		this.sharedEnvironment = sharedEnvironment;
 		setupPastryEnvironment();
 		this.setStatus(NodeStatus.CONFIGURED);
 	}
 
 	/**
-	 * setup pastry environment settings
+	 * setup pastry environment, either a new one for this node or the one shared in this JVM
 	 */
 	private void setupPastryEnvironment() {
-		pastryEnvironment = new Environment();
+		if (sharedEnvironment) {
+			synchronized (PastryNodeImpl.class) {
+				if (sharedPastryEnvironment == null) {
+					sharedPastryEnvironment = createPastryEnvironment();
+				}
+				sharedPastryEnvironmentUsers++;
+				pastryEnvironment = sharedPastryEnvironment;
+			}
+		} else {
+			pastryEnvironment = createPastryEnvironment();
+		}
+	}
+
+	/**
+	 * release the pastry environment of this node, a shared environment is destroyed with its last node
+	 */
+	private void releasePastryEnvironment() {
+		if (sharedEnvironment) {
+			synchronized (PastryNodeImpl.class) {
+				sharedPastryEnvironmentUsers--;
+				if (sharedPastryEnvironmentUsers == 0) {
+					sharedPastryEnvironment.destroy();
+					sharedPastryEnvironment = null;
+				}
+			}
+		} else {
+			pastryEnvironment.destroy();
+		}
+	}
+
+	/**
+	 * create a new pastry environment with the configured settings
+	 * 
+	 * @return a new pastry environment
+	 */
+	private Environment createPastryEnvironment() {
+		Environment pastryEnvironment = new Environment();
 		String[] configFiles = new String[] { "etc/pastry.properties", "config/pastry.properties",
 				"properties/pastry.properties" };
 		String found = null;
@@ -217,6 +290,7 @@ public class PastryNodeImpl extends Node {
 			pastryEnvironment.getParameters().setString(prop, properties.get(prop));
 			logger.info("setting: " + prop + ": '" + properties.get(prop) + "'");
 		}
+		return pastryEnvironment;
 	}
 
 	/**
@@ -228,6 +302,15 @@ public class PastryNodeImpl extends Node {
 		return pastryNode;
 	}
 
+	/**
+	 * access to the shared storage of this node
+	 * 
+	 * @return the shared storage or null if the node is not running yet
+	 */
+	public SharedStorage getSharedStorage() {
+		return pastStorage;
+	}
+
 	/**
 	 * generate a collection of InetSocketAddresses from the given bootstrap string
 	 * 
@@ -278,9 +361,12 @@ public class PastryNodeImpl extends Node {
 	 * @throws StorageException
 	 */
 	private void setupPastryApplications() throws StorageException {
-		threadpool = Executors.newCachedThreadPool();
+		threadpool = getThreadPools().get(NodeThreadPools.Concern.STORAGE);
 		application = new NodeApplication(this);
-		pastStorage = new SharedStorage(pastryNode, mode, threadpool, storageDir);
+		application.registerTopic(NodeServiceCache.SERVICE_ANNOUNCEMENT_TOPIC);
+		pastStorage = new SharedStorage(pastryNode, mode, threadpool, getThreadPools().get(
+				NodeThreadPools.Concern.READER), getThreadPools().getScheduled(), storageDir, getMetrics(),
+				getEnvelopeCache());
 		// add past storage as network repository
 		getBaseClassLoader().addRepository(new SharedStorageRepository(this));
 	}
@@ -375,16 +461,12 @@ public class PastryNodeImpl extends Node {
 	public synchronized void shutDown() {
 		this.setStatus(NodeStatus.CLOSING);
 		super.shutDown();
-		if (threadpool != null) {
-			// destroy pending jobs first, because they miss the node the most
-			threadpool.shutdownNow();
-		}
 		if (pastryNode != null) {
 			pastryNode.destroy();
 			pastryNode = null;
 		}
 		if (pastryEnvironment != null) {
-			pastryEnvironment.destroy();
+			releasePastryEnvironment();
 			pastryEnvironment = null;
 		}
 		this.setStatus(NodeStatus.CLOSED);
@@ -403,6 +485,63 @@ public class PastryNodeImpl extends Node {
 
 	}
 
+	/**
+	 * register many receivers at once
+	 * 
+	 * The agent topics of all receivers are subscribed with a single Scribe call. This method returns after all
+	 * subscriptions have been confirmed.
+	 * 
+	 * @param receivers
+	 * @throws AgentAlreadyRegisteredException
+	 * @throws L2pSecurityException
+	 * @throws AgentException
+	 * @throws TimeoutException if the subscriptions have not been confirmed in time
+	 */
+	public void registerReceivers(Collection<? extends MessageReceiver> receivers)
+			throws AgentAlreadyRegisteredException, L2pSecurityException, AgentException, TimeoutException {
+		try {
+			registerReceiversAsync(receivers).get(AGENT_SUBSCRIBE_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			throw new AgentException("agent topic subscription failed", e.getCause());
+		} catch (InterruptedException e) {
+			throw new AgentException("interrupted while waiting for agent topic subscriptions", e);
+		} catch (java.util.concurrent.TimeoutException e) {
+			throw new TimeoutException("agent topic subscriptions not confirmed within " + AGENT_SUBSCRIBE_TIMEOUT
+					+ "ms");
+		}
+	}
+
+	/**
+	 * register many receivers at once without waiting for the subscription of their agent topics
+	 * 
+	 * @param receivers
+	 * @return a future completed when all subscriptions are confirmed
+	 * @throws AgentAlreadyRegisteredException
+	 * @throws L2pSecurityException
+	 * @throws AgentException
+	 */
+	public CompletableFuture<Void> registerReceiversAsync(Collection<? extends MessageReceiver> receivers)
+			throws AgentAlreadyRegisteredException, L2pSecurityException, AgentException {
+		synchronized (this) {
+			ArrayList<MessageReceiver> registered = new ArrayList<>();
+			try {
+				for (MessageReceiver receiver : receivers) {
+					super.registerReceiver(receiver);
+					registered.add(receiver);
+				}
+			} catch (AgentException | L2pSecurityException | RuntimeException e) {
+				// the receivers registered so far have to be reachable anyway, their subscriptions are reported to the
+				// observers on completion
+				application.registerAgentTopics(registered).exceptionally(failure -> {
+					logger.log(Level.WARNING, "agent topic subscription failed", failure);
+					return null;
+				});
+				throw e;
+			}
+			return application.registerAgentTopics(registered);
+		}
+	}
+
 	@Override
 	public void unregisterReceiver(MessageReceiver receiver) throws AgentNotKnownException, NodeException {
 		synchronized (this) {
@@ -444,13 +583,12 @@ public class PastryNodeImpl extends Node {
 
 	@Override
 	public void sendMessage(Message message, MessageResultListener listener, SendMode mode) {
-		// TODO: use mode?!?!
 		observerNotice(Event.MESSAGE_SENDING, pastryNode, message.getSenderId(), null, message.getRecipientId(),
-				"broadcasting");
+				(mode == SendMode.ANYCAST) ? "anycasting" : "broadcasting");
 
 		registerAnswerListener(message.getId(), listener);
 
-		application.sendMessage(message);
+		application.sendMessage(message, mode);
 	}
 
 	@Override
@@ -486,6 +624,20 @@ public class PastryNodeImpl extends Node {
 		}
 	}
 
+	@Override
+	public Message sendMessageAndWaitForAnswer(Message m, Object atNodeId) throws AgentNotKnownException,
+			NodeNotFoundException, L2pSecurityException, InterruptedException, TimeoutException {
+		try {
+			return super.sendMessageAndWaitForAnswer(m, atNodeId);
+		} catch (NodeNotFoundException | TimeoutException e) {
+			// the node may have been found by a search, which is outdated now
+			if (!m.isTopic()) {
+				application.invalidateAgentSearch(m.getRecipientId());
+			}
+			throw e;
+		}
+	}
+
 	/**
 	 * @deprecated Use {@link #fetchEnvelope(String)} instead
 	 */
@@ -627,6 +779,16 @@ public class PastryNodeImpl extends Node {
 		return application.getNodeInformation((NodeHandle) nodeId);
 	}
 
+	/**
+	 * get information about several nodes in parallel
+	 * 
+	 * @param nodeIds
+	 * @return a future for the information of all nodes that answered in time
+	 */
+	public CompletableFuture<Map<NodeHandle, NodeInformation>> getNodeInformationAsync(Collection<NodeHandle> nodeIds) {
+		return application.getNodeInformationAsync(nodeIds);
+	}
+
 	@Override
 	public void storeEnvelope(Envelope envelope, Agent author) throws StorageException {
 		storeEnvelope(envelope, author, ARTIFACT_STORE_TIMEOUT);
@@ -637,6 +799,11 @@ public class PastryNodeImpl extends Node {
 		return fetchEnvelope(identifier, ARTIFACT_GET_TIMEOUT);
 	}
 
+	@Override
+	public Map<String, EnvelopeFetchResult> fetchEnvelopes(Collection<String> identifiers) {
+		return fetchEnvelopes(identifiers, getFetchBatchParallelism(), ARTIFACT_GET_TIMEOUT);
+	}
+
 	@Override
 	public Envelope createEnvelope(String identifier, Serializable content, Agent... reader)
 			throws IllegalArgumentException, SerializationException, CryptoException {
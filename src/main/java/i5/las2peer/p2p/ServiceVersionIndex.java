@@ -0,0 +1,138 @@
+package i5.las2peer.p2p;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * immutable index of the versions of a service, newest version first
+ *
+ * Used by the {@link NodeServiceCache} for lock free lookups: updates create a new index, readers never see a
+ * partially modified one.
+ *
+ * @param <T> the value stored for each version
+ */
+final class ServiceVersionIndex<T> {
+
+	private static final ServiceVersionIndex<?> EMPTY = new ServiceVersionIndex<>(new ServiceVersion[0],
+			new Object[0]);
+
+	private final ServiceVersion[] versions;
+	private final Object[] values;
+
+	private ServiceVersionIndex(ServiceVersion[] versions, Object[] values) {
+		this.versions = versions;
+		this.values = values;
+	}
+
+	/**
+	 * get an empty index
+	 *
+	 * @return an index without versions
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> ServiceVersionIndex<T> empty() {
+		return (ServiceVersionIndex<T>) EMPTY;
+	}
+
+	private int indexOf(ServiceVersion version) {
+		// versions are sorted in descending order
+		return Arrays.binarySearch(versions, version, (a, b) -> b.compareTo(a));
+	}
+
+	/**
+	 * get the value stored for exactly the given version
+	 *
+	 * @param version
+	 * @return the value or null
+	 */
+	@SuppressWarnings("unchecked")
+	T get(ServiceVersion version) {
+		int i = indexOf(version);
+		return (i >= 0) ? (T) values[i] : null;
+	}
+
+	/**
+	 * get the values of all versions fitting the given (possibly incomplete) version, newest version first
+	 *
+	 * @param version
+	 * @return the values of the fitting versions
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> getFitting(ServiceVersion version) {
+		List<T> result = new ArrayList<>();
+		for (int i = 0; i < versions.length; i++) {
+			if (versions[i].fits(version)) {
+				result.add((T) values[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * get the values of all versions, newest version first
+	 *
+	 * @return all values
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> values() {
+		List<T> result = new ArrayList<>(values.length);
+		for (Object value : values) {
+			result.add((T) value);
+		}
+		return result;
+	}
+
+	boolean isEmpty() {
+		return versions.length == 0;
+	}
+
+	/**
+	 * create a copy of this index with the value of the given version set
+	 *
+	 * @param version
+	 * @param value
+	 * @return the new index
+	 */
+	ServiceVersionIndex<T> with(ServiceVersion version, T value) {
+		int i = indexOf(version);
+		if (i >= 0) {
+			Object[] newValues = values.clone();
+			newValues[i] = value;
+			return new ServiceVersionIndex<>(versions, newValues);
+		}
+
+		int insert = -i - 1;
+		ServiceVersion[] newVersions = new ServiceVersion[versions.length + 1];
+		Object[] newValues = new Object[values.length + 1];
+		System.arraycopy(versions, 0, newVersions, 0, insert);
+		System.arraycopy(values, 0, newValues, 0, insert);
+		newVersions[insert] = version;
+		newValues[insert] = value;
+		System.arraycopy(versions, insert, newVersions, insert + 1, versions.length - insert);
+		System.arraycopy(values, insert, newValues, insert + 1, values.length - insert);
+		return new ServiceVersionIndex<>(newVersions, newValues);
+	}
+
+	/**
+	 * create a copy of this index without the given version
+	 *
+	 * @param version
+	 * @return the new index, or this index if it does not contain the version
+	 */
+	ServiceVersionIndex<T> without(ServiceVersion version) {
+		int i = indexOf(version);
+		if (i < 0) {
+			return this;
+		}
+
+		ServiceVersion[] newVersions = new ServiceVersion[versions.length - 1];
+		Object[] newValues = new Object[values.length - 1];
+		System.arraycopy(versions, 0, newVersions, 0, i);
+		System.arraycopy(values, 0, newValues, 0, i);
+		System.arraycopy(versions, i + 1, newVersions, i, versions.length - i - 1);
+		System.arraycopy(values, i + 1, newValues, i, values.length - i - 1);
+		return new ServiceVersionIndex<>(newVersions, newValues);
+	}
+
+}
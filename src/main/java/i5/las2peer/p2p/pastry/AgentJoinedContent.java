@@ -12,6 +12,9 @@ public class AgentJoinedContent extends L2pScribeContent {
 
 	private final long agentId;
 
+	// null for a single agent, older nodes only know the first agent
+	private final long[] agentIds;
+
 	/**
 	 * create a new instance stating that the agent of the given id has been loaded at the given node
 	 * 
@@ -21,6 +24,19 @@ public class AgentJoinedContent extends L2pScribeContent {
 	public AgentJoinedContent(NodeHandle from, long agentId) {
 		super(from);
 		this.agentId = agentId;
+		this.agentIds = null;
+	}
+
+	/**
+	 * create a new instance stating that the agents of the given ids have been loaded at the given node
+	 * 
+	 * @param from
+	 * @param agentIds at least one agent id
+	 */
+	public AgentJoinedContent(NodeHandle from, long[] agentIds) {
+		super(from);
+		this.agentId = agentIds[0];
+		this.agentIds = (agentIds.length > 1) ? agentIds.clone() : null;
 	}
 
 	/**
@@ -32,4 +48,16 @@ public class AgentJoinedContent extends L2pScribeContent {
 		return agentId;
 	}
 
+	/**
+	 * get the ids of all agents, which have joined the net
+	 * 
+	 * @return agent ids
+	 */
+	public long[] getAgentIds() {
+		if (agentIds == null) {
+			return new long[] { agentId };
+		}
+		return agentIds.clone();
+	}
+
 }
@@ -0,0 +1,133 @@
+package i5.las2peer.p2p.pastry;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import rice.p2p.commonapi.IdFactory;
+import rice.p2p.scribe.Topic;
+
+/**
+ * Keeps track of the Scribe topics of agents.
+ *
+ * Topics are interned per agent id, so they don't have to be hashed again on each message or search. For agents
+ * registered at the local node, a reverse index from topic to agent id is maintained.
+ *
+ * All operations are O(1) and thread safe.
+ *
+ */
+public class AgentTopicRegistry {
+
+	public static final int DEFAULT_CACHE_SIZE = 10000;
+
+	private final IdFactory idFactory;
+
+	private final int cacheSize;
+
+	private final ConcurrentHashMap<Long, Topic> topicCache = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<Long, Topic> registeredTopics = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<Topic, Long> registeredAgents = new ConcurrentHashMap<>();
+
+	/**
+	 * create a registry using the given id factory to generate topic ids
+	 *
+	 * @param idFactory
+	 */
+	public AgentTopicRegistry(IdFactory idFactory) {
+		this(idFactory, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * create a registry using the given id factory to generate topic ids
+	 *
+	 * @param idFactory
+	 * @param cacheSize maximum number of topics of non local agents to keep
+	 */
+	public AgentTopicRegistry(IdFactory idFactory, int cacheSize) {
+		this.idFactory = idFactory;
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * get the (interned) topic of the given agent
+	 *
+	 * @param agentId
+	 * @return the topic corresponding to the given agent
+	 */
+	public Topic getTopic(long agentId) {
+		Topic topic = registeredTopics.get(agentId);
+		if (topic != null)
+			return topic;
+
+		topic = topicCache.get(agentId);
+		if (topic == null) {
+			if (topicCache.size() >= cacheSize)
+				topicCache.clear();
+			topic = topicCache.computeIfAbsent(agentId, id -> createTopic(id));
+		}
+		return topic;
+	}
+
+	/**
+	 * register the topic of a local agent
+	 *
+	 * @param agentId
+	 * @return the topic of the agent or null, if the agent has already been registered
+	 */
+	public Topic register(long agentId) {
+		Topic topic = getTopic(agentId);
+		if (registeredTopics.putIfAbsent(agentId, topic) != null)
+			return null;
+
+		registeredAgents.put(topic, agentId);
+		topicCache.remove(agentId);
+		return topic;
+	}
+
+	/**
+	 * remove the registration of a local agent
+	 *
+	 * @param agentId
+	 * @return the topic of the agent or null, if the agent has not been registered
+	 */
+	public Topic unregister(long agentId) {
+		Topic topic = registeredTopics.remove(agentId);
+		if (topic != null)
+			registeredAgents.remove(topic);
+		return topic;
+	}
+
+	/**
+	 * look up the local agent a topic belongs to
+	 *
+	 * @param topic
+	 * @return the id of the registered agent or null, if the topic does not belong to a local agent
+	 */
+	public Long getRegisteredAgent(Topic topic) {
+		return registeredAgents.get(topic);
+	}
+
+	/**
+	 * check, if the given agent is registered locally
+	 *
+	 * @param agentId
+	 * @return true, if the agent has been registered
+	 */
+	public boolean isRegistered(long agentId) {
+		return registeredTopics.containsKey(agentId);
+	}
+
+	/**
+	 * get the number of locally registered agents
+	 *
+	 * @return number of registered agents
+	 */
+	public int getRegisteredCount() {
+		return registeredTopics.size();
+	}
+
+	private Topic createTopic(long agentId) {
+		return new Topic(idFactory, NodeApplication.getAgentTopicId(agentId));
+	}
+
+}
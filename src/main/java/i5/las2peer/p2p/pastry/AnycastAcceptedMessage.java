@@ -0,0 +1,51 @@
+package i5.las2peer.p2p.pastry;
+
+import rice.p2p.commonapi.Message;
+import rice.p2p.commonapi.NodeHandle;
+
+/**
+ * a confirmation sent back to the origin of an anycast, stating that a node hosting the recipient has accepted it
+ *
+ */
+public class AnycastAcceptedMessage implements Message {
+
+	private static final long serialVersionUID = -2870214905378622166L;
+
+	private final NodeHandle sendingNode;
+	private final long contentId;
+
+	/**
+	 * create a confirmation for the given anycast content
+	 *
+	 * @param sendingNode
+	 * @param contentId random id of the accepted {@link BroadcastMessageContent}
+	 */
+	public AnycastAcceptedMessage(NodeHandle sendingNode, long contentId) {
+		this.sendingNode = sendingNode;
+		this.contentId = contentId;
+	}
+
+	/**
+	 * get the node that accepted the anycast
+	 *
+	 * @return handle to the accepting node
+	 */
+	public NodeHandle getSendingNode() {
+		return sendingNode;
+	}
+
+	/**
+	 * get the random id of the accepted content
+	 *
+	 * @return id of the accepted anycast content
+	 */
+	public long getContentId() {
+		return contentId;
+	}
+
+	@Override
+	public int getPriority() {
+		return DEFAULT_PRIORITY;
+	}
+
+}
@@ -14,11 +14,13 @@ public class BroadcastMessageContent extends L2pScribeContent {
 
 	private final String xmlMessageContent;
 	private final transient Message message;
+	private final Long recipientId;
 
 	public BroadcastMessageContent(NodeHandle fromNode, Message l2pMessage) {
 		super(fromNode);
 		xmlMessageContent = l2pMessage.toXmlString();
 		message = l2pMessage;
+		recipientId = l2pMessage.isTopic() ? null : l2pMessage.getRecipientId();
 	}
 
 	/**
@@ -35,4 +37,22 @@ public class BroadcastMessageContent extends L2pScribeContent {
 		}
 	}
 
+	/**
+	 * get the length of the contained message xml
+	 * 
+	 * @return number of characters of the message xml
+	 */
+	public int getContentLength() {
+		return xmlMessageContent.length();
+	}
+
+	/**
+	 * get the id of the recipient agent without opening the message
+	 * 
+	 * @return the recipient id or null, if the message has been sent to a topic
+	 */
+	public Long getRecipientId() {
+		return recipientId;
+	}
+
 }
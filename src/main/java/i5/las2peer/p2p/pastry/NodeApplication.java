@@ -1,25 +1,37 @@
 package i5.las2peer.p2p.pastry;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import i5.las2peer.communication.MessageException;
 import i5.las2peer.logging.L2pLogger;
 import i5.las2peer.logging.NodeObserver.Event;
 import i5.las2peer.p2p.AgentNotKnownException;
+import i5.las2peer.p2p.Node.SendMode;
 import i5.las2peer.p2p.NodeException;
 import i5.las2peer.p2p.NodeInformation;
 import i5.las2peer.p2p.NodeNotFoundException;
+import i5.las2peer.p2p.NodeThreadPools;
+import i5.las2peer.p2p.NodeThreadPools.Concern;
 import i5.las2peer.p2p.PastryNodeImpl;
 import i5.las2peer.persistency.MalformedXMLException;
 import i5.las2peer.security.Agent;
 import i5.las2peer.security.L2pSecurityException;
 import i5.las2peer.security.MessageReceiver;
 import i5.las2peer.tools.CryptoException;
-import i5.las2peer.tools.WaiterThread;
 import rice.p2p.commonapi.Application;
 import rice.p2p.commonapi.Endpoint;
 import rice.p2p.commonapi.Id;
@@ -47,9 +59,14 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	public static final String FREEPASTRY_APPLICATION_CODE = "i5.las2peer-node-application";
 	public static final String SCRIBE_APPLICATION_CODE = "i5.las2peer-agent-notification";
 
-	public static final int SEARCH_SLEEP_TIME = 2500; // 2,5s
 	public static final long SEARCH_TIMEOUT = 10000; // 10 seconds
+	public static final long SEARCH_CACHE_LIFETIME = 5000; // 5 seconds
+	public static final long SEARCH_NEGATIVE_CACHE_LIFETIME = 2000; // 2 seconds
+	public static final long NODE_INFORMATION_CACHE_LIFETIME = 30000; // 30 seconds
+	public static final long SUBSCRIPTION_TIMEOUT = 30000; // 30 seconds
+	public static final long ANYCAST_ACCEPT_TIMEOUT = 5000; // 5 seconds
 	private static final int RESPONSE_WAIT_TIMEOUT = 10000; // 10 seconds
+	private static final int DELIVERED_BROADCASTS_REMEMBERED = 10000;
 
 	private final L2pLogger logger = L2pLogger.getInstance(NodeApplication.class.getName());
 
@@ -59,13 +76,42 @@ public class NodeApplication implements Application, ScribeMultiClient {
 
 	private Scribe scribeClient;
 
-	private Hashtable<Long, Topic> htAgentTopics = new Hashtable<Long, Topic>();
+	private final AgentTopicRegistry agentTopics;
+
+	private final PastryIdFactory topicIdFactory;
+
+	private Map<Topic, CompletableFuture<Topic>> pendingSubscriptions = new ConcurrentHashMap<Topic, CompletableFuture<Topic>>();
 
 	private Hashtable<Long, Topic> htTopics = new Hashtable<Long, Topic>();
 
-	private Hashtable<Long, HashSet<NodeHandle>> htPendingAgentSearches = new Hashtable<Long, HashSet<NodeHandle>>();
+	private Hashtable<Long, PendingAgentSearch> htPendingAgentSearches = new Hashtable<Long, PendingAgentSearch>();
+
+	private Map<Long, CachedAgentSearch> agentSearchCache = new ConcurrentHashMap<Long, CachedAgentSearch>();
+
+	private final NodeThreadPools threadPools;
+
+	private Hashtable<Long, CompletableFuture<NodeInformation>> appMessageWaiters = new Hashtable<Long, CompletableFuture<NodeInformation>>();
+
+	private Map<Long, ScheduledFuture<?>> pendingAnycasts = new ConcurrentHashMap<Long, ScheduledFuture<?>>();
+
+	// random ids of the broadcast contents delivered lately, an anycast may arrive again by its publish fallback
+	private final Map<Long, Boolean> deliveredBroadcasts = new LinkedHashMap<Long, Boolean>() {
+		private static final long serialVersionUID = 1L;
 
-	private Hashtable<Long, WaiterThread<Message>> appMessageWaiters = new Hashtable<Long, WaiterThread<Message>>();
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+			return size() > DELIVERED_BROADCASTS_REMEMBERED;
+		}
+	};
+
+	private Map<Id, CompletableFuture<NodeInformation>> pendingInfoRequests = new ConcurrentHashMap<Id, CompletableFuture<NodeInformation>>();
+
+	private Map<Id, CachedNodeInformation> nodeInformationCache = new ConcurrentHashMap<Id, CachedNodeInformation>();
+
+	private final TransportMetrics metrics;
+
+	private NodeInformation ownInformation;
+	private String ownInformationXml;
 
 	/**
 	 * create a pastry application for the given node
@@ -78,6 +124,15 @@ public class NodeApplication implements Application, ScribeMultiClient {
 
 		scribeClient = new ScribeImpl(l2pNode.getPastryNode(), SCRIBE_APPLICATION_CODE);
 
+		topicIdFactory = new PastryIdFactory(l2pNode.getPastryNode().getEnvironment());
+		agentTopics = new AgentTopicRegistry(topicIdFactory);
+
+		threadPools = l2pNode.getThreadPools();
+		metrics = new TransportMetrics(l2pNode.getMetrics());
+		metrics.getRegistry().gauge(TransportMetrics.PREFIX + "agents.registered", agentTopics::getRegisteredCount);
+		metrics.getRegistry().gauge(TransportMetrics.PREFIX + "search.pending", htPendingAgentSearches::size);
+		metrics.getRegistry().gauge(TransportMetrics.PREFIX + "info.pending", appMessageWaiters::size);
+
 		endpoint.register();
 	}
 
@@ -87,13 +142,12 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 * @param receiver
 	 */
 	public void registerAgentTopic(MessageReceiver receiver) {
-		synchronized (htAgentTopics) {
-			if (htAgentTopics.get(receiver.getResponsibleForAgentId()) != null)
+		synchronized (agentTopics) {
+			Topic agentTopic = agentTopics.register(receiver.getResponsibleForAgentId());
+			if (agentTopic == null)
 				return;
 
-			Topic agentTopic = getAgentTopic(receiver);
-
-			htAgentTopics.put(receiver.getResponsibleForAgentId(), agentTopic);
+			agentSearchCache.remove(receiver.getResponsibleForAgentId());
 
 			logger.info("\t--> registering agent topic for " + receiver.getResponsibleForAgentId() + " ("
 					+ agentTopic.getId() + ")");
@@ -101,10 +155,9 @@ public class NodeApplication implements Application, ScribeMultiClient {
 			// always subscribe to the root:
 			NodeHandle root = scribeClient.getRoot(agentTopic);
 
+			reportSubscription(awaitSubscription(agentTopic), receiver, agentTopic);
 			scribeClient.subscribe(agentTopic, this,
 					new AgentJoinedContent(getLocalHandle(), receiver.getResponsibleForAgentId()), root);
-			l2pNode.observerNotice(Event.PASTRY_TOPIC_SUBSCRIPTION_SUCCESS, this.l2pNode.getNodeId(), receiver, ""
-					+ agentTopic.getId());
 			/*
 			System.out.println( "children of agent topic: " + scribeClient.numChildren(getAgentTopic(receiver)) );
 			for ( NodeHandle nh: scribeClient.getChildrenOfTopic(getAgentTopic ( receiver ))) 
@@ -113,6 +166,101 @@ public class NodeApplication implements Application, ScribeMultiClient {
 		}
 	}
 
+	/**
+	 * register this node to the topics of all given message receivers using one Scribe subscription per root
+	 * 
+	 * Like a single registration, each subscription is sent to the root of its topics and announces the joining
+	 * agents. The returned future completes as soon as all subscriptions have been confirmed. It completes
+	 * exceptionally with a {@link NodeException}, if a subscription fails or is not confirmed within
+	 * <i>SUBSCRIPTION_TIMEOUT</i> milliseconds.
+	 * 
+	 * @param receivers
+	 * @return a future completed when all subscriptions are confirmed
+	 */
+	public CompletableFuture<Void> registerAgentTopics(Collection<? extends MessageReceiver> receivers) {
+		Map<NodeHandle, ArrayList<Topic>> topicsByRoot = new LinkedHashMap<NodeHandle, ArrayList<Topic>>();
+		Map<NodeHandle, ArrayList<Long>> agentsByRoot = new LinkedHashMap<NodeHandle, ArrayList<Long>>();
+		ArrayList<CompletableFuture<Topic>> confirmations = new ArrayList<CompletableFuture<Topic>>();
+
+		synchronized (agentTopics) {
+			for (MessageReceiver receiver : receivers) {
+				Topic agentTopic = agentTopics.register(receiver.getResponsibleForAgentId());
+				if (agentTopic == null)
+					continue;
+
+				agentSearchCache.remove(receiver.getResponsibleForAgentId());
+				NodeHandle root = scribeClient.getRoot(agentTopic);
+				topicsByRoot.computeIfAbsent(root, r -> new ArrayList<Topic>()).add(agentTopic);
+				agentsByRoot.computeIfAbsent(root, r -> new ArrayList<Long>()).add(
+						receiver.getResponsibleForAgentId());
+
+				CompletableFuture<Topic> confirmation = awaitSubscription(agentTopic);
+				reportSubscription(confirmation, receiver, agentTopic);
+				confirmations.add(confirmation);
+			}
+
+			if (!topicsByRoot.isEmpty()) {
+				logger.info("\t--> registering " + confirmations.size() + " agent topics at " + topicsByRoot.size()
+						+ " roots");
+			}
+			for (Map.Entry<NodeHandle, ArrayList<Topic>> entry : topicsByRoot.entrySet()) {
+				ArrayList<Long> agentIds = agentsByRoot.get(entry.getKey());
+				long[] ids = new long[agentIds.size()];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = agentIds.get(i);
+				}
+				scribeClient.subscribe(entry.getValue(), this, new AgentJoinedContent(getLocalHandle(), ids),
+						entry.getKey());
+			}
+		}
+
+		return CompletableFuture.allOf(confirmations.toArray(new CompletableFuture<?>[confirmations.size()]));
+	}
+
+	/**
+	 * notify the observers about the subscription of an agent topic as soon as it is confirmed or has failed
+	 * 
+	 * @param confirmation
+	 * @param receiver
+	 * @param agentTopic
+	 */
+	private void reportSubscription(CompletableFuture<Topic> confirmation, MessageReceiver receiver,
+			Topic agentTopic) {
+		confirmation.whenComplete((confirmed, e) -> l2pNode.observerNotice(
+				(e == null) ? Event.PASTRY_TOPIC_SUBSCRIPTION_SUCCESS : Event.PASTRY_TOPIC_SUBSCRIPTION_FAILED,
+				this.l2pNode.getNodeId(), receiver, "" + agentTopic.getId()));
+	}
+
+	/**
+	 * get a future for the confirmation of a subscription to the given topic
+	 * 
+	 * A subscription not confirmed within <i>SUBSCRIPTION_TIMEOUT</i> milliseconds is given up, so unconfirmed
+	 * subscriptions are not kept forever.
+	 * 
+	 * @param topic
+	 * @return a future completed as soon as the subscription is confirmed
+	 */
+	private CompletableFuture<Topic> awaitSubscription(Topic topic) {
+		final long start = System.nanoTime();
+		return pendingSubscriptions.computeIfAbsent(topic, t -> {
+			CompletableFuture<Topic> confirmation = new CompletableFuture<Topic>();
+			try {
+				final ScheduledFuture<?> timeoutTask = threadPools.getScheduled().schedule(() -> {
+					if (pendingSubscriptions.remove(t, confirmation)) {
+						confirmation.completeExceptionally(new NodeException("subscription to topic " + t
+								+ " not confirmed within " + SUBSCRIPTION_TIMEOUT + "ms"));
+					}
+				}, SUBSCRIPTION_TIMEOUT, TimeUnit.MILLISECONDS);
+				confirmation.whenComplete((confirmed, e) -> timeoutTask.cancel(false));
+			} catch (RejectedExecutionException e) {
+				// node is shutting down
+				confirmation.completeExceptionally(new NodeException("node is shutting down"));
+			}
+			confirmation.thenRun(() -> metrics.subscriptionConfirmed(start));
+			return confirmation;
+		});
+	}
+
 	/**
 	 * unregister an agent from its subscription
 	 * 
@@ -120,15 +268,19 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 * @throws AgentNotKnownException
 	 */
 	public void unregisterAgentTopic(long id) throws AgentNotKnownException {
-		synchronized (htAgentTopics) {
+		synchronized (agentTopics) {
 
-			Topic agentTopic = htAgentTopics.get(id);
+			Topic agentTopic = agentTopics.unregister(id);
 
 			if (agentTopic == null)
 				throw new AgentNotKnownException("an agent with id " + id + " is not registered at this node");
 
 			scribeClient.unsubscribe(agentTopic, this);
-			htAgentTopics.remove(id);
+			agentSearchCache.remove(id);
+
+			CompletableFuture<Topic> confirmation = pendingSubscriptions.remove(agentTopic);
+			if (confirmation != null)
+				confirmation.cancel(false);
 
 		}
 
@@ -169,37 +321,139 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	/**
 	 * get information about a foreign node
 	 * 
+	 * Verified node information is cached for <i>NODE_INFORMATION_CACHE_LIFETIME</i> milliseconds.
+	 * 
 	 * @param nodeHandle
 	 * @return node information
 	 * @throws NodeNotFoundException
 	 */
 	public NodeInformation getNodeInformation(NodeHandle nodeHandle) throws NodeNotFoundException {
-		GetInfoMessage gim = new GetInfoMessage(getLocalHandle());
-		long messageId = gim.getId();
-
-		sendMessageDirectly(gim, nodeHandle);
-
 		try {
-			WaiterThread<Message> waiter = new WaiterThread<Message>(RESPONSE_WAIT_TIMEOUT);
-			appMessageWaiters.put(messageId, waiter);
-			waiter.start();
-			waiter.join();
-
-			if (waiter.hasResult()) {
-				InfoResponseMessage irm = (InfoResponseMessage) waiter.getResult();
-				return irm.getInfoContent();
-			} else
-				throw new NodeNotFoundException("Timeout waiting for information answer");
+			return getNodeInformationAsync(nodeHandle).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof NodeNotFoundException)
+				throw (NodeNotFoundException) e.getCause();
+			throw new NodeNotFoundException("Unable to get node information: " + e.getCause());
 		} catch (InterruptedException e) {
 			throw new NodeNotFoundException("Interrupted while waiting for answer");
-		} finally {
+		}
+	}
+
+	/**
+	 * get information about a foreign node without blocking the calling thread
+	 * 
+	 * Concurrent requests for the same node share one request message. The returned future completes exceptionally
+	 * with a {@link NodeNotFoundException}, if the node does not answer in time or its answer can not be verified.
+	 * 
+	 * @param nodeHandle
+	 * @return a future for the node information
+	 */
+	public CompletableFuture<NodeInformation> getNodeInformationAsync(final NodeHandle nodeHandle) {
+		final Id nodeId = nodeHandle.getId();
+
+		CachedNodeInformation cached = nodeInformationCache.get(nodeId);
+		if (cached != null) {
+			if (cached.isValid())
+				return CompletableFuture.completedFuture(cached.info);
+			nodeInformationCache.remove(nodeId, cached);
+		}
+
+		final CompletableFuture<NodeInformation> request = pendingInfoRequests.computeIfAbsent(nodeId,
+				id -> requestNodeInformation(nodeHandle));
+		request.whenComplete((info, e) -> pendingInfoRequests.remove(nodeId, request));
+		return request;
+	}
+
+	/**
+	 * get information about several foreign nodes in parallel
+	 * 
+	 * @param nodeHandles
+	 * @return a future for the information of all nodes that answered in time
+	 */
+	public CompletableFuture<Map<NodeHandle, NodeInformation>> getNodeInformationAsync(
+			Collection<NodeHandle> nodeHandles) {
+		final Map<NodeHandle, NodeInformation> result = new ConcurrentHashMap<NodeHandle, NodeInformation>();
+		ArrayList<CompletableFuture<Void>> requests = new ArrayList<CompletableFuture<Void>>();
+
+		for (final NodeHandle nodeHandle : nodeHandles) {
+			requests.add(getNodeInformationAsync(nodeHandle).handle((info, e) -> {
+				if (info != null)
+					result.put(nodeHandle, info);
+				return null;
+			}));
+		}
+
+		return CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()])).thenApply(
+				v -> result);
+	}
+
+	/**
+	 * drop cached information about a foreign node
+	 * 
+	 * @param nodeHandle
+	 */
+	public void invalidateNodeInformation(NodeHandle nodeHandle) {
+		nodeInformationCache.remove(nodeHandle.getId());
+	}
+
+	private CompletableFuture<NodeInformation> requestNodeInformation(NodeHandle nodeHandle) {
+		GetInfoMessage gim = new GetInfoMessage(getLocalHandle());
+		final long messageId = gim.getId();
+
+		final CompletableFuture<NodeInformation> result = new CompletableFuture<NodeInformation>();
+		appMessageWaiters.put(messageId, result);
+
+		final ScheduledFuture<?> timeoutTask = threadPools.getScheduled().schedule(
+				() -> result.completeExceptionally(new NodeNotFoundException("Timeout waiting for information answer")),
+				RESPONSE_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+		result.whenComplete((info, e) -> {
+			timeoutTask.cancel(false);
 			// remove the waiter to prevent memory holes
 			appMessageWaiters.remove(messageId);
+		});
+
+		sendMessageDirectly(gim, nodeHandle);
+
+		return result;
+	}
+
+	/**
+	 * get the xml representation of the local node information, which is reused as long as the node information
+	 * does not change
+	 * 
+	 * @return xml representation of the signed local node information
+	 * @throws CryptoException
+	 */
+	private synchronized String getOwnInformationXml() throws CryptoException {
+		NodeInformation info = l2pNode.getNodeInformation();
+		if (info != ownInformation) {
+			ownInformationXml = info.toXmlString();
+			ownInformation = info;
+		}
+		return ownInformationXml;
+	}
+
+	/**
+	 * verified information about a foreign node
+	 */
+	private static class CachedNodeInformation {
+
+		private final NodeInformation info;
+		private final long expires;
+
+		private CachedNodeInformation(NodeInformation info) {
+			this.info = info;
+			this.expires = System.currentTimeMillis() + NODE_INFORMATION_CACHE_LIFETIME;
+		}
+
+		private boolean isValid() {
+			return System.currentTimeMillis() < expires;
 		}
 	}
 
 	@Override
-	public void deliver(Id id, Message pastMessage) {
+	public void deliver(Id id, final Message pastMessage) {
+		final long start = System.nanoTime();
 		logger.info("\t<-- received message:" + pastMessage);
 
 		if (pastMessage instanceof MessageEnvelope) {
@@ -211,7 +465,8 @@ public class NodeApplication implements Application, ScribeMultiClient {
 //						m.getSender(), l2pNode.getPastryNode(), m.getRecipient(), "Got an envelope for a las2peer message!" );
 
 				// hmmmm, is the problem here??
-				new Thread(new Runnable() {
+				metrics.deliveryQueued();
+				Runnable delivery = new Runnable() {
 					@Override
 					public void run() {
 						try {
@@ -219,9 +474,18 @@ public class NodeApplication implements Application, ScribeMultiClient {
 						} catch (Exception e) {
 							System.out.println("Exception while delivering message to the node: " + e);
 							e.printStackTrace();
+						} finally {
+							metrics.deliveryDone();
+							metrics.messageDelivered(pastMessage, start);
 						}
 					}
-				}).start();
+				};
+				if (m.isResponse()) {
+					// senders wait for their responses, they must not wait behind or be dropped with new requests
+					executeResponse(delivery, m);
+				} else {
+					executeDelivery(delivery, m);
+				}
 
 			} catch (Exception e) {
 				System.out.println("Exception while opening message!: " + e);
@@ -233,20 +497,22 @@ public class NodeApplication implements Application, ScribeMultiClient {
 					((SearchAnswerMessage) pastMessage).getSendingNode(), (Long) null, l2pNode.getPastryNode(),
 					(Long) null, "");
 
-			// just store the sending node handle
-			HashSet<NodeHandle> pendingCollection = htPendingAgentSearches.get(((SearchAnswerMessage) pastMessage)
+			// just store the sending node handle, this completes the search as soon as enough answers are there
+			PendingAgentSearch pending = htPendingAgentSearches.get(((SearchAnswerMessage) pastMessage)
 					.getRequestMessageId());
 
-			if (pendingCollection != null)
-				pendingCollection.add(((SearchAnswerMessage) pastMessage).getSendingNode());
+			if (pending != null)
+				pending.addAnswer(((SearchAnswerMessage) pastMessage).getSendingNode());
 			else
 				logger.warning("got a timed out response or response to a message not sent by me!");
+		} else if (pastMessage instanceof AnycastAcceptedMessage) {
+			anycastAccepted(((AnycastAcceptedMessage) pastMessage).getContentId());
 		} else if (pastMessage instanceof GetInfoMessage) {
 			// just send a response
 			GetInfoMessage gim = (GetInfoMessage) pastMessage;
 			try {
 				InfoResponseMessage answer = new InfoResponseMessage(gim.getId(), getLocalHandle(),
-						l2pNode.getNodeInformation());
+						getOwnInformationXml());
 
 				sendMessageDirectly(answer, gim.getSender());
 			} catch (CryptoException e) {
@@ -255,23 +521,82 @@ public class NodeApplication implements Application, ScribeMultiClient {
 		} else if (pastMessage instanceof InfoResponseMessage) {
 			InfoResponseMessage irm = (InfoResponseMessage) pastMessage;
 
-			WaiterThread<Message> waiter = appMessageWaiters.get(irm.getResponseToId());
+			CompletableFuture<NodeInformation> waiter = appMessageWaiters.get(irm.getResponseToId());
 			if (waiter == null)
 				l2pNode.observerNotice(Event.MESSAGE_FAILED, l2pNode.getNodeId(), (MessageReceiver) null,
 						"Got an answer to an information request I do not know from " + irm.getSender());
 			else {
 				l2pNode.observerNotice(Event.MESSAGE_RECEIVED, l2pNode.getNodeId(), (MessageReceiver) null,
 						"Got an answer for Information request " + irm.getResponseToId() + "from " + irm.getSender());
-				waiter.collectResult(irm);
+				// verify the signature off the network thread
+				try {
+					threadPools.execute(Concern.CRYPTO, () -> {
+						NodeInformation info = irm.getInfoContent();
+						try {
+							if (info == null)
+								throw new L2pSecurityException("unable to read node information");
+							info.verifySignature();
+							nodeInformationCache.put(irm.getSender().getId(), new CachedNodeInformation(info));
+							waiter.complete(info);
+						} catch (L2pSecurityException e) {
+							waiter.completeExceptionally(new NodeNotFoundException(
+									"Unable to verify information of node " + irm.getSender() + ": " + e.getMessage()));
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					waiter.completeExceptionally(new NodeNotFoundException("Unable to verify information of node "
+							+ irm.getSender() + ": " + e.getMessage()));
+				}
 			}
 		} else {
 			l2pNode.observerNotice(Event.MESSAGE_RECEIVED, l2pNode.getNodeId(), null, "unkown message: " + pastMessage);
 			logger.warning("\t<-- received unknown message: " + pastMessage);
 		}
+
+		if (!(pastMessage instanceof MessageEnvelope)) {
+			metrics.messageDelivered(pastMessage, start);
+		}
+	}
+
+	/**
+	 * hand over a received message to the delivery pool of the node, the message is dropped if the pool is exhausted
+	 * 
+	 * @param delivery
+	 * @param message the delivered message, for logging only
+	 * @return false, if the message has been dropped
+	 */
+	private boolean executeDelivery(Runnable delivery, Object message) {
+		try {
+			threadPools.execute(Concern.DELIVERY, delivery);
+			return true;
+		} catch (RejectedExecutionException e) {
+			metrics.deliveryDone();
+			l2pNode.observerNotice(Event.MESSAGE_FAILED, l2pNode.getNodeId(), (MessageReceiver) null,
+					"dropped received message, delivery pool exhausted: " + message);
+			logger.warning("dropped received message " + message + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * hand over a received response to the response pool of the node, responses are only dropped if the node is shut
+	 * down
+	 * 
+	 * @param delivery
+	 * @param message the delivered message, for logging only
+	 */
+	private void executeResponse(Runnable delivery, Object message) {
+		try {
+			threadPools.execute(Concern.RESPONSE, delivery);
+		} catch (RejectedExecutionException e) {
+			metrics.deliveryDone();
+			logger.warning("dropped received response " + message + ": " + e.getMessage());
+		}
 	}
 
 	@Override
 	public boolean forward(RouteMessage pastMessage) {
+		metrics.messageForwarded();
 		l2pNode.observerNotice(Event.MESSAGE_FORWARDING, l2pNode.getNodeId(), (Long) null,
 				pastMessage.getDestinationId(), (Long) null, "" + pastMessage);
 
@@ -323,7 +648,9 @@ public class NodeApplication implements Application, ScribeMultiClient {
 				m.getContainedMessage().getRecipient(), "message: " + m);
 
 		logger.info("\t --> " + this + " sending (encapsulated) message directly to " + to);
+		long start = System.nanoTime();
 		endpoint.route(null, m, to);
+		metrics.messageSent(m, start);
 	}
 
 	/**
@@ -333,7 +660,9 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 * @param to
 	 */
 	public void sendMessageDirectly(Message m, NodeHandle to) {
+		long start = System.nanoTime();
 		endpoint.route(null, m, to);
+		metrics.messageSent(m, start);
 	}
 
 	/**
@@ -342,17 +671,75 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 * @param l2pMessage
 	 */
 	public void sendMessage(i5.las2peer.communication.Message l2pMessage) {
+		sendMessage(l2pMessage, SendMode.BROADCAST);
+	}
+
+	/**
+	 * send a {@link i5.las2peer.communication.Message} to its recipient agent (or topic)
+	 * 
+	 * In {@link SendMode#BROADCAST} mode, all running instances of the recipient receive the message. In
+	 * {@link SendMode#ANYCAST} mode, the message is delivered to the first instance found in the Scribe tree. If no
+	 * node confirms an anycast within <i>ANYCAST_ACCEPT_TIMEOUT</i> milliseconds, the message is published to all
+	 * instances instead.
+	 * 
+	 * @param l2pMessage
+	 * @param mode
+	 */
+	public void sendMessage(i5.las2peer.communication.Message l2pMessage, SendMode mode) {
 		BroadcastMessageContent content = new BroadcastMessageContent(getLocalHandle(), l2pMessage);
 
-		System.out.println(" --> sending Message " + l2pMessage.getId());
+		logger.fine(" --> sending Message " + l2pMessage.getId() + " (" + mode + ")");
 
+		Topic topic;
 		if (!l2pMessage.isTopic()) {
-			scribeClient.publish(getAgentTopic(l2pMessage.getRecipientId()), content);
-			// scribeClient.anycast( getAgentTopic ( l2pMessage.getRecipientId() ), content );
+			topic = getAgentTopic(l2pMessage.getRecipientId());
 		} else {
-			scribeClient.publish(getTopic(l2pMessage.getTopicId()), content);
+			topic = getTopic(l2pMessage.getTopicId());
+		}
+
+		long start = System.nanoTime();
+		if (mode == SendMode.ANYCAST) {
+			awaitAnycastAccept(topic, content);
+			scribeClient.anycast(topic, content);
+		} else {
+			scribeClient.publish(topic, content);
+		}
+		metrics.messageSent(content, start);
+	}
+
+	/**
+	 * Scribe does not report failed anycasts to the sender, so fall back to publishing the content, if no node
+	 * accepts it in time
+	 * 
+	 * @param topic
+	 * @param content
+	 */
+	private void awaitAnycastAccept(final Topic topic, final BroadcastMessageContent content) {
+		final long contentId = content.getRandomId();
+		try {
+			pendingAnycasts.put(contentId, threadPools.getScheduled().schedule(() -> {
+				if (pendingAnycasts.remove(contentId) == null)
+					return;
+				l2pNode.observerNotice(Event.MESSAGE_FAILED, l2pNode.getNodeId(), (MessageReceiver) null,
+						"No node accepted anycast " + contentId + " within " + ANYCAST_ACCEPT_TIMEOUT
+								+ "ms, publishing it instead");
+				metrics.anycastFallback();
+				scribeClient.publish(topic, content);
+			}, ANYCAST_ACCEPT_TIMEOUT, TimeUnit.MILLISECONDS));
+		} catch (RejectedExecutionException e) {
+			// node is shutting down, nothing left to fall back to
 		}
+	}
 
+	/**
+	 * stop waiting for the confirmation of an anycast sent by this node
+	 * 
+	 * @param contentId
+	 */
+	private void anycastAccepted(long contentId) {
+		ScheduledFuture<?> fallback = pendingAnycasts.remove(contentId);
+		if (fallback != null)
+			fallback.cancel(false);
 	}
 
 	@Override
@@ -372,8 +759,8 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	/**
 	 * look for an agent in the p2p net
 	 * 
-	 * This method broadcasts a search message for the given agent and collects all answers. It tries to wait for
-	 * <i>expectedAnswers</i> nodes to respond to the search.
+	 * This method broadcasts a search message for the given agent and collects all answers. It returns as soon as
+	 * <i>expectedAnswers</i> nodes have responded to the search.
 	 * 
 	 * However the search will be aborted after <i>SEARCH_TIMEOUT</i> milliseconds.
 	 * 
@@ -382,45 +769,131 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 * @return a collections of node handles where the requested agent is registered to
 	 */
 	public Collection<NodeHandle> searchAgent(long agentId, int expectedAnswers) {
+		CompletableFuture<Collection<NodeHandle>> search = searchAgentAsync(agentId, expectedAnswers);
+		try {
+			return search.get();
+		} catch (InterruptedException e) {
+			logger.log(Level.WARNING, "agent search (" + agentId + ") interrupted", e);
+			return Collections.emptySet();
+		} catch (ExecutionException e) {
+			logger.log(Level.WARNING, "agent search (" + agentId + ") failed", e.getCause());
+			return Collections.emptySet();
+		}
+	}
+
+	/**
+	 * look for an agent in the p2p net without blocking the calling thread
+	 * 
+	 * The returned future is completed as soon as <i>expectedAnswers</i> nodes have responded to the search or with
+	 * the answers collected so far after <i>SEARCH_TIMEOUT</i> milliseconds.
+	 * 
+	 * Results are cached for <i>SEARCH_CACHE_LIFETIME</i> milliseconds and used for searches expecting at most as many
+	 * answers. Unsuccessful searches are cached for <i>SEARCH_NEGATIVE_CACHE_LIFETIME</i> milliseconds and only used
+	 * for searches expecting the same number of answers.
+	 * 
+	 * @param agentId
+	 * @param expectedAnswers
+	 * @return a future for the collection of node handles where the requested agent is registered to
+	 */
+	public CompletableFuture<Collection<NodeHandle>> searchAgentAsync(final long agentId, int expectedAnswers) {
+		CachedAgentSearch cached = agentSearchCache.get(agentId);
+		if (cached != null) {
+			if (cached.isValid() && (cached.handles.isEmpty() ? cached.expectedAnswers == expectedAnswers
+					: cached.handles.size() >= expectedAnswers)) {
+				l2pNode.observerNotice(Event.AGENT_SEARCH_FINISHED, this.l2pNode.getNodeId(), agentId, null,
+						(Long) null, "" + cached.handles.size() + " (cached)");
+				return CompletableFuture.completedFuture(cached.handles);
+			}
+			agentSearchCache.remove(agentId, cached);
+		}
 
 		Topic agentTopic = getAgentTopic(agentId);
 
-		System.out.println("Topic info:");
-		System.out.println("root: " + scribeClient.isRoot(agentTopic));
-		System.out.println("parent: " + scribeClient.getParent(agentTopic));
-		// System.out.println( "children: " + scribeClient.getChildren(agentTopic).length );
+		l2pNode.observerNotice(Event.AGENT_SEARCH_STARTED, this.l2pNode.getNodeId(), agentId, null, (Long) null, "("
+				+ expectedAnswers + ") - topic: " + agentTopic);
 
-		for (NodeHandle nh : scribeClient.getChildrenOfTopic(getAgentTopic(agentId)))
-			System.out.println("Child in search: " + nh);
+		final SearchAgentContent search = new SearchAgentContent(getLocalHandle(), agentId);
+		final PendingAgentSearch pending = new PendingAgentSearch(expectedAnswers);
+		htPendingAgentSearches.put(search.getRandomId(), pending);
 
-		l2pNode.observerNotice(Event.AGENT_SEARCH_STARTED, this.l2pNode.getNodeId(), agentId, null, (Long) null, "("
-				+ expectedAnswers + ") - topic: " + getAgentTopic(agentId));
+		final ScheduledFuture<?> timeoutTask = threadPools.getScheduled().schedule(pending::finish, SEARCH_TIMEOUT,
+				TimeUnit.MILLISECONDS);
 
-		SearchAgentContent search = new SearchAgentContent(getLocalHandle(), agentId);
-		HashSet<NodeHandle> resultSet = new HashSet<NodeHandle>();
-		htPendingAgentSearches.put(search.getRandomId(), resultSet);
+		CompletableFuture<Collection<NodeHandle>> result = pending.future.thenApply(handles -> {
+			timeoutTask.cancel(false);
+			htPendingAgentSearches.remove(search.getRandomId());
+			agentSearchCache.put(agentId, new CachedAgentSearch(handles, expectedAnswers));
+
+			l2pNode.observerNotice(Event.AGENT_SEARCH_FINISHED, this.l2pNode.getNodeId(), agentId, null, (Long) null,
+					"" + handles.size());
+			return handles;
+		});
 
 		// publish a message to search the agent registers
+		long start = System.nanoTime();
 		scribeClient.publish(agentTopic, search);
-		// scribeClient.anycast( agentTopic,search );
+		metrics.messageSent(search, start);
 
-		long timeout = new Date().getTime() + SEARCH_TIMEOUT;
+		return result;
+	}
 
-		// todo: use a waiterThread here
-		while (new Date().getTime() <= timeout && resultSet.size() < expectedAnswers)
-			try {
-				System.out.println("\t\t waiting for agent-search (" + agentId + ") - "
-						+ (-new Date().getTime() + timeout) / 1000 + "s left");
-				Thread.sleep(SEARCH_SLEEP_TIME);
-			} catch (InterruptedException e) {
+	/**
+	 * drop a cached search result, if the agent could not be reached at the nodes found
+	 * 
+	 * @param agentId
+	 */
+	public void invalidateAgentSearch(long agentId) {
+		agentSearchCache.remove(agentId);
+	}
+
+	/**
+	 * collects the answers to a running agent search and completes as soon as enough answers are there
+	 */
+	private static class PendingAgentSearch {
+
+		private final int expectedAnswers;
+		private final HashSet<NodeHandle> handles = new HashSet<NodeHandle>();
+		private final CompletableFuture<Collection<NodeHandle>> future = new CompletableFuture<Collection<NodeHandle>>();
+
+		private PendingAgentSearch(int expectedAnswers) {
+			this.expectedAnswers = expectedAnswers;
+		}
+
+		private void addAnswer(NodeHandle handle) {
+			synchronized (handles) {
+				handles.add(handle);
+				if (handles.size() < expectedAnswers)
+					return;
 			}
+			finish();
+		}
 
-		htPendingAgentSearches.remove(search.getRandomId());
+		private void finish() {
+			synchronized (handles) {
+				future.complete(Collections.unmodifiableSet(new HashSet<NodeHandle>(handles)));
+			}
+		}
+	}
 
-		l2pNode.observerNotice(Event.AGENT_SEARCH_FINISHED, this.l2pNode.getNodeId(), agentId, null, (Long) null, ""
-				+ resultSet.size());
+	/**
+	 * a short-lived search result, empty results expire earlier than positive ones
+	 */
+	private static class CachedAgentSearch {
 
-		return resultSet;
+		private final Collection<NodeHandle> handles;
+		private final int expectedAnswers;
+		private final long expires;
+
+		private CachedAgentSearch(Collection<NodeHandle> handles, int expectedAnswers) {
+			this.handles = handles;
+			this.expectedAnswers = expectedAnswers;
+			this.expires = System.currentTimeMillis()
+					+ (handles.isEmpty() ? SEARCH_NEGATIVE_CACHE_LIFETIME : SEARCH_CACHE_LIFETIME);
+		}
+
+		private boolean isValid() {
+			return System.currentTimeMillis() < expires;
+		}
 	}
 
 	/**
@@ -443,60 +916,96 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	}
 
 	@Override
-	public void deliver(Topic topic, ScribeContent content) {
+	public void deliver(Topic topic, final ScribeContent content) {
+		final long start = System.nanoTime();
 		if (content instanceof SearchAgentContent) {
 			logger.info("\t\t<---got request for agent");
 
-			for (Long regId : htAgentTopics.keySet()) {
-				if (htAgentTopics.get(regId).equals(topic)) {
-					// found the agent
-					// send message to searching node
+			Long regId = agentTopics.getRegisteredAgent(topic);
+			if (regId != null) {
+				// found the agent
+				// send message to searching node
 
-					endpoint.route(
-							null,
-							new SearchAnswerMessage(((SearchAgentContent) content).getOrigin(), this.l2pNode
-									.getPastryNode().getLocalNodeHandle(), ((SearchAgentContent) content).getRandomId()),
-							((SearchAgentContent) content).getOrigin());
-					// send return message
+				sendMessageDirectly(
+						new SearchAnswerMessage(((SearchAgentContent) content).getOrigin(), this.l2pNode
+								.getPastryNode().getLocalNodeHandle(), ((SearchAgentContent) content).getRandomId()),
+						((SearchAgentContent) content).getOrigin());
+				// send return message
 
-					logger.info("\t\t---> found " + regId + " > response sent");
-					return;
-				}
+				logger.info("\t\t---> found " + regId + " > response sent");
+			} else {
+				logger.severe("\t\t<--- subscribed but agent not found!!!!");
 			}
-
-			logger.severe("\t\t<--- subscribed but agent not found!!!!");
 		} else if (content instanceof AgentJoinedContent) {
-			logger.info("\t\t<--- got notification about agent joining: " + ((AgentJoinedContent) content).getAgentId());
+			logger.info("\t\t<--- got notification about agents joining: "
+					+ Arrays.toString(((AgentJoinedContent) content).getAgentIds()));
 		} else if (content instanceof BroadcastMessageContent) {
-			final BroadcastMessageContent c = (BroadcastMessageContent) content;
-
-			// or is the storage problem here?
-			new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						l2pNode.receiveMessage(c.getMessage());
-					} catch (MalformedXMLException e) {
-						logger.severe("unable to open BroadcastMessageContent!");
-					} catch (L2pSecurityException e) {
-						logger.severe("L2pSecurityException while handling received message!");
-					} catch (MessageException e) {
-						logger.log(Level.SEVERE, "MessageException while handling received message!", e);
-					} catch (AgentNotKnownException e) {
-						logger.severe("AgentNotKnown!?! - I shouldn't have gotten this message!");
-					}
-				}
-
-			}).start();
+			deliverBroadcast((BroadcastMessageContent) content, start);
+			return;
 		} else {
 			l2pNode.observerNotice(Event.MESSAGE_RECEIVED_UNKNOWN, this.l2pNode.getNodeId(),
 					"got an unknown message of type " + content.getClass().getName());
 			logger.info("got unknown Scribe content of type " + content.getClass().getName());
 		}
+
+		metrics.messageDelivered(content, start);
+	}
+
+	/**
+	 * hand over a received broadcast or anycast message to the delivery pool, unless it has been delivered before
+	 * 
+	 * @param c
+	 * @param start start of the delivery as given by {@link System#nanoTime()}
+	 * @return false, if the message has been dropped by the delivery pool
+	 */
+	private boolean deliverBroadcast(final BroadcastMessageContent c, final long start) {
+		synchronized (deliveredBroadcasts) {
+			if (deliveredBroadcasts.put(c.getRandomId(), Boolean.TRUE) != null) {
+				logger.info("\t\t<--- dropped already delivered message content " + c.getRandomId());
+				return true;
+			}
+		}
+
+		// or is the storage problem here?
+		metrics.deliveryQueued();
+		boolean queued = executeDelivery(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					l2pNode.receiveMessage(c.getMessage());
+				} catch (MalformedXMLException e) {
+					logger.severe("unable to open BroadcastMessageContent!");
+				} catch (L2pSecurityException e) {
+					logger.severe("L2pSecurityException while handling received message!");
+				} catch (MessageException e) {
+					logger.log(Level.SEVERE, "MessageException while handling received message!", e);
+				} catch (AgentNotKnownException e) {
+					logger.severe("AgentNotKnown!?! - I shouldn't have gotten this message!");
+				} finally {
+					metrics.deliveryDone();
+					metrics.messageDelivered(c, start);
+				}
+			}
+
+		}, c);
+		if (!queued) {
+			// not delivered, so a later copy of it may still be
+			synchronized (deliveredBroadcasts) {
+				deliveredBroadcasts.remove(c.getRandomId());
+			}
+		}
+		return queued;
 	}
 
 	@Override
 	public void subscribeFailed(Topic topic) {
+		CompletableFuture<Topic> confirmation = pendingSubscriptions.remove(topic);
+		if (confirmation != null) {
+			// reported by the registration waiting for the confirmation
+			confirmation.completeExceptionally(new NodeException("subscription to topic " + topic + " failed"));
+			return;
+		}
+
 		// System.out.println(ColoredOutput.colorize( "topic subscription failed!", ForegroundColor.Yellow));
 		l2pNode.observerNotice(Event.PASTRY_TOPIC_SUBSCRIPTION_FAILED, this.l2pNode.getNodeId(), "" + topic.toString());
 	}
@@ -512,10 +1021,10 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	@Override
 	public void subscribeSuccess(Collection<Topic> topics) {
 		for (Topic t : topics) {
-			System.out.println("Subscribe success! Topic info:");
-			System.out.println("\troot: " + scribeClient.getRoot(t) + " / " + scribeClient.isRoot(t));
-			System.out.println("\tparent: " + scribeClient.getParent(t));
-			// System.out.println( "\tchildren: " + scribeClient.getChildren(t).length );
+			CompletableFuture<Topic> confirmation = pendingSubscriptions.remove(t);
+			if (confirmation != null)
+				confirmation.complete(t);
+			logger.finer("subscribe success for topic " + t);
 		}
 
 		// System.out.println(ColoredOutput.colorize( "\t\t<--sucessfully subscribed to topic collection",
@@ -556,13 +1065,13 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	}
 
 	/**
-	 * create a Scribe topic for the given agent
+	 * get the (cached) Scribe topic for the given agent
 	 * 
 	 * @param agentId
 	 * @return the topic corresponding to the given agent
 	 */
 	private Topic getAgentTopic(long agentId) {
-		return new Topic(new PastryIdFactory(l2pNode.getPastryNode().getEnvironment()), getAgentTopicId(agentId));
+		return agentTopics.getTopic(agentId);
 	}
 
 	/**
@@ -572,17 +1081,37 @@ public class NodeApplication implements Application, ScribeMultiClient {
 	 * @return
 	 */
 	private Topic getTopic(long topicId) {
-		return new Topic(new PastryIdFactory(l2pNode.getPastryNode().getEnvironment()), topicId + "");
+		return new Topic(topicIdFactory, topicId + "");
 	}
 
 	@Override
 	public boolean anycast(Topic topic, ScribeContent content) {
-		try {
-			deliver(topic, content);
-			return true;
-		} catch (Exception e) {
-			return false;
+		if (!(content instanceof BroadcastMessageContent)) {
+			try {
+				deliver(topic, content);
+				return true;
+			} catch (Exception e) {
+				return false;
+			}
 		}
+
+		// only accept messages for agents actually running here, otherwise let Scribe look further
+		BroadcastMessageContent accepted = (BroadcastMessageContent) content;
+		Long recipientId = accepted.getRecipientId();
+		if (recipientId != null && !l2pNode.hasLocalAgent(recipientId))
+			return false;
+
+		// accept only messages actually queued for delivery, otherwise another node may take it
+		if (!deliverBroadcast(accepted, System.nanoTime()))
+			return false;
+
+		// tell the sender, so it does not fall back to publishing the message
+		if (accepted.getOrigin().equals(getLocalHandle()))
+			anycastAccepted(accepted.getRandomId());
+		else
+			sendMessageDirectly(new AnycastAcceptedMessage(getLocalHandle(), accepted.getRandomId()),
+					accepted.getOrigin());
+		return true;
 	}
 
 }
@@ -0,0 +1,156 @@
+package i5.las2peer.p2p.pastry;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import i5.las2peer.logging.metrics.Counter;
+import i5.las2peer.logging.metrics.LatencyHistogram;
+import i5.las2peer.logging.metrics.MetricsRegistry;
+
+/**
+ * Collects metrics of the Pastry transport layer in a {@link MetricsRegistry}.
+ *
+ * For each message class, sent and delivered messages, their payload length and the time needed to send resp. handle
+ * them are recorded. Metric objects are cached per class, so recording an event does not need any string operations.
+ *
+ * The payload length is the number of characters of the XML encoded las2peer message carried by a
+ * {@link MessageEnvelope} or {@link BroadcastMessageContent}, other message classes record no payload. It is not the
+ * number of serialized bytes sent over the wire, which is only known to the Pastry transport. Routing hops are not
+ * recorded per message either, only the number of messages routed through this node.
+ *
+ */
+public class TransportMetrics {
+
+	public static final String PREFIX = "pastry.";
+
+	private final MetricsRegistry registry;
+
+	private final ConcurrentHashMap<Class<?>, TypeMetrics> sent = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Class<?>, TypeMetrics> delivered = new ConcurrentHashMap<>();
+
+	private final Counter forwarded;
+	private final Counter anycastFallbacks;
+	private final LatencyHistogram subscribeLatency;
+	private final AtomicInteger pendingDeliveries = new AtomicInteger();
+
+	/**
+	 * create transport metrics reporting to the given registry
+	 *
+	 * @param registry
+	 */
+	public TransportMetrics(MetricsRegistry registry) {
+		this.registry = registry;
+		forwarded = registry.counter(PREFIX + "route.forwarded");
+		anycastFallbacks = registry.counter(PREFIX + "scribe.anycast.fallbacks");
+		subscribeLatency = registry.histogram(PREFIX + "scribe.subscribe.latency");
+		registry.gauge(PREFIX + "deliver.pending", pendingDeliveries::get);
+	}
+
+	/**
+	 * get the registry the metrics are reported to
+	 *
+	 * @return the metrics registry
+	 */
+	public MetricsRegistry getRegistry() {
+		return registry;
+	}
+
+	/**
+	 * record a message sent by this node
+	 *
+	 * @param message a Pastry message or Scribe content
+	 * @param startNanos start of the send operation as given by {@link System#nanoTime()}
+	 */
+	public void messageSent(Object message, long startNanos) {
+		get(sent, "send.", message.getClass()).record(startNanos, payloadChars(message));
+	}
+
+	/**
+	 * record a message delivered to this node
+	 *
+	 * @param message a Pastry message or Scribe content
+	 * @param startNanos start of the delivery as given by {@link System#nanoTime()}
+	 */
+	public void messageDelivered(Object message, long startNanos) {
+		get(delivered, "deliver.", message.getClass()).record(startNanos, payloadChars(message));
+	}
+
+	/**
+	 * record a message routed through this node
+	 */
+	public void messageForwarded() {
+		forwarded.inc();
+	}
+
+	/**
+	 * record an anycast no node accepted in time, which has been published to all instances instead
+	 */
+	public void anycastFallback() {
+		anycastFallbacks.inc();
+	}
+
+	/**
+	 * record a confirmed Scribe subscription
+	 *
+	 * @param startNanos time of the subscribe call as given by {@link System#nanoTime()}
+	 */
+	public void subscriptionConfirmed(long startNanos) {
+		subscribeLatency.recordSince(startNanos);
+	}
+
+	/**
+	 * record a message handed over to a separate thread for delivery
+	 */
+	public void deliveryQueued() {
+		pendingDeliveries.incrementAndGet();
+	}
+
+	/**
+	 * record the end of a delivery started with {@link #deliveryQueued()}
+	 */
+	public void deliveryDone() {
+		pendingDeliveries.decrementAndGet();
+	}
+
+	private TypeMetrics get(ConcurrentHashMap<Class<?>, TypeMetrics> map, String operation, Class<?> cls) {
+		TypeMetrics result = map.get(cls);
+		if (result == null) {
+			result = map.computeIfAbsent(cls, c -> new TypeMetrics(PREFIX + operation + c.getSimpleName()));
+		}
+		return result;
+	}
+
+	private static int payloadChars(Object message) {
+		if (message instanceof MessageEnvelope) {
+			return ((MessageEnvelope) message).getContent().length();
+		} else if (message instanceof BroadcastMessageContent) {
+			return ((BroadcastMessageContent) message).getContentLength();
+		}
+		return 0;
+	}
+
+	/**
+	 * the metrics of one message class and operation
+	 */
+	private class TypeMetrics {
+
+		private final Counter count;
+		private final Counter payloadChars;
+		private final LatencyHistogram latency;
+
+		private TypeMetrics(String name) {
+			count = registry.counter(name);
+			payloadChars = registry.counter(name + ".payload.chars");
+			latency = registry.histogram(name + ".latency");
+		}
+
+		private void record(long startNanos, int chars) {
+			latency.recordSince(startNanos);
+			count.inc();
+			if (chars > 0) {
+				payloadChars.add(chars);
+			}
+		}
+	}
+
+}
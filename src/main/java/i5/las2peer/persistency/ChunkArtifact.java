@@ -0,0 +1,77 @@
+package i5.las2peer.persistency;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import i5.las2peer.security.Agent;
+import i5.las2peer.security.L2pSecurityException;
+import i5.las2peer.tools.CryptoException;
+import rice.p2p.commonapi.Id;
+import rice.p2p.past.PastContent;
+import rice.p2p.past.PastException;
+import rice.pastry.commonapi.PastryIdFactory;
+
+/**
+ * A chunk of a serialized envelope, addressed by the hash of its content. Chunks are immutable and shared between
+ * envelope versions (and envelopes) containing the same data, so an update only stores the chunks that changed.
+ */
+public class ChunkArtifact extends NetworkArtifact {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String hash;
+
+	public ChunkArtifact(PastryIdFactory idFactory, byte[] rawChunk, Agent author)
+			throws CryptoException, L2pSecurityException {
+		this(idFactory, hash(rawChunk), rawChunk, author);
+	}
+
+	private ChunkArtifact(PastryIdFactory idFactory, String hash, byte[] rawChunk, Agent author)
+			throws CryptoException, L2pSecurityException {
+		super(buildId(idFactory, hash), 0, rawChunk, author);
+		this.hash = hash;
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	@Override
+	public void verify() throws VerificationFailedException {
+		super.verify();
+		if (!hash.equals(hash(getUnverifiedContent()))) {
+			throw new VerificationFailedException("Chunk content does not match its hash " + hash);
+		}
+	}
+
+	@Override
+	public PastContent checkInsert(Id id, PastContent existingContent) throws PastException {
+		if (existingContent != null) {
+			// same hash, same content, keep the stored copy regardless of its author
+			return existingContent;
+		}
+		return super.checkInsert(id, null);
+	}
+
+	public static Id buildId(PastryIdFactory idFactory, String hash) {
+		return idFactory.buildId("chunk-" + hash);
+	}
+
+	/**
+	 * Computes the hash a chunk is addressed by.
+	 *
+	 * @param rawChunk The content of the chunk.
+	 * @return Returns the URL safe Base64 encoded SHA-256 hash of the content.
+	 */
+	public static String hash(byte[] rawChunk) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(rawChunk);
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+package i5.las2peer.persistency;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import i5.las2peer.logging.metrics.Counter;
+import i5.las2peer.logging.metrics.MetricsRegistry;
+
+/**
+ * node local cache of decoded envelopes
+ *
+ * An envelope version never changes once it is stored, so decoded envelopes are cached by identifier and version
+ * without expiry. The cache is bounded by the serialized size of the envelopes and evicts the least recently used
+ * ones.
+ *
+ * The latest version of an envelope does change. It is only answered from the cache if this node stored or fetched it
+ * within the configured maximum age, a maximum age of zero always asks the network for the latest version.
+ */
+public class EnvelopeCache {
+
+	private static class Entry {
+		private final Envelope envelope;
+		private final long size;
+
+		private Entry(Envelope envelope, long size) {
+			this.envelope = envelope;
+			this.size = size;
+		}
+	}
+
+	private static class Latest {
+		private final long version;
+		private final long timestamp;
+
+		private Latest(long version, long timestamp) {
+			this.version = version;
+			this.timestamp = timestamp;
+		}
+	}
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final HashMap<String, Latest> latest = new HashMap<>();
+	private long maxSize;
+	private long latestMaxAge;
+	private long size = 0;
+
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter evictions;
+
+	/**
+	 * create an envelope cache
+	 *
+	 * @param maxSize maximum serialized size (in bytes) of all cached envelopes, 0 disables the cache
+	 * @param latestMaxAge time (in milliseconds) a known latest version is answered from the cache
+	 * @param metrics registry to report hits, misses, evictions and the cache size to
+	 */
+	public EnvelopeCache(long maxSize, long latestMaxAge, MetricsRegistry metrics) {
+		this.maxSize = maxSize;
+		this.latestMaxAge = latestMaxAge;
+		hits = metrics.counter("storage.envelopes.cache.hits");
+		misses = metrics.counter("storage.envelopes.cache.misses");
+		evictions = metrics.counter("storage.envelopes.cache.evictions");
+		metrics.gauge("storage.envelopes.cache.bytes", this::getSize);
+	}
+
+	/**
+	 * configure the cache, entries exceeding the new maximum size are evicted
+	 *
+	 * @param maxSize maximum serialized size (in bytes) of all cached envelopes, 0 disables the cache
+	 * @param latestMaxAge time (in milliseconds) a known latest version is answered from the cache
+	 */
+	public synchronized void configure(long maxSize, long latestMaxAge) {
+		this.maxSize = maxSize;
+		this.latestMaxAge = latestMaxAge;
+		if (latestMaxAge <= 0) {
+			latest.clear();
+		}
+		evict();
+	}
+
+	/**
+	 * get a cached envelope version
+	 *
+	 * @param identifier identifier of the envelope
+	 * @param version version of the envelope
+	 * @return the envelope or null if it is not cached
+	 */
+	public synchronized Envelope get(String identifier, long version) {
+		Entry entry = entries.get(key(identifier, version));
+		if (entry == null) {
+			misses.inc();
+			return null;
+		}
+		hits.inc();
+		return entry.envelope;
+	}
+
+	/**
+	 * get the latest version of an envelope, if it is known recently enough
+	 *
+	 * @param identifier identifier of the envelope
+	 * @return the envelope or null if the latest version has to be asked from the network
+	 */
+	public synchronized Envelope getLatest(String identifier) {
+		if (latestMaxAge <= 0) {
+			return null;
+		}
+		Latest known = latest.get(identifier);
+		if (known == null || System.currentTimeMillis() - known.timestamp > latestMaxAge) {
+			misses.inc();
+			return null;
+		}
+		return get(identifier, known.version);
+	}
+
+	/**
+	 * add a decoded envelope
+	 *
+	 * @param envelope envelope fetched from or stored to the network
+	 * @param serializedSize size of the serialized envelope in bytes
+	 */
+	public synchronized void put(Envelope envelope, long serializedSize) {
+		if (serializedSize > maxSize) {
+			return;
+		}
+		Entry previous = entries.put(key(envelope.getIdentifier(), envelope.getVersion()),
+				new Entry(envelope, serializedSize));
+		if (previous != null) {
+			size -= previous.size;
+		}
+		size += serializedSize;
+		evict();
+	}
+
+	/**
+	 * remember the latest version of an envelope as seen right now
+	 *
+	 * Only cached versions are remembered, so the known latest versions are bounded by the cached entries. An older
+	 * known version is forgotten anyway, since it is not the latest one any more.
+	 *
+	 * @param identifier identifier of the envelope
+	 * @param version latest version in the network
+	 */
+	public synchronized void setLatest(String identifier, long version) {
+		Latest known = latest.get(identifier);
+		if (known != null && known.version > version) {
+			return;
+		}
+		if (latestMaxAge > 0 && entries.containsKey(key(identifier, version))) {
+			latest.put(identifier, new Latest(version, System.currentTimeMillis()));
+		} else if (known != null) {
+			latest.remove(identifier);
+		}
+	}
+
+	/**
+	 * serialized size of all cached envelopes
+	 *
+	 * @return size in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * number of envelopes with a known latest version
+	 *
+	 * @return number of identifiers
+	 */
+	public synchronized int getLatestCount() {
+		return latest.size();
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (size > maxSize && eldest.hasNext()) {
+			Entry entry = eldest.next().getValue();
+			eldest.remove();
+			size -= entry.size;
+			evictions.inc();
+			Envelope evicted = entry.envelope;
+			Latest known = latest.get(evicted.getIdentifier());
+			if (known != null && known.version == evicted.getVersion()) {
+				latest.remove(evicted.getIdentifier());
+			}
+		}
+	}
+
+	private static String key(String identifier, long version) {
+		return identifier + "#" + version;
+	}
+
+}
@@ -0,0 +1,58 @@
+package i5.las2peer.persistency;
+
+import i5.las2peer.api.exceptions.StorageException;
+
+/**
+ * The result of fetching a single envelope as part of a batch. It holds either the fetched envelope or the exception
+ * that prevented fetching it.
+ */
+public class EnvelopeFetchResult {
+
+	private final String identifier;
+	private final Envelope envelope;
+	private final StorageException exception;
+
+	public EnvelopeFetchResult(String identifier, Envelope envelope) {
+		this.identifier = identifier;
+		this.envelope = envelope;
+		this.exception = null;
+	}
+
+	public EnvelopeFetchResult(String identifier, StorageException exception) {
+		this.identifier = identifier;
+		this.envelope = null;
+		this.exception = exception;
+	}
+
+	public String getIdentifier() {
+		return identifier;
+	}
+
+	/**
+	 * Gets the fetched envelope.
+	 *
+	 * @return Returns the fetched Envelope.
+	 * @throws StorageException The exception that prevented fetching the envelope, e. g. an
+	 *             {@link i5.las2peer.api.exceptions.ArtifactNotFoundException}.
+	 */
+	public Envelope getEnvelope() throws StorageException {
+		if (exception != null) {
+			throw exception;
+		}
+		return envelope;
+	}
+
+	/**
+	 * Gets the exception that prevented fetching the envelope.
+	 *
+	 * @return Returns the exception or null, if the envelope was fetched.
+	 */
+	public StorageException getException() {
+		return exception;
+	}
+
+	public boolean isSuccess() {
+		return exception == null;
+	}
+
+}
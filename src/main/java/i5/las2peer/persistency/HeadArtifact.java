@@ -0,0 +1,115 @@
+package i5.las2peer.persistency;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import i5.las2peer.security.Agent;
+import i5.las2peer.security.L2pSecurityException;
+import i5.las2peer.tools.CryptoException;
+import rice.p2p.commonapi.Id;
+import rice.p2p.past.PastContent;
+import rice.p2p.past.PastException;
+import rice.pastry.commonapi.PastryIdFactory;
+
+/**
+ * The head of an envelope points to its latest version, so readers can find it without searching for it version by
+ * version. Identifier and version are part of the signed content.
+ *
+ * A head is only replaced by a head of the same author pointing to a higher version. Concurrent writers can not move
+ * the head backwards, but a head may still lag behind if its update failed or another author stored the next version,
+ * so readers have to check that the next version does not exist. Replicas only know the existing head, so readers have
+ * to check that the metadata the head points to has the same author, too.
+ */
+public class HeadArtifact extends NetworkArtifact {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String identifier;
+	private final long version;
+
+	public HeadArtifact(PastryIdFactory idFactory, String identifier, long version, Agent author)
+			throws CryptoException, L2pSecurityException {
+		super(buildId(idFactory, identifier), 0, encode(identifier, version), author);
+		this.identifier = identifier;
+		this.version = version;
+	}
+
+	/**
+	 * Gets the identifier of the envelope from the signed content.
+	 *
+	 * @return Returns the envelope identifier.
+	 * @throws VerificationFailedException If the signature is invalid.
+	 */
+	public String getIdentifier() throws VerificationFailedException {
+		verify();
+		return identifier;
+	}
+
+	/**
+	 * Gets the latest version of the envelope from the signed content.
+	 *
+	 * @return Returns the version this head points to.
+	 * @throws VerificationFailedException If the signature is invalid.
+	 */
+	public long getVersion() throws VerificationFailedException {
+		verify();
+		return version;
+	}
+
+	@Override
+	public void verify() throws VerificationFailedException {
+		super.verify();
+		// the fields are not signed, they have to match the content
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(getUnverifiedContent()))) {
+			if (!in.readUTF().equals(identifier) || in.readLong() != version) {
+				throw new VerificationFailedException("Head content does not match " + identifier + "#" + version);
+			}
+			if (version < Envelope.START_VERSION || version > Envelope.MAX_UPDATE_CYCLES) {
+				// a head beyond any valid version would pin the head forever
+				throw new VerificationFailedException("Head version " + version + " out of range");
+			}
+		} catch (IOException e) {
+			throw new VerificationFailedException("Could not read head content", e);
+		}
+	}
+
+	@Override
+	public PastContent checkInsert(Id id, PastContent existingContent) throws PastException {
+		if (existingContent instanceof HeadArtifact) {
+			if (!hasSameAuthor((HeadArtifact) existingContent)) {
+				throw new PastException("Write access blocked! Different authors");
+			}
+			long existingVersion = ((HeadArtifact) existingContent).version;
+			if (existingVersion >= version) {
+				throw new PastException("Head of '" + identifier + "' already at version " + existingVersion);
+			}
+		}
+		// don't tell the super class about existing copy -> mutable content
+		return super.checkInsert(id, null);
+	}
+
+	@Override
+	public boolean isMutable() {
+		return true;
+	}
+
+	public static Id buildId(PastryIdFactory idFactory, String identifier) {
+		return idFactory.buildId("head-" + identifier);
+	}
+
+	private static byte[] encode(String identifier, long version) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(baos)) {
+			out.writeUTF(identifier);
+			out.writeLong(version);
+		} catch (IOException e) {
+			// writing to memory does not fail
+			throw new IllegalStateException(e);
+		}
+		return baos.toByteArray();
+	}
+
+}
@@ -1,7 +1,10 @@
 package i5.las2peer.persistency;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import i5.las2peer.api.StorageCollisionHandler;
 import i5.las2peer.api.StorageEnvelopeHandler;
@@ -10,6 +13,7 @@ import i5.las2peer.api.StorageStoreResultHandler;
 import i5.las2peer.api.exceptions.ArtifactNotFoundException;
 import i5.las2peer.api.exceptions.EnvelopeAlreadyExistsException;
 import i5.las2peer.api.exceptions.StorageException;
+import i5.las2peer.persistency.helper.EnvelopeBatchFetcher;
 import i5.las2peer.security.Agent;
 import i5.las2peer.tools.CryptoException;
 import i5.las2peer.tools.SerializationException;
@@ -149,6 +153,23 @@ public interface L2pStorageInterface {
 	public void storeEnvelopeAsync(Envelope Envelope, Agent author, StorageStoreResultHandler resultHandler,
 			StorageCollisionHandler collisionHandler, StorageExceptionHandler exceptionHandler);
 
+	/**
+	 * Stores the given Envelope in the network. The content is signed with the key from the given author. Collisions
+	 * are not merged.
+	 * 
+	 * @param envelope The Envelope to store in the network.
+	 * @param author The author that is used to sign the content.
+	 * @return Returns a future that completes when the Envelope is stored. It completes exceptionally with an
+	 *         {@link EnvelopeAlreadyExistsException}, if an Envelope with the given identifier and version is already
+	 *         known in the network, or with the exception that canceled the operation.
+	 */
+	public default CompletableFuture<Void> storeEnvelopeAsync(Envelope envelope, Agent author) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		storeEnvelopeAsync(envelope, author, (serializable, successfulOperations) -> result.complete(null), null,
+				result::completeExceptionally);
+		return result;
+	}
+
 	/**
 	 * Fetches the latest version for the given identifier from the network.
 	 * 
@@ -170,6 +191,53 @@ public interface L2pStorageInterface {
 	public void fetchEnvelopeAsync(String identifier, StorageEnvelopeHandler envelopeHandler,
 			StorageExceptionHandler exceptionHandler);
 
+	/**
+	 * Fetches the latest version for the given identifier from the network.
+	 * 
+	 * @param identifier An unique identifier for the Envelope.
+	 * @return Returns a future that completes with the fetched Envelope. It completes exceptionally with an
+	 *         {@link ArtifactNotFoundException}, if no envelope or any part of it was not found in the network, or
+	 *         with the exception that canceled the operation.
+	 */
+	public default CompletableFuture<Envelope> fetchEnvelopeAsync(String identifier) {
+		CompletableFuture<Envelope> result = new CompletableFuture<>();
+		fetchEnvelopeAsync(identifier, result::complete, result::completeExceptionally);
+		return result;
+	}
+
+	/**
+	 * Fetches the latest versions for the given identifiers from the network. The lookups and fetches for all
+	 * identifiers are issued concurrently, but at most the given number of them is running at the same time.
+	 * 
+	 * @param identifiers The unique identifiers of the Envelopes, duplicates are fetched once.
+	 * @param parallelism The maximum number of Envelopes fetched at the same time.
+	 * @return Returns a future for each identifier in the given order, like {@link #fetchEnvelopeAsync(String)}.
+	 */
+	public default Map<String, CompletableFuture<Envelope>> fetchEnvelopesAsync(Collection<String> identifiers,
+			int parallelism) {
+		return EnvelopeBatchFetcher.start(this::fetchEnvelopeAsync, identifiers, parallelism);
+	}
+
+	/**
+	 * Fetches the latest versions for the given identifiers from the network and waits for all of them. The lookups
+	 * and fetches for all identifiers are issued concurrently, but at most the given number of them is running at the
+	 * same time.
+	 * 
+	 * @param identifiers The unique identifiers of the Envelopes, duplicates are fetched once.
+	 * @param parallelism The maximum number of Envelopes fetched at the same time.
+	 * @param timeoutMs A timeout for the whole batch. Envelopes not fetched until then fail with a
+	 *            {@link StorageException}.
+	 * @return Returns the fetched Envelope or the exception that prevented fetching it for each identifier in the
+	 *         given order.
+	 */
+	public default Map<String, EnvelopeFetchResult> fetchEnvelopes(Collection<String> identifiers, int parallelism,
+			long timeoutMs) {
+		if (timeoutMs < 0) {
+			throw new IllegalArgumentException("Timeout must be greater or equal to zero");
+		}
+		return EnvelopeBatchFetcher.await(fetchEnvelopesAsync(identifiers, parallelism), timeoutMs);
+	}
+
 	/**
 	 * Removes the envelope with the given identifier from the network.
 	 * 
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import i5.las2peer.api.StorageCollisionHandler;
@@ -118,6 +119,18 @@ public class LocalStorage implements L2pStorageInterface {
 		}
 	}
 
+	@Override
+	public CompletableFuture<Void> storeEnvelopeAsync(Envelope envelope, Agent author) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			storeEnvelope(envelope, author, 0);
+			result.complete(null);
+		} catch (StorageException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
 	@Override
 	public Envelope fetchEnvelope(String identifier, long timeoutMs) throws StorageException {
 		Envelope inStorage = storedEnvelopes.get(identifier);
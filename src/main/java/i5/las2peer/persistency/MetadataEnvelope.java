@@ -1,6 +1,8 @@
 package i5.las2peer.persistency;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 public class MetadataEnvelope implements Serializable {
 
@@ -9,11 +11,27 @@ public class MetadataEnvelope implements Serializable {
 	private final String envelopeIdentifier;
 	private final long envelopeVersion;
 	private final int numOfEnvelopeParts;
+	private final ArrayList<String> chunkHashes;
 
 	public MetadataEnvelope(String envelopeIdentifier, long envelopeVersion, int numOfEnvelopeParts) {
 		this.envelopeIdentifier = envelopeIdentifier;
 		this.envelopeVersion = envelopeVersion;
 		this.numOfEnvelopeParts = numOfEnvelopeParts;
+		this.chunkHashes = null;
+	}
+
+	/**
+	 * Creates the metadata for an envelope stored as {@link ChunkArtifact}s.
+	 *
+	 * @param envelopeIdentifier The identifier of the envelope.
+	 * @param envelopeVersion The version of the envelope.
+	 * @param chunkHashes The hashes of the chunks in order.
+	 */
+	public MetadataEnvelope(String envelopeIdentifier, long envelopeVersion, List<String> chunkHashes) {
+		this.envelopeIdentifier = envelopeIdentifier;
+		this.envelopeVersion = envelopeVersion;
+		this.numOfEnvelopeParts = chunkHashes.size();
+		this.chunkHashes = new ArrayList<>(chunkHashes);
 	}
 
 	public String getEnvelopeIdentifier() {
@@ -28,6 +46,16 @@ public class MetadataEnvelope implements Serializable {
 		return numOfEnvelopeParts;
 	}
 
+	/**
+	 * Gets the hashes of the chunks the envelope consists of.
+	 *
+	 * @return Returns the chunk hashes in order or {@code null} if the envelope is stored as
+	 *         {@link EnvelopeArtifact} parts.
+	 */
+	public List<String> getChunkHashes() {
+		return chunkHashes;
+	}
+
 	@Override
 	public String toString() {
 		return MetadataArtifact.getMetadataIdentifier(envelopeIdentifier, envelopeVersion);
@@ -32,6 +32,7 @@ public abstract class NetworkArtifact extends ContentHashPastContent {
 	private final byte[] signature;
 	private final byte[] encodedAuthorKey; // the PublicKey class contains enum and can't be serialized by Java
 	private final byte[] keySignature;
+	private transient volatile boolean verified = false;
 
 	protected NetworkArtifact(Id id, int partIndex, byte[] content, Agent author)
 			throws CryptoException, L2pSecurityException {
@@ -57,6 +58,10 @@ public abstract class NetworkArtifact extends ContentHashPastContent {
 		return content;
 	}
 
+	protected byte[] getUnverifiedContent() {
+		return content;
+	}
+
 	public PublicKey getAuthorPublicKey() throws VerificationFailedException {
 		try {
 			PublicKey decoded = KeyFactory.getInstance(CryptoTools.getAsymmetricAlgorithm())
@@ -69,10 +74,15 @@ public abstract class NetworkArtifact extends ContentHashPastContent {
 	}
 
 	public void verify() throws VerificationFailedException {
+		if (verified) {
+			// the artifact can't change, so it has to be checked only once
+			return;
+		}
 		// first we decode and verify the contained public key is correct
 		PublicKey authorPublicKey = getAuthorPublicKey();
 		// after we verify the actual content is correct
 		CryptoTools.verifySignature(signature, content, authorPublicKey);
+		verified = true;
 	}
 
 	public boolean hasSameAuthor(NetworkArtifact other) {
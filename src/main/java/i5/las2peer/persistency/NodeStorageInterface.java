@@ -1,5 +1,8 @@
 package i5.las2peer.persistency;
 
+import java.util.Collection;
+import java.util.Map;
+
 import i5.las2peer.api.exceptions.ArtifactNotFoundException;
 import i5.las2peer.api.exceptions.StorageException;
 import i5.las2peer.security.Agent;
@@ -29,4 +32,14 @@ public interface NodeStorageInterface extends L2pStorageInterface {
 	 */
 	public Envelope fetchEnvelope(String identifier) throws ArtifactNotFoundException, StorageException;
 
+	/**
+	 * Fetches the latest versions for the given identifiers from the network and waits for all of them. This method
+	 * uses the default timeout and batch parallelism defined by the acting node.
+	 * 
+	 * @param identifiers The unique identifiers of the Envelopes, duplicates are fetched once.
+	 * @return Returns the fetched Envelope or the exception that prevented fetching it for each identifier in the
+	 *         given order.
+	 */
+	public Map<String, EnvelopeFetchResult> fetchEnvelopes(Collection<String> identifiers);
+
 }
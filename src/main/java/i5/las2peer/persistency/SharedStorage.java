@@ -1,7 +1,5 @@
 package i5.las2peer.persistency;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
@@ -10,12 +8,18 @@ import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 
 import i5.las2peer.api.Configurable;
 import i5.las2peer.api.StorageCollisionHandler;
@@ -27,14 +31,15 @@ import i5.las2peer.api.exceptions.EnvelopeAlreadyExistsException;
 import i5.las2peer.api.exceptions.StopMergingException;
 import i5.las2peer.api.exceptions.StorageException;
 import i5.las2peer.logging.L2pLogger;
-import i5.las2peer.persistency.helper.ArtifactPartComparator;
-import i5.las2peer.persistency.helper.FetchProcessHelper;
+import i5.las2peer.logging.metrics.Counter;
+import i5.las2peer.logging.metrics.MetricsRegistry;
 import i5.las2peer.persistency.helper.LatestArtifactVersionFinder;
 import i5.las2peer.persistency.helper.MergeCounter;
 import i5.las2peer.persistency.helper.MultiArtifactHandler;
 import i5.las2peer.persistency.helper.MultiStoreResult;
-import i5.las2peer.persistency.helper.StoreProcessHelper;
-import i5.las2peer.persistency.pastry.PastFetchContinuation;
+import i5.las2peer.persistency.helper.PartsInputStream;
+import i5.las2peer.persistency.helper.PartsOutputStream;
+import i5.las2peer.persistency.helper.ReplicaFetcher;
 import i5.las2peer.persistency.pastry.PastInsertContinuation;
 import i5.las2peer.persistency.pastry.PastLookupContinuation;
 import i5.las2peer.security.Agent;
@@ -80,16 +85,49 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 	public static final long DEFAULT_MAXIMUM_STORAGE_SIZE = 1000 * 1024 * 1024; // 1 GB
 	private long maximumStorageSize = DEFAULT_MAXIMUM_STORAGE_SIZE;
 
-	public static final long DEFAULT_ASYNC_INSERT_OPERATION_TIMEOUT = 5 * 60 * 1000 * 1000; // ms => 5 min
+	public static final long DEFAULT_ASYNC_INSERT_OPERATION_TIMEOUT = 5 * 60 * 1000; // ms => 5 min
 	private long asyncInsertOperationTimeout = DEFAULT_ASYNC_INSERT_OPERATION_TIMEOUT;
 
+	// time to wait for a part, enough for an attempt and a failover to another replica
+	public static final long DEFAULT_ASYNC_FETCH_PART_TIMEOUT = 20 * 1000; // ms => 20 s
+	private long asyncFetchPartTimeout = DEFAULT_ASYNC_FETCH_PART_TIMEOUT;
+
+	public static final long DEFAULT_FETCH_ATTEMPT_TIMEOUT = 10 * 1000; // ms => 10 s
+	private long fetchAttemptTimeout = DEFAULT_FETCH_ATTEMPT_TIMEOUT;
+
+	// percentile of the fetch latency after which another replica is asked in parallel, 0 disables hedging
+	public static final double DEFAULT_FETCH_HEDGE_PERCENTILE = 95;
+	private double fetchHedgePercentile = DEFAULT_FETCH_HEDGE_PERCENTILE;
+
+	public static final int DEFAULT_PARTS_WINDOW = 4;
+	private int partsWindow = DEFAULT_PARTS_WINDOW;
+
+	// average size of content defined chunks, e.g. 65536, 0 stores envelopes in fixed size parts like older nodes
+	// enable only once every node of the network reads chunks
+	public static final int DEFAULT_CHUNK_SIZE = 0;
+	private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+
 	private final PastImpl pastStorage;
 	private final PastryIdFactory artifactIdFactory;
 	private final ExecutorService threadpool;
+	private final ExecutorService readerPool;
+	private final ScheduledExecutorService scheduler;
 	private final ConcurrentHashMap<String, Long> versionCache;
-
-	public SharedStorage(Node node, STORAGE_MODE storageMode, ExecutorService threadpool, String storageDir)
+	private final EnvelopeCache envelopeCache;
+	private final ReplicaFetcher replicaFetcher;
+	private final Counter chunksStored;
+	private final Counter chunksReused;
+	private final Counter chunkBytesStored;
+	private final Counter chunkBytesReused;
+	private final Counter headsUsed;
+	private final Counter headsStale;
+	private final Counter headsMissing;
+	private final Counter headsInvalid;
+
+	public SharedStorage(Node node, STORAGE_MODE storageMode, ExecutorService threadpool, ExecutorService readerPool,
+			ScheduledExecutorService scheduler, String storageDir, MetricsRegistry metrics, EnvelopeCache envelopeCache)
 			throws StorageException {
+		setFieldValues();
 		IdFactory pastIdFactory = new PastryIdFactory(node.getEnvironment());
 		Storage storage;
 		if (storageMode == STORAGE_MODE.MEMORY) {
@@ -120,7 +158,32 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 				new DefaultPastPolicy());
 		artifactIdFactory = new PastryIdFactory(node.getEnvironment());
 		this.threadpool = threadpool;
+		this.readerPool = readerPool;
+		this.scheduler = scheduler;
 		versionCache = new ConcurrentHashMap<>();
+		this.envelopeCache = envelopeCache;
+		replicaFetcher = new ReplicaFetcher(pastStorage, threadpool, scheduler, metrics, fetchAttemptTimeout,
+				fetchHedgePercentile);
+		chunksStored = metrics.counter("storage.chunks.stored");
+		chunksReused = metrics.counter("storage.chunks.reused");
+		chunkBytesStored = metrics.counter("storage.chunks.stored.bytes");
+		chunkBytesReused = metrics.counter("storage.chunks.reused.bytes");
+		headsUsed = metrics.counter("storage.heads.used");
+		headsStale = metrics.counter("storage.heads.stale");
+		headsMissing = metrics.counter("storage.heads.missing");
+		headsInvalid = metrics.counter("storage.heads.invalid");
+	}
+
+	/**
+	 * set the average size of content defined chunks envelopes are stored in from now on
+	 * 
+	 * @param chunkSize average chunk size in bytes, 0 stores envelopes in fixed size parts like older nodes
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 0) {
+			throw new IllegalArgumentException("Chunk size must not be negative");
+		}
+		this.chunkSize = chunkSize;
 	}
 
 	@Override
@@ -170,28 +233,7 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		if (timeoutMs < 0) {
 			throw new IllegalArgumentException("Timeout must be greater or equal to zero");
 		}
-		StoreProcessHelper resultHelper = new StoreProcessHelper();
-		storeEnvelopeAsync(envelope, author, resultHelper, resultHelper, resultHelper);
-		long startWait = System.nanoTime();
-		while (System.nanoTime() - startWait < timeoutMs * 1000000) {
-			try {
-				if (resultHelper.getResult() >= 0) {
-					return;
-				}
-			} catch (Exception e) {
-				if (e instanceof StorageException) {
-					throw (StorageException) e;
-				} else {
-					throw new StorageException(e);
-				}
-			}
-			try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
-				throw new StorageException(e);
-			}
-		}
-		throw new StorageException("store operation timed out");
+		await(storeEnvelopeAsync(envelope, author), timeoutMs, "store operation timed out");
 	}
 
 	@Override
@@ -235,7 +277,7 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 			StorageStoreResultHandler resultHandler, StorageCollisionHandler collisionHandler,
 			StorageExceptionHandler exceptionHandler, MergeCounter mergeCounter) {
 		if (collisionHandler != null) {
-			fetchWithMetadata(metadataHandles, new StorageEnvelopeHandler() {
+			fetchWithMetadata(metadataHandles, true, new StorageEnvelopeHandler() {
 				@Override
 				public void onEnvelopeReceived(Envelope inNetwork) {
 					try {
@@ -278,74 +320,87 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		}
 		// XXX only accept envelope if the content has changed?
 		logger.info("Inserting parted envelope into network DHT");
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		try {
-			ObjectOutputStream oos = new ObjectOutputStream(baos);
+		// parts are handed to the network while the envelope is serialized
+		final String identifier = envelope.getIdentifier();
+		MultiStoreResult multiResult = new MultiStoreResult();
+		ArrayList<String> chunkHashes = new ArrayList<>();
+		PartsOutputStream parts;
+		if (chunkSize > 0) {
+			int maxChunkSize = Math.min(chunkSize * 8, NetworkArtifact.MAX_SIZE);
+			parts = new PartsOutputStream(chunkSize / 2, chunkSize / 2, maxChunkSize, (partIndex, content) -> {
+				chunkHashes.add(insertChunk(content, author, multiResult));
+			});
+		} else {
+			parts = new PartsOutputStream(NetworkArtifact.MAX_SIZE, (partIndex, content) -> {
+				try {
+					NetworkArtifact toStore = new EnvelopeArtifact(artifactIdFactory, identifier, partIndex, content,
+							author);
+					logger.info("Storing part " + partIndex + " for envelope " + envelope + " with id "
+							+ toStore.getId().toStringFull());
+					pastStorage.insert(toStore,
+							new PastInsertContinuation(threadpool, multiResult, multiResult, toStore));
+				} catch (CryptoException | L2pSecurityException e) {
+					throw new IOException("Could not create envelope part " + partIndex, e);
+				}
+			});
+		}
+		try (ObjectOutputStream oos = new ObjectOutputStream(parts)) {
 			oos.writeObject(envelope);
-			baos.close();
 		} catch (IOException e) {
+			multiResult.onException(e);
 			if (exceptionHandler != null) {
-				exceptionHandler.onException(e);
+				exceptionHandler.onException((e.getCause() instanceof CryptoException
+						|| e.getCause() instanceof L2pSecurityException) ? (Exception) e.getCause() : e);
 			}
 			// cancel insert operation
 			return;
 		}
-		byte[] serialized = baos.toByteArray();
-		int size = serialized.length;
-		int parts = size / NetworkArtifact.MAX_SIZE;
-		if (parts * NetworkArtifact.MAX_SIZE < size) {
-			parts++; // this happens if max size is not a divider of size
-		}
-		int partsize = size / parts + 1;
-		logger.info("Given object is serialized " + size + " bytes heavy, split into " + parts + " parts each "
-				+ partsize + " bytes in size");
-		MultiStoreResult multiResult = new MultiStoreResult(parts);
-		final String identifier = envelope.getIdentifier();
-		try {
-			int offset = 0;
-			for (int part = 0; part < parts; part++) {
-				byte[] rawPart = Arrays.copyOfRange(serialized, offset, offset + partsize);
-				NetworkArtifact toStore = new EnvelopeArtifact(artifactIdFactory, identifier, part, rawPart, author);
-				logger.info("Storing part " + part + " for envelope " + envelope + " with id "
-						+ toStore.getId().toStringFull());
-				pastStorage.insert(toStore, new PastInsertContinuation(threadpool, multiResult, multiResult, toStore));
-				offset += partsize;
-			}
-		} catch (CryptoException | L2pSecurityException e) {
-			if (exceptionHandler != null) {
-				exceptionHandler.onException(e);
-			}
-			return;
-		}
-		// wait for all part inserts
-		long insertStart = System.currentTimeMillis();
-		while (!multiResult.isDone()) {
-			if (System.currentTimeMillis() - insertStart >= asyncInsertOperationTimeout) {
-				// this point means the network layer did not receive positive or negative feedback
-				if (exceptionHandler != null) {
-					exceptionHandler.onException(new StorageException("Network communication timeout"));
-				}
-				return;
-			}
-			try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
+		logger.info("Envelope " + envelope + " split into " + parts.getParts() + " parts");
+		multiResult.setParts(parts.getParts());
+		// continue once all parts are inserted, without holding a thread while the network answers
+		CompletableFuture<Void> partsInserted = new CompletableFuture<>();
+		ScheduledFuture<?> timeout = scheduler.schedule(
+				() -> partsInserted.completeExceptionally(new StorageException("Network communication timeout")),
+				asyncInsertOperationTimeout, TimeUnit.MILLISECONDS);
+		multiResult.whenDone().thenRun(() -> {
+			timeout.cancel(false);
+			partsInserted.complete(null);
+		});
+		partsInserted.whenComplete((done, e) -> {
+			// a timeout means the network layer did not receive positive or negative feedback
+			Exception exception = (e != null) ? (Exception) e : multiResult.getException();
+			if (exception != null) {
 				if (exceptionHandler != null) {
-					exceptionHandler.onException(e);
+					exceptionHandler.onException(exception);
 				}
 				return;
 			}
-		}
-		Exception exception = multiResult.getException();
-		if (exception != null) {
-			if (exceptionHandler != null) {
-				exceptionHandler.onException(exception);
-			}
-			return;
-		}
-		// all parts done? insert MetadataEnvelope to complete insert operation
+			// all parts done? insert MetadataEnvelope to complete insert operation
+			MetadataEnvelope metadataEnvelope = (chunkSize > 0)
+					? new MetadataEnvelope(identifier, version, chunkHashes)
+					: new MetadataEnvelope(identifier, version, parts.getParts());
+			insertMetadata(envelope, metadataEnvelope, parts.getSize(), author, multiResult, resultHandler,
+					exceptionHandler);
+		});
+	}
+
+	/**
+	 * Inserts the metadata of an envelope, whose parts are all stored, to complete the insert operation.
+	 *
+	 * @param envelope The envelope stored.
+	 * @param metadataEnvelope The metadata listing the parts of the envelope.
+	 * @param serializedSize The size of the serialized envelope in bytes.
+	 * @param author The author signing the metadata.
+	 * @param multiResult The result of the part inserts.
+	 * @param resultHandler The handler called after the metadata and the head are stored.
+	 * @param exceptionHandler The handler called if the metadata can not be stored.
+	 */
+	private void insertMetadata(Envelope envelope, MetadataEnvelope metadataEnvelope, long serializedSize,
+			Agent author, MultiStoreResult multiResult, StorageStoreResultHandler resultHandler,
+			StorageExceptionHandler exceptionHandler) {
+		String identifier = envelope.getIdentifier();
+		long version = envelope.getVersion();
 		try {
-			MetadataEnvelope metadataEnvelope = new MetadataEnvelope(identifier, version, parts);
 			NetworkArtifact metadataArtifact = new MetadataArtifact(artifactIdFactory, identifier, version,
 					SerializeTools.serialize(metadataEnvelope), author);
 			logger.info("Storing metadata for envelope " + metadataEnvelope.toString() + " with id "
@@ -353,15 +408,23 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 			pastStorage.insert(metadataArtifact,
 					new PastInsertContinuation(threadpool, new StorageStoreResultHandler() {
 						@Override
-						public void onResult(Serializable envelope, int successfulOperations) {
+						public void onResult(Serializable stored, int successfulOperations) {
 							// all done - call actual user defined result handlers
 							Exception e = multiResult.getException();
 							if (e != null) {
 								if (exceptionHandler != null) {
 									exceptionHandler.onException(e);
 								}
-							} else if (resultHandler != null) {
-								resultHandler.onResult(envelope, multiResult.getMinSuccessfulOperations());
+							} else {
+								// write through, this node reads its own write without asking the network
+								envelopeCache.put(envelope, serializedSize);
+								envelopeCache.setLatest(identifier, version);
+								// readers find the new version through the head, the store is done afterwards
+								updateHead(identifier, version, author, () -> {
+									if (resultHandler != null) {
+										resultHandler.onResult(stored, multiResult.getMinSuccessfulOperations());
+									}
+								});
 							}
 						}
 					}, exceptionHandler, metadataArtifact));
@@ -372,6 +435,76 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		}
 	}
 
+	/**
+	 * Stores a chunk of a serialized envelope, unless it is already stored in the network, e. g. as part of a previous
+	 * version of the envelope.
+	 *
+	 * @param content The content of the chunk.
+	 * @param author The author signing the chunk, if it has to be stored.
+	 * @param multiResult The result the store operation of the chunk is reported to.
+	 * @return Returns the hash the chunk is addressed by.
+	 */
+	private String insertChunk(byte[] content, Agent author, MultiStoreResult multiResult) {
+		String hash = ChunkArtifact.hash(content);
+		Id chunkId = ChunkArtifact.buildId(artifactIdFactory, hash);
+		pastStorage.lookupHandles(chunkId, numOfReplicas + 1,
+				new PastLookupContinuation(threadpool, new StorageLookupHandler() {
+					@Override
+					public void onLookup(ArrayList<PastContentHandle> handles) {
+						if (!handles.isEmpty()) {
+							logger.info("Reusing chunk " + hash + " with " + handles.size() + " replicas");
+							chunksReused.inc();
+							chunkBytesReused.add(content.length);
+							multiResult.onResult(hash, handles.size());
+							return;
+						}
+						try {
+							ChunkArtifact toStore = new ChunkArtifact(artifactIdFactory, content, author);
+							logger.info("Storing chunk " + hash + " with id " + chunkId.toStringFull());
+							chunksStored.inc();
+							chunkBytesStored.add(content.length);
+							pastStorage.insert(toStore,
+									new PastInsertContinuation(threadpool, multiResult, multiResult, toStore));
+						} catch (CryptoException | L2pSecurityException e) {
+							multiResult.onException(e);
+						}
+					}
+				}, multiResult));
+		return hash;
+	}
+
+	/**
+	 * Moves the head of an envelope to the given version. This is done on a best effort basis, readers fall back to
+	 * searching the latest version if the head is missing or stale.
+	 *
+	 * @param identifier The identifier of the envelope.
+	 * @param version The version just stored.
+	 * @param author The author signing the head.
+	 * @param done Runs after the head update finished, successful or not.
+	 */
+	private void updateHead(String identifier, long version, Agent author, Runnable done) {
+		try {
+			HeadArtifact head = new HeadArtifact(artifactIdFactory, identifier, version, author);
+			logger.info("Moving head of '" + identifier + "' to version " + version);
+			pastStorage.insert(head, new PastInsertContinuation(threadpool, new StorageStoreResultHandler() {
+				@Override
+				public void onResult(Serializable serializable, int successfulOperations) {
+					if (successfulOperations < 1) {
+						// a concurrent writer moved the head further already
+						logger.info("Head of '" + identifier + "' not moved to version " + version);
+					}
+					done.run();
+				}
+			}, e -> {
+				logger.log(Level.WARNING, "Could not move head of '" + identifier + "' to version " + version, e);
+				done.run();
+			}, head));
+		} catch (CryptoException | L2pSecurityException e) {
+			logger.log(Level.WARNING, "Could not create head of '" + identifier + "'", e);
+			done.run();
+		}
+	}
+
 	@Override
 	public Envelope fetchEnvelope(String identifier, long timeoutMs)
 			throws ArtifactNotFoundException, StorageException {
@@ -383,29 +516,47 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		if (timeoutMs < 0) {
 			throw new IllegalArgumentException("Timeout must be greater or equal to zero");
 		}
-		FetchProcessHelper resultHelper = new FetchProcessHelper();
-		fetchEnvelopeAsync(identifier, version, resultHelper, resultHelper);
-		long startWait = System.nanoTime();
-		while (System.nanoTime() - startWait < timeoutMs * 1000000) {
-			try {
-				Envelope result = resultHelper.getResult();
-				if (result != null) {
-					return result;
-				}
-			} catch (Exception e) {
-				if (e instanceof StorageException) {
-					throw (StorageException) e;
-				} else {
-					throw new StorageException(e);
-				}
-			}
-			try {
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
-				throw new StorageException(e);
+		return await(fetchEnvelopeAsync(identifier, version), timeoutMs, "Fetch operation time out");
+	}
+
+	/**
+	 * Fetches the given version for the given identifier from the network.
+	 * 
+	 * @param identifier An unique identifier for the Envelope.
+	 * @param version The version to fetch or {@link Envelope#LATEST_VERSION}.
+	 * @return Returns a future that completes with the fetched Envelope.
+	 */
+	public CompletableFuture<Envelope> fetchEnvelopeAsync(String identifier, long version) {
+		CompletableFuture<Envelope> result = new CompletableFuture<>();
+		fetchEnvelopeAsync(identifier, version, result::complete, result::completeExceptionally);
+		return result;
+	}
+
+	/**
+	 * waits for the result of an asynchronous storage operation
+	 * 
+	 * @param future the operation
+	 * @param timeoutMs maximum time to wait
+	 * @param timeoutMessage message of the {@link StorageException} thrown on timeout
+	 * @return the result of the operation
+	 * @throws StorageException if the operation failed, timed out or the waiting thread was interrupted
+	 */
+	private static <T> T await(CompletableFuture<T> future, long timeoutMs, String timeoutMessage)
+			throws StorageException {
+		try {
+			return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof StorageException) {
+				throw (StorageException) e.getCause();
+			} else {
+				throw new StorageException(e.getCause());
 			}
+		} catch (TimeoutException e) {
+			throw new StorageException(timeoutMessage);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new StorageException(e);
 		}
-		throw new StorageException("Fetch operation time out");
 	}
 
 	@Override
@@ -423,36 +574,49 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 			}
 			return;
 		}
+		// answer from the decoded envelopes if possible, this includes recently seen latest versions
+		Envelope cached = (version == Envelope.LATEST_VERSION) ? envelopeCache.getLatest(identifier)
+				: envelopeCache.get(identifier, version);
+		if (cached != null) {
+			envelopeHandler.onEnvelopeReceived(cached);
+			return;
+		}
 		// get handles for first part of the desired version
 		if (version == Envelope.LATEST_VERSION) {
-			// retrieve the latest version from the network
-			Long startVersion = versionCache.get(identifier);
-			if (startVersion == null) {
-				startVersion = Envelope.START_VERSION;
-			}
-			logger.info("Starting latest version lookup for " + identifier + " at " + startVersion);
-			threadpool.execute(new LatestArtifactVersionFinder(identifier, startVersion, new StorageLookupHandler() {
-				@Override
-				public void onLookup(ArrayList<PastContentHandle> metadataHandles) {
-					if (metadataHandles.size() > 0) {
-						fetchWithMetadata(metadataHandles, new StorageEnvelopeHandler() {
-							@Override
-							public void onEnvelopeReceived(Envelope result) {
-								// this handler-in-the-middle updates the version cache,
-								// before returning the result to the actual envelope handler
-								versionCache.put(result.getIdentifier(), result.getVersion());
-								envelopeHandler.onEnvelopeReceived(result);
+			// retrieve the latest version from the network, the head usually knows it
+			Long cachedVersion = versionCache.get(identifier);
+			long knownVersion = (cachedVersion != null) ? cachedVersion : Envelope.START_VERSION;
+			fetchHead(identifier).thenCompose(head -> {
+				if (head == null) {
+					headsMissing.inc();
+					findLatest(identifier, knownVersion, envelopeHandler, exceptionHandler);
+					return CompletableFuture.completedFuture(null);
+				}
+				// the version is at most Envelope.MAX_UPDATE_CYCLES, so the next one fits
+				long headVersion = verifiedVersion(head);
+				// the head may lag behind, so check the next version in parallel
+				return lookupMetadata(identifier, headVersion)
+						.thenCombine(lookupMetadata(identifier, headVersion + 1), (headHandles, nextHandles) -> {
+							if (!nextHandles.isEmpty()) {
+								headsStale.inc();
+								findLatest(identifier, Math.max(headVersion + 1, knownVersion), envelopeHandler,
+										exceptionHandler);
+							} else if (!headHandles.isEmpty()) {
+								fetchWithHead(identifier, head, knownVersion, headHandles, envelopeHandler,
+										exceptionHandler);
+							} else {
+								// head points to a version that does not exist
+								headsMissing.inc();
+								findLatest(identifier, knownVersion, envelopeHandler, exceptionHandler);
 							}
-						}, exceptionHandler);
-					} else {
-						// not found
-						if (exceptionHandler != null) {
-							exceptionHandler.onException(new ArtifactNotFoundException(
-									"no version found for identifier '" + identifier + "'"));
-						}
-					}
+							return null;
+						});
+			}).exceptionally(e -> {
+				if (exceptionHandler != null) {
+					exceptionHandler.onException(new StorageException("Latest version lookup failed", e));
 				}
-			}, artifactIdFactory, pastStorage, numOfReplicas + 1, threadpool));
+				return null;
+			});
 		} else {
 			Id checkId = MetadataArtifact.buildMetadataId(artifactIdFactory, identifier, version);
 			pastStorage.lookupHandles(checkId, numOfReplicas + 1,
@@ -462,7 +626,7 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 						public void onLookup(ArrayList<PastContentHandle> metadataHandles) {
 							if (metadataHandles.size() > 0) {
 								// call from first part
-								fetchWithMetadata(metadataHandles, envelopeHandler, exceptionHandler);
+								fetchWithMetadata(metadataHandles, false, envelopeHandler, exceptionHandler);
 							} else {
 								// not found
 								if (exceptionHandler != null) {
@@ -478,47 +642,197 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 		}
 	}
 
-	private void fetchWithMetadata(ArrayList<PastContentHandle> metadataHandles, StorageEnvelopeHandler envelopeHandler,
+	private void findLatest(String identifier, long startVersion, StorageEnvelopeHandler envelopeHandler,
+			StorageExceptionHandler exceptionHandler) {
+		logger.info("Starting latest version lookup for " + identifier + " at " + startVersion);
+		threadpool.execute(new LatestArtifactVersionFinder(identifier, startVersion, new StorageLookupHandler() {
+			@Override
+			public void onLookup(ArrayList<PastContentHandle> metadataHandles) {
+				if (metadataHandles.size() > 0) {
+					fetchWithMetadata(metadataHandles, true, cachingHandler(envelopeHandler), exceptionHandler);
+				} else {
+					// not found
+					if (exceptionHandler != null) {
+						exceptionHandler.onException(
+								new ArtifactNotFoundException("no version found for identifier '" + identifier + "'"));
+					}
+				}
+			}
+		}, artifactIdFactory, pastStorage, numOfReplicas + 1, threadpool));
+	}
+
+	private StorageEnvelopeHandler cachingHandler(StorageEnvelopeHandler envelopeHandler) {
+		return new StorageEnvelopeHandler() {
+			@Override
+			public void onEnvelopeReceived(Envelope result) {
+				// this handler-in-the-middle updates the version cache,
+				// before returning the result to the actual envelope handler
+				versionCache.put(result.getIdentifier(), result.getVersion());
+				envelopeCache.setLatest(result.getIdentifier(), result.getVersion());
+				envelopeHandler.onEnvelopeReceived(result);
+			}
+		};
+	}
+
+	/**
+	 * Fetches the head of an envelope.
+	 *
+	 * @param identifier The identifier of the envelope.
+	 * @return Returns a future completed with the verified head or null if there is no valid head.
+	 */
+	private CompletableFuture<HeadArtifact> fetchHead(String identifier) {
+		CompletableFuture<HeadArtifact> result = new CompletableFuture<>();
+		pastStorage.lookupHandles(HeadArtifact.buildId(artifactIdFactory, identifier), numOfReplicas + 1,
+				new PastLookupContinuation(threadpool, new StorageLookupHandler() {
+					@Override
+					public void onLookup(ArrayList<PastContentHandle> handles) {
+						if (handles.isEmpty()) {
+							result.complete(null);
+							return;
+						}
+						fetchFromHandles(handles, new StorageArtifactHandler() {
+							@Override
+							public void onReceive(NetworkArtifact artifact) {
+								try {
+									if (artifact instanceof HeadArtifact
+											&& ((HeadArtifact) artifact).getIdentifier().equals(identifier)) {
+										// verifies the signature and the version range
+										((HeadArtifact) artifact).getVersion();
+										result.complete((HeadArtifact) artifact);
+									} else {
+										result.complete(null);
+									}
+								} catch (VerificationFailedException e) {
+									logger.info("Invalid head for '" + identifier + "': " + e.toString());
+									result.complete(null);
+								}
+							}
+						}, e -> result.complete(null));
+					}
+				}, e -> result.complete(null)));
+		return result;
+	}
+
+	private static long verifiedVersion(HeadArtifact head) {
+		try {
+			return head.getVersion();
+		} catch (VerificationFailedException e) {
+			// verified when the head was received
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Fetches the metadata the head points to. The head is only trusted, if it was written by the author of that
+	 * metadata. Otherwise anyone could pin the head to a version of their own and the latest version is searched
+	 * without it.
+	 */
+	private void fetchWithHead(String identifier, HeadArtifact head, long knownVersion,
+			ArrayList<PastContentHandle> headHandles, StorageEnvelopeHandler envelopeHandler,
 			StorageExceptionHandler exceptionHandler) {
+		fetchFromHandles(headHandles, new StorageArtifactHandler() {
+			@Override
+			public void onReceive(NetworkArtifact artifact) {
+				if (artifact.hasSameAuthor(head)) {
+					headsUsed.inc();
+					decodeMetadata(artifact, true, cachingHandler(envelopeHandler), exceptionHandler);
+				} else {
+					logger.info("Ignoring head for '" + identifier + "' written by another author");
+					headsInvalid.inc();
+					findLatest(identifier, knownVersion, envelopeHandler, exceptionHandler);
+				}
+			}
+		}, exceptionHandler);
+	}
+
+	private CompletableFuture<ArrayList<PastContentHandle>> lookupMetadata(String identifier, long version) {
+		CompletableFuture<ArrayList<PastContentHandle>> result = new CompletableFuture<>();
+		pastStorage.lookupHandles(MetadataArtifact.buildMetadataId(artifactIdFactory, identifier, version),
+				numOfReplicas + 1, new PastLookupContinuation(threadpool, result::complete,
+						// like the version search, treat lookup failures as missing versions
+						e -> result.complete(new ArrayList<>())));
+		return result;
+	}
+
+	private void fetchWithMetadata(ArrayList<PastContentHandle> metadataHandles, boolean checkCache,
+			StorageEnvelopeHandler envelopeHandler, StorageExceptionHandler exceptionHandler) {
 		fetchFromHandles(metadataHandles, new StorageArtifactHandler() {
 			@Override
 			public void onReceive(NetworkArtifact artifact) {
-				try {
-					Serializable received = SerializeTools.deserialize(artifact.getContent());
-					if (received instanceof MetadataEnvelope) {
-						MetadataEnvelope metadata = (MetadataEnvelope) received;
-						// metadata received query all actual data parts
-						int size = metadata.getEnvelopeNumOfParts();
-						MultiArtifactHandler artifactHandler = new MultiArtifactHandler(size,
-								new StoragePartsHandler() {
-									@Override
-									public void onPartsReceived(ArrayList<NetworkArtifact> parts) {
-										try {
-											Envelope result = buildFromParts(artifactIdFactory, metadata, parts);
-											envelopeHandler.onEnvelopeReceived(result);
-										} catch (IllegalArgumentException | StorageException e) {
-											if (exceptionHandler != null) {
-												exceptionHandler.onException(e);
-											}
-										}
-									}
-								}, exceptionHandler);
-						for (int partIndex = 0; partIndex < size; partIndex++) {
-							fetchPart(metadata.getEnvelopeIdentifier(), partIndex, metadata.getEnvelopeVersion(),
-									artifactHandler);
+				decodeMetadata(artifact, checkCache, envelopeHandler, exceptionHandler);
+			}
+		}, exceptionHandler);
+	}
+
+	private void decodeMetadata(NetworkArtifact artifact, boolean checkCache, StorageEnvelopeHandler envelopeHandler,
+			StorageExceptionHandler exceptionHandler) {
+		try {
+			Serializable received = SerializeTools.deserialize(artifact.getContent());
+			if (received instanceof MetadataEnvelope) {
+				MetadataEnvelope metadata = (MetadataEnvelope) received;
+				if (checkCache) {
+					// the version is known now, it may be decoded already
+					Envelope cached = envelopeCache.get(metadata.getEnvelopeIdentifier(),
+							metadata.getEnvelopeVersion());
+					if (cached != null) {
+						envelopeHandler.onEnvelopeReceived(cached);
+						return;
+					}
+				}
+				// metadata received query the actual data parts
+				PartsInputStream stream = new PartsInputStream(metadata.getEnvelopeNumOfParts(), partsWindow,
+						asyncFetchPartTimeout);
+				Runnable decode = () -> {
+					try {
+						Envelope result = buildFromStream(metadata, stream);
+						envelopeCache.put(result, stream.getSize());
+						envelopeHandler.onEnvelopeReceived(result);
+					} catch (StorageException e) {
+						if (exceptionHandler != null) {
+							exceptionHandler.onException(e);
 						}
-					} else if (exceptionHandler != null) {
-						exceptionHandler.onException(
-								new StorageException("expected " + MetadataEnvelope.class.getCanonicalName()
-										+ " but got " + received.getClass().getCanonicalName() + " instead"));
 					}
-				} catch (SerializationException | VerificationFailedException e) {
-					if (exceptionHandler != null) {
-						exceptionHandler.onException(e);
+				};
+				// reading blocks until the parts arrive, which must not hold a thread of the pool delivering
+				// them, so decode once all parts are there or read larger envelopes in the reader pool
+				if (metadata.getEnvelopeNumOfParts() <= partsWindow) {
+					ScheduledFuture<?> timeout = scheduler.schedule(
+							() -> stream.fail(new TimeoutException("Parts not received within "
+									+ asyncFetchPartTimeout + "ms")),
+							asyncFetchPartTimeout, TimeUnit.MILLISECONDS);
+					stream.whenReceived(() -> {
+						timeout.cancel(false);
+						decode.run();
+					});
+				} else {
+					try {
+						readerPool.execute(decode);
+					} catch (RejectedExecutionException e) {
+						if (exceptionHandler != null) {
+							exceptionHandler.onException(new StorageException("Too many envelopes read at the moment",
+									e));
+						}
+						return;
 					}
 				}
+				List<String> chunkHashes = metadata.getChunkHashes();
+				if (chunkHashes != null) {
+					stream.start(partIndex -> fetchChunk(chunkHashes.get(partIndex), partIndex, stream));
+				} else {
+					MultiArtifactHandler artifactHandler = new MultiArtifactHandler(stream);
+					stream.start(partIndex -> fetchPart(metadata.getEnvelopeIdentifier(), partIndex,
+							metadata.getEnvelopeVersion(), artifactHandler));
+				}
+			} else if (exceptionHandler != null) {
+				exceptionHandler.onException(
+						new StorageException("expected " + MetadataEnvelope.class.getCanonicalName()
+								+ " but got " + received.getClass().getCanonicalName() + " instead"));
 			}
-		}, exceptionHandler);
+		} catch (SerializationException | VerificationFailedException e) {
+			if (exceptionHandler != null) {
+				exceptionHandler.onException(e);
+			}
+		}
 	}
 
 	private void fetchPart(String identifier, int part, long version, MultiArtifactHandler artifactHandler) {
@@ -542,94 +856,71 @@ public class SharedStorage extends Configurable implements L2pStorageInterface {
 				}, artifactHandler));
 	}
 
+	private void fetchChunk(String hash, int partIndex, PartsInputStream stream) {
+		Id checkId = ChunkArtifact.buildId(artifactIdFactory, hash);
+		logger.info("Fetching chunk " + hash + " as part (" + partIndex + ") with id " + checkId.toStringFull()
+				+ " ...");
+		pastStorage.lookupHandles(checkId, numOfReplicas + 1,
+				new PastLookupContinuation(threadpool, new StorageLookupHandler() {
+					@Override
+					public void onLookup(ArrayList<PastContentHandle> handles) {
+						if (handles.size() < 1) {
+							stream.fail(new ArtifactNotFoundException("Chunk " + hash + " with id ("
+									+ checkId.toStringFull() + ") not found in shared storage!"));
+							return;
+						}
+						fetchFromHandles(handles, new StorageArtifactHandler() {
+							@Override
+							public void onReceive(NetworkArtifact artifact) {
+								try {
+									// the hash is taken from the signed metadata, so the chunk is checked against it
+									if (!(artifact instanceof ChunkArtifact)
+											|| !((ChunkArtifact) artifact).getHash().equals(hash)) {
+										throw new VerificationFailedException("Received artifact is not chunk " + hash);
+									}
+									stream.offer(partIndex, artifact.getContent());
+								} catch (VerificationFailedException e) {
+									stream.fail(e);
+								}
+							}
+						}, stream::fail);
+					}
+				}, stream::fail));
+	}
+
 	private void fetchFromHandles(ArrayList<PastContentHandle> handles, StorageArtifactHandler artifactHandler,
 			StorageExceptionHandler exceptionHandler) {
-		if (handles.isEmpty()) {
-			throw new IllegalArgumentException("No handles to fetch given");
-		}
-		// XXX pick the best fitting handle depending on nodeid (web-of-trust) or distance
-		PastContentHandle bestHandle = handles.get(new Random().nextInt(handles.size()));
-		// query fetch command
-		pastStorage.fetch(bestHandle, new PastFetchContinuation(threadpool, artifactHandler, exceptionHandler));
+		// try the closest or fastest replica first, fail over to the others
+		replicaFetcher.fetch(handles, artifactHandler, exceptionHandler);
 	}
 
-	private static Envelope buildFromParts(PastryIdFactory artifactIdFactory, MetadataEnvelope metadata,
-			ArrayList<NetworkArtifact> artifacts) throws IllegalArgumentException, StorageException {
-		if (artifacts == null || artifacts.isEmpty()) {
-			throw new StorageException("No parts to build from");
+	private static Envelope buildFromStream(MetadataEnvelope metadata, PartsInputStream stream)
+			throws StorageException {
+		if (metadata.getEnvelopeIdentifier() == null) {
+			throw new StorageException("Artifact identifier must not be null");
+		} else if (metadata.getEnvelopeVersion() < Envelope.START_VERSION) {
+			throw new StorageException("Artifact version (" + metadata.getEnvelopeVersion() + ") must be bigger than "
+					+ Envelope.START_VERSION);
 		}
-		// order parts
-		Collections.sort(artifacts, ArtifactPartComparator.INSTANCE);
-		try {
-			String envelopeIdentifier = null;
-			long envelopeVersion = Envelope.NULL_VERSION;
-			int lastPartIndex = -1;
-			int numberOfParts = 0;
-			// concat raw byte arrays
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			for (NetworkArtifact artifact : artifacts) {
-				logger.info("concating content of " + artifact.toString() + " with " + metadata.getEnvelopeNumOfParts()
-						+ " parts");
-				// check identifier
-				String artifactIdentifier = metadata.getEnvelopeIdentifier();
-				if (artifactIdentifier == null) {
-					throw new StorageException("Artifact identifier must not be null");
-				} else if (envelopeIdentifier == null) {
-					envelopeIdentifier = artifactIdentifier;
-				} else if (!artifactIdentifier.equals(metadata.getEnvelopeIdentifier())) {
-					throw new StorageException("Aritfact identifier (" + artifactIdentifier
-							+ ") did not match envelope identifier (" + envelopeIdentifier + ")");
-				}
-				// check version
-				long artifactVersion = metadata.getEnvelopeVersion();
-				if (artifactVersion < Envelope.START_VERSION) {
-					throw new StorageException(
-							"Artifact version (" + artifactVersion + ") must be bigger than " + Envelope.START_VERSION);
-				} else if (envelopeVersion == Envelope.NULL_VERSION) {
-					envelopeVersion = artifactVersion;
-				} else if (envelopeVersion != artifactVersion) {
-					throw new StorageException("Not matching versions for artifact (" + artifactVersion
-							+ ") and envelope (" + envelopeVersion + ")");
-				}
-				// check part index
-				int partIndex = artifact.getPartIndex();
-				if (partIndex > lastPartIndex + 1) {
-					throw new StorageException("Artifacts not sorted or missing part! Got " + partIndex + " instead of "
-							+ (lastPartIndex + 1));
-				}
-				lastPartIndex++;
-				// check number of parts
-				int parts = metadata.getEnvelopeNumOfParts();
-				if (parts < 1) {
-					throw new StorageException("Number of parts given is to low " + parts);
-				} else if (numberOfParts == 0) {
-					numberOfParts = parts;
-				} else if (numberOfParts != parts) {
-					throw new StorageException("Number of parts from artifact (" + numberOfParts
-							+ ") did not match with envelope parts number (" + parts + ")");
-				}
-				try {
-					byte[] rawContent = artifact.getContent();
-					// add content to buffer
-					baos.write(rawContent);
-				} catch (VerificationFailedException e) {
-					throw new StorageException("Could not retrieve content from part", e);
-				}
-			}
-			byte[] bytes = baos.toByteArray();
-			// deserialize object
-			ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-			ObjectInputStream ois = new ObjectInputStream(bais);
+		logger.info("reading content of " + metadata.getEnvelopeIdentifier() + " from "
+				+ metadata.getEnvelopeNumOfParts() + " parts");
+		try (ObjectInputStream ois = new ObjectInputStream(stream)) {
+			// deserialize object while the parts arrive
 			Object obj = ois.readObject();
-			Envelope result;
-			if (obj instanceof Envelope) {
-				result = (Envelope) obj;
-			} else {
+			if (!(obj instanceof Envelope)) {
 				throw new StorageException("expected class " + Envelope.class.getCanonicalName() + " but got "
 						+ obj.getClass().getCanonicalName() + " instead");
 			}
+			Envelope result = (Envelope) obj;
+			if (!metadata.getEnvelopeIdentifier().equals(result.getIdentifier())
+					|| metadata.getEnvelopeVersion() != result.getVersion()) {
+				throw new StorageException("Envelope " + result + " does not match its metadata "
+						+ metadata.getEnvelopeIdentifier() + " (" + metadata.getEnvelopeVersion() + ")");
+			}
 			return result;
 		} catch (IOException | ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+			// let pending part fetches end early
+			stream.fail(e);
 			throw new StorageException("Building envelope from parts failed!", e);
 		}
 	}
@@ -0,0 +1,174 @@
+package i5.las2peer.persistency.helper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import i5.las2peer.api.exceptions.StorageException;
+import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeFetchResult;
+
+/**
+ * This class fetches many envelopes concurrently. All fetches are started right away, but only the given number of
+ * them is running at the same time. Whenever a fetch finishes the next one is started, so a slow envelope does not
+ * hold back the others.
+ */
+public class EnvelopeBatchFetcher {
+
+	private final Function<String, CompletableFuture<Envelope>> fetch;
+	private final LinkedHashMap<String, CompletableFuture<Envelope>> results = new LinkedHashMap<>();
+	private final Iterator<Map.Entry<String, CompletableFuture<Envelope>>> queue;
+
+	private EnvelopeBatchFetcher(Function<String, CompletableFuture<Envelope>> fetch,
+			Collection<String> identifiers) {
+		this.fetch = fetch;
+		for (String identifier : identifiers) {
+			results.putIfAbsent(identifier, new CompletableFuture<>());
+		}
+		queue = new ArrayList<>(results.entrySet()).iterator();
+	}
+
+	/**
+	 * Starts fetching the given identifiers.
+	 *
+	 * @param fetch The single fetch operation, usually {@code L2pStorageInterface::fetchEnvelopeAsync}.
+	 * @param identifiers The identifiers to fetch, duplicates are fetched once.
+	 * @param parallelism The maximum number of fetches running at the same time.
+	 * @return Returns a future for each identifier in the given order. Completing or canceling a future before its
+	 *         fetch was started skips the fetch.
+	 */
+	public static Map<String, CompletableFuture<Envelope>> start(Function<String, CompletableFuture<Envelope>> fetch,
+			Collection<String> identifiers, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least one");
+		}
+		EnvelopeBatchFetcher fetcher = new EnvelopeBatchFetcher(fetch, identifiers);
+		for (int i = 0; i < parallelism; i++) {
+			fetcher.fetchNext();
+		}
+		return fetcher.results;
+	}
+
+	/**
+	 * Waits for the given fetches.
+	 *
+	 * @param fetches The fetches as returned by {@link #start(Function, Collection, int)}.
+	 * @param timeoutMs The time to wait for all fetches together. Fetches not done by then are canceled, which frees
+	 *            their slots and cancels the running fetch operations.
+	 * @return Returns the result for each identifier in the order of the given map.
+	 */
+	public static Map<String, EnvelopeFetchResult> await(Map<String, CompletableFuture<Envelope>> fetches,
+			long timeoutMs) {
+		InterruptedException interrupted = null;
+		boolean timedOut = false;
+		try {
+			CompletableFuture.allOf(fetches.values().toArray(new CompletableFuture<?>[0])).get(timeoutMs,
+					TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			// reported for each fetch below
+		} catch (TimeoutException e) {
+			timedOut = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			interrupted = e;
+		}
+		HashSet<CompletableFuture<Envelope>> canceled = new HashSet<>();
+		if (timedOut || interrupted != null) {
+			// cancel the last ones first, so canceling a running fetch does not start a waiting one
+			ArrayList<CompletableFuture<Envelope>> pending = new ArrayList<>(fetches.values());
+			Collections.reverse(pending);
+			for (CompletableFuture<Envelope> future : pending) {
+				if (future.cancel(false)) {
+					canceled.add(future);
+				}
+			}
+		}
+		LinkedHashMap<String, EnvelopeFetchResult> awaited = new LinkedHashMap<>();
+		for (Map.Entry<String, CompletableFuture<Envelope>> entry : fetches.entrySet()) {
+			String identifier = entry.getKey();
+			CompletableFuture<Envelope> future = entry.getValue();
+			EnvelopeFetchResult result;
+			if (canceled.contains(future)) {
+				if (interrupted != null) {
+					result = new EnvelopeFetchResult(identifier, new StorageException(interrupted));
+				} else {
+					result = new EnvelopeFetchResult(identifier, new StorageException("Fetch operation time out"));
+				}
+				awaited.put(identifier, result);
+				continue;
+			}
+			try {
+				// all fetches are done at this point
+				result = new EnvelopeFetchResult(identifier, future.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof StorageException) {
+					result = new EnvelopeFetchResult(identifier, (StorageException) e.getCause());
+				} else {
+					result = new EnvelopeFetchResult(identifier, new StorageException(e.getCause()));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result = new EnvelopeFetchResult(identifier, new StorageException(e));
+			} catch (RuntimeException e) {
+				// canceled by someone else
+				result = new EnvelopeFetchResult(identifier, new StorageException(e));
+			}
+			awaited.put(identifier, result);
+		}
+		return awaited;
+	}
+
+	private void fetchNext() {
+		while (true) {
+			Map.Entry<String, CompletableFuture<Envelope>> next;
+			synchronized (queue) {
+				if (!queue.hasNext()) {
+					return;
+				}
+				next = queue.next();
+			}
+			CompletableFuture<Envelope> result = next.getValue();
+			if (result.isDone()) {
+				// canceled while waiting, the slot is free for the next one
+				continue;
+			}
+			CompletableFuture<Envelope> fetching;
+			try {
+				fetching = fetch.apply(next.getKey());
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+				continue;
+			}
+			if (fetching.isDone()) {
+				// answered right away (e.g. from a cache), loop instead of recursing for long batches
+				fetching.whenComplete((envelope, e) -> complete(result, envelope, e));
+				continue;
+			}
+			fetching.whenComplete((envelope, e) -> complete(result, envelope, e));
+			// the slot is freed once the fetch is answered or its result is canceled, whatever comes first
+			result.whenComplete((envelope, e) -> {
+				fetching.cancel(false);
+				fetchNext();
+			});
+			return;
+		}
+	}
+
+	private static void complete(CompletableFuture<Envelope> result, Envelope envelope, Throwable e) {
+		if (e != null) {
+			result.completeExceptionally(e);
+		} else {
+			result.complete(envelope);
+		}
+	}
+
+}
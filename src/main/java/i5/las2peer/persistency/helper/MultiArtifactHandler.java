@@ -1,69 +1,42 @@
 package i5.las2peer.persistency.helper;
 
-import java.util.ArrayList;
-
 import i5.las2peer.api.StorageExceptionHandler;
 import i5.las2peer.persistency.NetworkArtifact;
 import i5.las2peer.persistency.StorageArtifactHandler;
-import i5.las2peer.persistency.StoragePartsHandler;
+import i5.las2peer.persistency.VerificationFailedException;
 
 /**
- * This class is used to handle the lookup and retrieve process for a bunch of {@link NetworkArtifact}s. It gathers all
- * parts till it received the necessary amount specified by the first part given. After that it calls the respective
- * handlers given, same for exceptions.
+ * This class is used to handle the lookup and retrieve process for a bunch of {@link NetworkArtifact}s. It verifies
+ * each received part and passes its content to the given {@link PartsInputStream}, which assembles the parts in order.
+ * Exceptions let the stream fail.
  */
 public class MultiArtifactHandler implements StorageArtifactHandler, StorageExceptionHandler {
 
-	private final int numberOfParts;
-	private final StoragePartsHandler partsHandler;
-	private final StorageExceptionHandler exceptionHandler;
-	private final ArrayList<NetworkArtifact> parts;
-	private boolean isComplete;
+	private final PartsInputStream stream;
 
 	/**
-	 * Initiates this lookup result collection with the given first part. The number of parts is retrieved from the
-	 * given first part.
+	 * Initiates this lookup result collection for the given stream.
 	 *
-	 * @param numberOfParts The number of artifacts that must be retrieved to consider a full set.
-	 * @param partsHandler The result handler that gets all retrieved parts as a list.
-	 * @param exceptionHandler The exception handler that should be called, if an exception occurs.
+	 * @param stream The stream that gets the content of all retrieved parts.
 	 */
-	public MultiArtifactHandler(int numberOfParts, StoragePartsHandler partsHandler,
-			StorageExceptionHandler exceptionHandler) {
-		this.numberOfParts = numberOfParts;
-		this.partsHandler = partsHandler;
-		this.exceptionHandler = exceptionHandler;
-		parts = new ArrayList<>(numberOfParts);
-		isComplete = false;
+	public MultiArtifactHandler(PartsInputStream stream) {
+		this.stream = stream;
 	}
 
 	@Override
 	public void onReceive(NetworkArtifact artifact) {
-		synchronized (this) {
-			if (isComplete) {
-				return;
-			}
-		}
-		synchronized (parts) {
-			// TODO perform integrity checks on fetched objects, and fetch others on failure
-			parts.add(artifact);
-			// check if complete and call actual envelopeHandler
-			if (parts.size() >= numberOfParts) {
-				isComplete = true;
-				partsHandler.onPartsReceived(parts);
-			}
+		// the artifact is verified already, other replicas were tried if it was invalid
+		try {
+			stream.offer(artifact.getPartIndex(), artifact.getContent());
+		} catch (VerificationFailedException e) {
+			onException(e);
 		}
 	}
 
 	@Override
 	public void onException(Exception e) {
-		synchronized (this) {
-			if (isComplete) {
-				return;
-			}
-		}
-		// TODO try all handles before throwing an exception
-		exceptionHandler.onException(e);
+		// all replicas of the part failed
+		stream.fail(e);
 	}
 
 }
@@ -2,6 +2,7 @@ package i5.las2peer.persistency.helper;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 
 import i5.las2peer.api.StorageExceptionHandler;
 import i5.las2peer.api.StorageStoreResultHandler;
@@ -14,11 +15,12 @@ import i5.las2peer.api.exceptions.StorageException;
  */
 public class MultiStoreResult implements StorageStoreResultHandler, StorageExceptionHandler {
 
-	private final int parts;
+	private int parts;
 	private ArrayList<Integer> results;
 	private int minSuccessfulOperations;
 	private boolean failed;
 	private Exception exception;
+	private final CompletableFuture<Void> done = new CompletableFuture<>();
 
 	/**
 	 * Initiates the store result container for the given number of parts.
@@ -27,11 +29,33 @@ public class MultiStoreResult implements StorageStoreResultHandler, StorageExcep
 	 */
 	public MultiStoreResult(int parts) {
 		this.parts = parts;
-		results = new ArrayList<>(parts);
+		results = new ArrayList<>(Math.min(parts, 16));
 		minSuccessfulOperations = Integer.MAX_VALUE;
 		failed = false;
 	}
 
+	/**
+	 * Initiates the store result container for a number of parts that is not known yet. The operation can not finish
+	 * successfully before {@link #setParts(int)} is called.
+	 */
+	public MultiStoreResult() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Sets the number of parts, e. g. after the last part was handed to the network.
+	 *
+	 * @param parts The number of parts that must be stored to complete this store operation.
+	 */
+	public void setParts(int parts) {
+		synchronized (this) {
+			this.parts = parts;
+		}
+		if (isDone()) {
+			done.complete(null);
+		}
+	}
+
 	@Override
 	public void onResult(Serializable serializable, int successfulOperations) {
 		synchronized (this) {
@@ -44,6 +68,9 @@ public class MultiStoreResult implements StorageStoreResultHandler, StorageExcep
 				exception = new StorageException("Artifact part insert failed!");
 			}
 		}
+		if (isDone()) {
+			done.complete(null);
+		}
 	}
 
 	@Override
@@ -54,6 +81,7 @@ public class MultiStoreResult implements StorageStoreResultHandler, StorageExcep
 				exception = e;
 			}
 		}
+		done.complete(null);
 	}
 
 	/**
@@ -71,6 +99,16 @@ public class MultiStoreResult implements StorageStoreResultHandler, StorageExcep
 		}
 	}
 
+	/**
+	 * Gets a future that completes when the store operation is finished, successful or not. Use
+	 * {@link #getException()} to check for failures.
+	 *
+	 * @return Returns a future completed when {@link #isDone()} becomes {@code true}.
+	 */
+	public CompletableFuture<Void> whenDone() {
+		return done;
+	}
+
 	/**
 	 * Gets the minimal number of successful operations for any part of this store operation.
 	 *
@@ -0,0 +1,225 @@
+package i5.las2peer.persistency.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class provides the content of a parted artifact as one continuous stream. Parts may be offered in any order,
+ * the stream hands them out ordered by their part index and drops each part as soon as it has been read.
+ *
+ * Parts are requested through a {@link PartRequester} in a sliding window: initially the first parts up to the window
+ * size are requested, afterwards the next part is requested whenever a part has been completely read. So at most
+ * window size parts are kept in memory at once.
+ *
+ * Reading blocks until the next part arrives. If all parts fit into the window, a reader can wait for them with
+ * {@link #whenReceived(Runnable)} instead and read the stream without blocking afterwards.
+ */
+public class PartsInputStream extends InputStream {
+
+	/**
+	 * Requests a part of the artifact, which has to be given to {@link PartsInputStream#offer(int, byte[])} or
+	 * {@link PartsInputStream#fail(Exception)} later on.
+	 */
+	public interface PartRequester {
+		public void request(int partIndex);
+	}
+
+	private final int numberOfParts;
+	private final int window;
+	private final long partTimeoutMs;
+	private PartRequester requester;
+	private final Map<Integer, byte[]> received = new HashMap<>();
+	private int nextRequest = 0;
+	private int currentPart = -1;
+	private byte[] current = new byte[0];
+	private int position = 0;
+	private long size = 0;
+	private int receivedCount = 0;
+	private Exception failure;
+	private Runnable receivedAction;
+	private boolean receivedActionRun = false;
+
+	/**
+	 * Initiates the stream for the given number of parts. No part is requested before
+	 * {@link #start(PartRequester)} is called.
+	 *
+	 * @param numberOfParts The number of parts the artifact consists of.
+	 * @param window The maximum number of parts requested but not read yet.
+	 * @param partTimeoutMs The time to wait for the next part before reading fails.
+	 */
+	public PartsInputStream(int numberOfParts, int window, long partTimeoutMs) {
+		if (numberOfParts < 1) {
+			throw new IllegalArgumentException("Number of parts given is to low " + numberOfParts);
+		}
+		if (window < 1) {
+			throw new IllegalArgumentException("Window must be at least one part");
+		}
+		this.numberOfParts = numberOfParts;
+		this.window = window;
+		this.partTimeoutMs = partTimeoutMs;
+	}
+
+	/**
+	 * Requests the first parts.
+	 *
+	 * @param requester The requester that is asked to fetch the parts.
+	 */
+	public void start(PartRequester requester) {
+		int requests;
+		synchronized (this) {
+			if (this.requester != null) {
+				throw new IllegalStateException("Stream already started");
+			}
+			this.requester = requester;
+			requests = Math.min(window, numberOfParts) - nextRequest;
+			nextRequest += Math.max(0, requests);
+		}
+		for (int i = 0; i < requests; i++) {
+			requester.request(i);
+		}
+	}
+
+	/**
+	 * Offers the verified content of a part. Duplicates and parts already read are ignored.
+	 *
+	 * @param partIndex The index of the part.
+	 * @param content The content of the part.
+	 */
+	public void offer(int partIndex, byte[] content) {
+		synchronized (this) {
+			if (partIndex <= currentPart || partIndex >= nextRequest || received.containsKey(partIndex)) {
+				return;
+			}
+			received.put(partIndex, content);
+			receivedCount++;
+			notifyAll();
+		}
+		runReceivedAction();
+	}
+
+	/**
+	 * Lets the stream fail, the reading thread receives an {@link IOException} caused by the given exception.
+	 *
+	 * @param e The exception that canceled the retrieval of a part.
+	 */
+	public void fail(Exception e) {
+		synchronized (this) {
+			if (failure == null) {
+				failure = e;
+			}
+			notifyAll();
+		}
+		runReceivedAction();
+	}
+
+	/**
+	 * Registers an action that runs once all parts are received or the stream failed, so reading the stream does not
+	 * block anymore. The action runs in the thread offering the last part, or right away if this already happened.
+	 * Unless all parts fit into the window, this happens only while the stream is read.
+	 *
+	 * @param action The action to run once.
+	 */
+	public void whenReceived(Runnable action) {
+		synchronized (this) {
+			if (receivedAction != null) {
+				throw new IllegalStateException("Action already registered");
+			}
+			receivedAction = action;
+		}
+		runReceivedAction();
+	}
+
+	private void runReceivedAction() {
+		Runnable action;
+		synchronized (this) {
+			if (receivedAction == null || receivedActionRun || (failure == null && receivedCount < numberOfParts)) {
+				return;
+			}
+			action = receivedAction;
+			receivedActionRun = true;
+		}
+		action.run();
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		return current[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		int n = Math.min(len, current.length - position);
+		System.arraycopy(current, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	/**
+	 * Gets the number of bytes of all parts handed out so far.
+	 *
+	 * @return Returns the size of the parts read.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	@Override
+	public int available() {
+		return current.length - position;
+	}
+
+	private boolean ensureAvailable() throws IOException {
+		while (position >= current.length) {
+			if (currentPart >= numberOfParts - 1) {
+				return false;
+			}
+			nextPart();
+		}
+		return true;
+	}
+
+	private void nextPart() throws IOException {
+		int request = -1;
+		synchronized (this) {
+			long deadline = System.currentTimeMillis() + partTimeoutMs;
+			while (!received.containsKey(currentPart + 1)) {
+				if (failure != null) {
+					throw new IOException("Fetching part " + (currentPart + 1) + " failed", failure);
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new IOException(
+							"Part " + (currentPart + 1) + " not received within " + partTimeoutMs + "ms");
+				}
+				try {
+					wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for part " + (currentPart + 1), e);
+				}
+			}
+			currentPart++;
+			current = received.remove(currentPart);
+			position = 0;
+			size += current.length;
+			if (nextRequest < numberOfParts) {
+				request = nextRequest++;
+			}
+		}
+		if (request >= 0) {
+			requester.request(request);
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+package i5.las2peer.persistency.helper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * This class splits the data written to it into parts. Each part is handed to the given {@link PartConsumer} as soon
+ * as it is complete, the last part when the stream is closed. So an object can be split while it is serialized and
+ * only one part is kept in memory.
+ *
+ * Parts have either a fixed size or content defined boundaries. In the latter case a rolling (gear) hash over the last
+ * 64 bytes written decides where a part ends. Inserting or removing data then only changes the parts around the
+ * modification, all other parts stay identical and can be shared between versions of the same data.
+ */
+public class PartsOutputStream extends OutputStream {
+
+	/**
+	 * Receives the parts written to a {@link PartsOutputStream}.
+	 */
+	public interface PartConsumer {
+		public void onPart(int partIndex, byte[] content) throws IOException;
+	}
+
+	private static final long[] GEAR = new long[256];
+
+	static {
+		// fixed seed, boundaries must be the same on every node
+		Random random = new Random(0x6c617332L);
+		for (int i = 0; i < GEAR.length; i++) {
+			GEAR[i] = random.nextLong();
+		}
+	}
+
+	private final PartConsumer consumer;
+	private final byte[] buffer;
+	private final int minSize;
+	private final long boundaryMask;
+	private long hash = 0;
+	private int position = 0;
+	private int parts = 0;
+	private long size = 0;
+	private boolean closed = false;
+
+	/**
+	 * Initiates the stream.
+	 *
+	 * @param partSize The size of each part, except the last one.
+	 * @param consumer The consumer that gets the parts.
+	 */
+	public PartsOutputStream(int partSize, PartConsumer consumer) {
+		if (partSize < 1) {
+			throw new IllegalArgumentException("Part size must be positive");
+		}
+		this.buffer = new byte[partSize];
+		this.minSize = partSize;
+		this.boundaryMask = 0;
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Initiates the stream with content defined part boundaries.
+	 *
+	 * @param minSize The minimum size of each part, except the last one.
+	 * @param averageSize The approximate average size a part grows beyond the minimum size, rounded down to a power of
+	 *            two.
+	 * @param maxSize The maximum size of each part.
+	 * @param consumer The consumer that gets the parts.
+	 */
+	public PartsOutputStream(int minSize, int averageSize, int maxSize, PartConsumer consumer) {
+		if (minSize < 1 || averageSize < 2 || maxSize < minSize) {
+			throw new IllegalArgumentException("Invalid part sizes " + minSize + ", " + averageSize + ", " + maxSize);
+		}
+		int bits = Integer.numberOfTrailingZeros(Integer.highestOneBit(averageSize));
+		this.buffer = new byte[maxSize];
+		this.minSize = minSize;
+		// the highest bits of the gear hash depend on the most bytes
+		this.boundaryMask = -1L << (64 - bits);
+		this.consumer = consumer;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		buffer[position++] = (byte) b;
+		if (isBoundary(b)) {
+			emit();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (boundaryMask != 0) {
+			for (int i = off; i < off + len; i++) {
+				buffer[position++] = b[i];
+				if (isBoundary(b[i])) {
+					emit();
+				}
+			}
+			return;
+		}
+		while (len > 0) {
+			int n = Math.min(len, buffer.length - position);
+			System.arraycopy(b, off, buffer, position, n);
+			position += n;
+			off += n;
+			len -= n;
+			if (position == buffer.length) {
+				emit();
+			}
+		}
+	}
+
+	/**
+	 * Hands the remaining data to the consumer as last part. At least one part is emitted, even if nothing was
+	 * written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		if (position > 0 || parts == 0) {
+			emit();
+		}
+		closed = true;
+	}
+
+	/**
+	 * Gets the number of bytes handed to the consumer so far.
+	 *
+	 * @return Returns the total size of all parts.
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the number of parts handed to the consumer so far.
+	 *
+	 * @return Returns the number of parts.
+	 */
+	public int getParts() {
+		return parts;
+	}
+
+	private boolean isBoundary(int b) {
+		if (position == buffer.length) {
+			return true;
+		} else if (boundaryMask == 0) {
+			return false;
+		}
+		hash = (hash << 1) + GEAR[b & 0xff];
+		return position >= minSize && (hash & boundaryMask) == 0;
+	}
+
+	private void emit() throws IOException {
+		byte[] part = new byte[position];
+		System.arraycopy(buffer, 0, part, 0, position);
+		size += position;
+		position = 0;
+		hash = 0;
+		consumer.onPart(parts++, part);
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+}
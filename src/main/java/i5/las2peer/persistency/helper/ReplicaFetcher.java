@@ -0,0 +1,326 @@
+package i5.las2peer.persistency.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import i5.las2peer.api.StorageExceptionHandler;
+import i5.las2peer.api.exceptions.StorageException;
+import i5.las2peer.logging.L2pLogger;
+import i5.las2peer.logging.metrics.Counter;
+import i5.las2peer.logging.metrics.LatencyHistogram;
+import i5.las2peer.logging.metrics.MetricsRegistry;
+import i5.las2peer.persistency.NetworkArtifact;
+import i5.las2peer.persistency.StorageArtifactHandler;
+import i5.las2peer.persistency.VerificationFailedException;
+import rice.Continuation;
+import rice.p2p.commonapi.Id;
+import rice.p2p.past.Past;
+import rice.p2p.past.PastContent;
+import rice.p2p.past.PastContentHandle;
+
+/**
+ * This class fetches an artifact from one of several replicas. The replicas are ranked by the fetch latency observed
+ * for their node, nodes not asked yet are ranked by their proximity as measured by Pastry. The best replica is asked
+ * first, on an error, an invalid artifact or if it does not answer within the attempt timeout the next one is asked.
+ * A timed out attempt is not given up, its answer is still used if it arrives first. The fetch only fails once every
+ * replica answered with an error.
+ *
+ * Optionally a slow fetch is hedged: if the best replica did not answer within the given percentile of all observed
+ * fetch latencies, the next replica is asked in parallel and the first valid answer is used.
+ */
+public class ReplicaFetcher {
+
+	private static final L2pLogger logger = L2pLogger.getInstance(ReplicaFetcher.class);
+
+	private static final double LATENCY_SMOOTHING = 0.3;
+	private static final int MIN_HEDGE_SAMPLES = 20;
+
+	private final Past pastStorage;
+	private final ExecutorService threadpool;
+	private final ScheduledExecutorService scheduler;
+	private final ConcurrentHashMap<Id, Double> nodeLatencies = new ConcurrentHashMap<>();
+	private final LatencyHistogram fetchLatency;
+	private final Counter failovers;
+	private final Counter hedges;
+	private final long attemptTimeout;
+	private final double hedgePercentile;
+
+	/**
+	 * constructor
+	 *
+	 * @param pastStorage A past storage to fetch the artifacts from.
+	 * @param threadpool A executor service to handle the results in.
+	 * @param scheduler A scheduler for attempt timeouts and hedged requests.
+	 * @param metrics A registry to report fetch latencies, failovers and hedged requests to.
+	 * @param attemptTimeout The time in milliseconds after which the next replica is asked.
+	 * @param hedgePercentile The percentile (between 0 and 100) of the fetch latency after which the next replica is
+	 *            asked in parallel, 0 disables hedging.
+	 */
+	public ReplicaFetcher(Past pastStorage, ExecutorService threadpool, ScheduledExecutorService scheduler,
+			MetricsRegistry metrics, long attemptTimeout, double hedgePercentile) {
+		this.pastStorage = pastStorage;
+		this.threadpool = threadpool;
+		this.scheduler = scheduler;
+		this.attemptTimeout = attemptTimeout;
+		this.hedgePercentile = hedgePercentile;
+		fetchLatency = metrics.histogram("storage.fetch.latency");
+		failovers = metrics.counter("storage.fetch.failovers");
+		hedges = metrics.counter("storage.fetch.hedges");
+	}
+
+	/**
+	 * Ranks the given replicas, the most promising one first. Replicas with the same estimate are ordered randomly to
+	 * spread the load.
+	 *
+	 * @param handles The handles of the replicas.
+	 * @return Returns a new list with the ranked handles.
+	 */
+	public List<PastContentHandle> rank(List<PastContentHandle> handles) {
+		ArrayList<PastContentHandle> ranked = new ArrayList<>(handles);
+		Collections.shuffle(ranked);
+		Collections.sort(ranked, Comparator.comparingDouble(this::estimateLatency));
+		return ranked;
+	}
+
+	/**
+	 * Estimates the time to fetch something from the node holding the given replica.
+	 *
+	 * @param handle The handle of the replica.
+	 * @return Returns the smoothed observed latency in milliseconds or the proximity of the node, if nothing was
+	 *         fetched from it yet.
+	 */
+	public double estimateLatency(PastContentHandle handle) {
+		Double observed = nodeLatencies.get(handle.getNodeHandle().getId());
+		if (observed != null) {
+			return observed;
+		}
+		return handle.getNodeHandle().proximity();
+	}
+
+	/**
+	 * Fetches a verified artifact from one of the given replicas.
+	 *
+	 * @param handles The handles of the replicas.
+	 * @param artifactHandler The handler that receives the first valid artifact.
+	 * @param exceptionHandler The handler that is called if no replica delivered a valid artifact.
+	 */
+	public void fetch(List<PastContentHandle> handles, StorageArtifactHandler artifactHandler,
+			StorageExceptionHandler exceptionHandler) {
+		if (handles.isEmpty()) {
+			throw new IllegalArgumentException("No handles to fetch given");
+		}
+		new Fetch(rank(handles), artifactHandler, exceptionHandler).start();
+	}
+
+	private void observe(PastContentHandle handle, double latencyMs) {
+		nodeLatencies.merge(handle.getNodeHandle().getId(), latencyMs,
+				(old, sample) -> LATENCY_SMOOTHING * sample + (1 - LATENCY_SMOOTHING) * old);
+	}
+
+	/**
+	 * The state of a single fetch over all of its attempts.
+	 */
+	private class Fetch {
+
+		private final List<PastContentHandle> ranked;
+		private final StorageArtifactHandler artifactHandler;
+		private final StorageExceptionHandler exceptionHandler;
+		private final AtomicBoolean done = new AtomicBoolean();
+		private int next = 0;
+		private int pending = 0;
+		private Exception lastException;
+		private ScheduledFuture<?> hedge;
+
+		private Fetch(List<PastContentHandle> ranked, StorageArtifactHandler artifactHandler,
+				StorageExceptionHandler exceptionHandler) {
+			this.ranked = ranked;
+			this.artifactHandler = artifactHandler;
+			this.exceptionHandler = exceptionHandler;
+		}
+
+		private void start() {
+			tryNext();
+			if (hedgePercentile > 0 && ranked.size() > 1 && fetchLatency.getCount() >= MIN_HEDGE_SAMPLES) {
+				long hedgeDelay = Math.max(1, fetchLatency.getPercentile(hedgePercentile));
+				ScheduledFuture<?> scheduled = scheduler.schedule(() -> {
+					if (!done.get()) {
+						hedges.inc();
+						tryNext();
+					}
+				}, hedgeDelay, TimeUnit.NANOSECONDS);
+				synchronized (this) {
+					hedge = scheduled;
+				}
+				if (done.get()) {
+					scheduled.cancel(false);
+				}
+			}
+		}
+
+		private boolean hasUntried() {
+			synchronized (this) {
+				return next < ranked.size();
+			}
+		}
+
+		private boolean finish() {
+			if (!done.compareAndSet(false, true)) {
+				return false;
+			}
+			ScheduledFuture<?> scheduled;
+			synchronized (this) {
+				scheduled = hedge;
+			}
+			if (scheduled != null) {
+				scheduled.cancel(false);
+			}
+			return true;
+		}
+
+		private void tryNext() {
+			PastContentHandle handle = null;
+			boolean exhausted;
+			synchronized (this) {
+				if (done.get()) {
+					return;
+				}
+				exhausted = next >= ranked.size();
+				if (!exhausted) {
+					handle = ranked.get(next++);
+					pending++;
+				} else if (pending > 0) {
+					// wait for the attempts still running
+					return;
+				}
+			}
+			if (exhausted) {
+				fail();
+			} else {
+				new Attempt(handle).start();
+			}
+		}
+
+		private void attemptFailed(PastContentHandle handle, Exception e) {
+			logger.info("Fetching from " + handle.getNodeHandle() + " failed: " + e.toString());
+			// until the node answers again it is ranked as if it needed the whole attempt timeout
+			observe(handle, attemptTimeout);
+			synchronized (this) {
+				pending--;
+				lastException = e;
+			}
+			if (!done.get()) {
+				failovers.inc();
+				tryNext();
+			}
+		}
+
+		private void fail() {
+			if (finish() && exceptionHandler != null) {
+				Exception cause;
+				synchronized (this) {
+					cause = lastException;
+				}
+				exceptionHandler.onException(
+						new StorageException("Fetching from all " + ranked.size() + " replicas failed", cause));
+			}
+		}
+
+		/**
+		 * A single fetch from a replica. On timeout the next replica is asked, but the attempt keeps waiting for its
+		 * answer. It fails once on an error or an invalid artifact.
+		 */
+		private class Attempt implements Continuation<PastContent, Exception> {
+
+			private final PastContentHandle handle;
+			private final AtomicBoolean finished = new AtomicBoolean();
+			private long startNanos;
+			private ScheduledFuture<?> timeout;
+
+			private Attempt(PastContentHandle handle) {
+				this.handle = handle;
+			}
+
+			private void start() {
+				startNanos = System.nanoTime();
+				timeout = scheduler.schedule(this::timedOut, attemptTimeout, TimeUnit.MILLISECONDS);
+				pastStorage.fetch(handle, this);
+			}
+
+			@Override
+			public void receiveResult(PastContent result) { // ATTENTION! EXECUTED IN NETWORK THREAD!
+				// detach further processing from network thread
+				try {
+					threadpool.execute(() -> received(result));
+				} catch (RejectedExecutionException e) {
+					// the storage pool is exhausted, only the failure is handled in the network thread
+					fail(e);
+				}
+			}
+
+			private void received(PastContent result) {
+				if (done.get()) {
+					return;
+				}
+				try {
+					if (!(result instanceof NetworkArtifact)) {
+						throw new VerificationFailedException(
+								result + " is not instance of " + NetworkArtifact.class.getCanonicalName());
+					}
+					NetworkArtifact artifact = (NetworkArtifact) result;
+					artifact.verify();
+					finished.set(true);
+					timeout.cancel(false);
+					long latency = System.nanoTime() - startNanos;
+					fetchLatency.record(latency);
+					observe(handle, latency / 1000000.0);
+					if (finish()) {
+						artifactHandler.onReceive(artifact);
+					}
+				} catch (VerificationFailedException e) {
+					fail(e);
+				}
+			}
+
+			@Override
+			public void receiveException(Exception exception) { // ATTENTION! EXECUTED IN NETWORK THREAD!
+				try {
+					threadpool.execute(() -> fail(exception));
+				} catch (RejectedExecutionException e) {
+					fail(exception);
+				}
+			}
+
+			private void fail(Exception e) {
+				// once another attempt succeeded, slower attempts don't matter anymore
+				if (!done.get() && finished.compareAndSet(false, true)) {
+					timeout.cancel(false);
+					attemptFailed(handle, e);
+				}
+			}
+
+			private void timedOut() {
+				// the last pending attempt is never given up on timeout, failing it would only fail the fetch
+				if (done.get() || finished.get() || !hasUntried()) {
+					return;
+				}
+				logger.info("Fetching from " + handle.getNodeHandle() + " timed out after " + attemptTimeout + "ms");
+				// until the node answers it is ranked as if it needed the whole attempt timeout
+				observe(handle, attemptTimeout);
+				failovers.inc();
+				tryNext();
+			}
+
+		}
+
+	}
+
+}
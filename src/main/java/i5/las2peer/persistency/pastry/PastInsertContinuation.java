@@ -2,6 +2,7 @@ package i5.las2peer.persistency.pastry;
 
 import java.io.Serializable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import i5.las2peer.api.StorageExceptionHandler;
 import i5.las2peer.api.StorageStoreResultHandler;
@@ -34,22 +35,26 @@ public class PastInsertContinuation implements Continuation<Boolean[], Exception
 			return;
 		}
 		// detach further processing from network thread
-		dispatcher.execute(new Runnable() {
-			@Override
-			public void run() {
-				try {
-					int successfulSaveOperations = 0;
-					for (Boolean b : result) {
-						if (b != null && b.booleanValue()) {
-							successfulSaveOperations++;
+		try {
+			dispatcher.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						int successfulSaveOperations = 0;
+						for (Boolean b : result) {
+							if (b != null && b.booleanValue()) {
+								successfulSaveOperations++;
+							}
 						}
+						resultHandler.onResult(serializable, successfulSaveOperations);
+					} catch (Exception e) {
+						receiveException(e);
 					}
-					resultHandler.onResult(serializable, successfulSaveOperations);
-				} catch (Exception e) {
-					receiveException(e);
 				}
-			}
-		});
+			});
+		} catch (RejectedExecutionException e) {
+			reportRejected(e);
+		}
 	}
 
 	@Override
@@ -58,12 +63,23 @@ public class PastInsertContinuation implements Continuation<Boolean[], Exception
 			return;
 		}
 		// detach further processing from network thread
-		dispatcher.execute(new Runnable() {
-			@Override
-			public void run() {
-				exceptionHandler.onException(exception);
-			}
-		});
+		try {
+			dispatcher.execute(new Runnable() {
+				@Override
+				public void run() {
+					exceptionHandler.onException(exception);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			reportRejected(exception);
+		}
+	}
+
+	private void reportRejected(Exception e) {
+		// the storage pool is exhausted, only the failure is reported in the network thread
+		if (exceptionHandler != null) {
+			exceptionHandler.onException(e);
+		}
 	}
 
 }
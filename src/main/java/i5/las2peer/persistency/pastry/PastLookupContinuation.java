@@ -2,6 +2,7 @@ package i5.las2peer.persistency.pastry;
 
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import i5.las2peer.api.StorageExceptionHandler;
 import i5.las2peer.persistency.StorageLookupHandler;
@@ -40,12 +41,16 @@ public class PastLookupContinuation implements Continuation<PastContentHandle[],
 			}
 		}
 		// detach further processing from network thread
-		dispatcher.execute(new Runnable() {
-			@Override
-			public void run() {
-				lookupHandler.onLookup(handles);
-			}
-		});
+		try {
+			dispatcher.execute(new Runnable() {
+				@Override
+				public void run() {
+					lookupHandler.onLookup(handles);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			reportRejected(e);
+		}
 	}
 
 	@Override
@@ -54,12 +59,23 @@ public class PastLookupContinuation implements Continuation<PastContentHandle[],
 			return;
 		}
 		// detach further processing from network thread
-		dispatcher.execute(new Runnable() {
-			@Override
-			public void run() {
-				exceptionHandler.onException(exception);
-			}
-		});
+		try {
+			dispatcher.execute(new Runnable() {
+				@Override
+				public void run() {
+					exceptionHandler.onException(exception);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			reportRejected(exception);
+		}
+	}
+
+	private void reportRejected(Exception e) {
+		// the storage pool is exhausted, only the failure is reported in the network thread
+		if (exceptionHandler != null) {
+			exceptionHandler.onException(e);
+		}
 	}
 
 }
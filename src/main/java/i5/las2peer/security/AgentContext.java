@@ -1,9 +1,12 @@
 package i5.las2peer.security;
 
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import i5.las2peer.api.StorageCollisionHandler;
 import i5.las2peer.api.StorageEnvelopeHandler;
@@ -19,6 +22,7 @@ import i5.las2peer.p2p.Node;
 import i5.las2peer.persistency.ContextStorageInterface;
 import i5.las2peer.persistency.DecodingFailedException;
 import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeFetchResult;
 import i5.las2peer.tools.CryptoException;
 import i5.las2peer.tools.SerializationException;
 
@@ -394,6 +398,11 @@ public class AgentContext implements AgentStorage, ContextStorageInterface {
 		return localNode.fetchEnvelope(identifier);
 	}
 
+	@Override
+	public Map<String, EnvelopeFetchResult> fetchEnvelopes(Collection<String> identifiers) {
+		return localNode.fetchEnvelopes(identifiers);
+	}
+
 	@Override
 	public Envelope createEnvelope(String identifier, Serializable content, Agent... reader)
 			throws IllegalArgumentException, SerializationException, CryptoException {
@@ -441,6 +450,11 @@ public class AgentContext implements AgentStorage, ContextStorageInterface {
 		localNode.storeEnvelopeAsync(envelope, author, resultHandler, collisionHandler, exceptionHandler);
 	}
 
+	@Override
+	public CompletableFuture<Void> storeEnvelopeAsync(Envelope envelope, Agent author) {
+		return localNode.storeEnvelopeAsync(envelope, author);
+	}
+
 	@Override
 	public Envelope fetchEnvelope(String identifier, long timeoutMs) throws StorageException {
 		return localNode.fetchEnvelope(identifier, timeoutMs);
@@ -452,6 +466,11 @@ public class AgentContext implements AgentStorage, ContextStorageInterface {
 		localNode.fetchEnvelopeAsync(identifier, envelopeHandler, exceptionHandler);
 	}
 
+	@Override
+	public CompletableFuture<Envelope> fetchEnvelopeAsync(String identifier) {
+		return localNode.fetchEnvelopeAsync(identifier);
+	}
+
 	@Override
 	public Envelope createEnvelope(String identifier, Serializable content)
 			throws IllegalArgumentException, SerializationException, CryptoException {
@@ -3,6 +3,7 @@ package i5.las2peer.security;
 import i5.las2peer.api.Service;
 import i5.las2peer.classLoaders.ClassLoaderException;
 import i5.las2peer.communication.ListMethodsContent;
+import i5.las2peer.communication.LoadDescriptor;
 import i5.las2peer.communication.Message;
 import i5.las2peer.communication.MessageException;
 import i5.las2peer.communication.RMIExceptionContent;
@@ -32,11 +33,11 @@ import i5.las2peer.tools.XmlTools;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.Base64;
 import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.w3c.dom.Element;
 
@@ -56,6 +57,11 @@ public class ServiceAgent extends PassphraseAgent {
 	 */
 	private Service serviceInstance = null;
 
+	/**
+	 * the methods of the service class, computed once when the service is launched
+	 */
+	private ListMethodsContent methodList = null;
+
 	/**
 	 * create a new service agent
 	 * 
@@ -128,51 +134,15 @@ public class ServiceAgent extends PassphraseAgent {
 						getRunningAtNode().getNodeId(), this,
 						this.getServiceNameVersion() + "/" + ((RMITask) content).getMethodName());
 
-				L2pThread thread = new L2pThread(this, (RMITask) content, c);
-				Message response;
+				// the delivering thread does not wait for the execution, the response is sent when it finishes
+				RMITask task = (RMITask) content;
+				L2pThread thread = new L2pThread(this, task, c);
 				try {
-					thread.start();
-					thread.join();
-
-					if (thread.hasException()) {
-						// System.out.println ( "Exception: " + thread.getException());
-						// thread.getException().printStackTrace();
-						if (thread.getException() instanceof InvocationTargetException
-								&& thread.getException().getCause() instanceof AgentLockedException) {
-							getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(),
-									m.getSender(), getRunningAtNode().getNodeId(), this,
-									"Need to unlock agent key for envelope access");
-							response = new Message(m, new RMIExceptionContent(new AgentLockedException(
-									"Agent locked on this node!")));
-						} else {
-							response = new Message(m, new RMIExceptionContent(thread.getException()));
-							getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(),
-									m.getSender(), getRunningAtNode().getNodeId(), this,
-									"Exception: " + thread.getException());
-						}
-					} else {
-						response = new Message(m, new RMIResultContent(thread.getResult()));
-						getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FINISHED, m.getSendingNodeId(),
-								m.getSender(), getRunningAtNode().getNodeId(), this,
-								this.getServiceNameVersion() + "/" + ((RMITask) content).getMethodName());
-					}
-					response.setSendingNodeId(getRunningAtNode().getNodeId());
-				} catch (InterruptedException e) {
-					response = new Message(m, new RMIExceptionContent(e));
-					getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(),
-							m.getSender(), getRunningAtNode().getNodeId(), this, "Exception: " + e);
-				} catch (NotFinishedException e) {
-					// should not occur, since join has been called!
-					response = new Message(m, new RMIExceptionContent(e));
-					getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(),
-							m.getSender(), getRunningAtNode().getNodeId(), this, "Exception: " + e);
+					getRunningAtNode().getThreadPools().startExecution(thread)
+							.whenComplete((finished, e) -> sendInvocationResponse(m, task, thread, e));
+				} catch (RejectedExecutionException e) {
+					sendInvocationResponse(m, task, thread, e);
 				}
-
-				if (m.getSendingNodeId() == null) {
-					System.out.println("Node sender is null - where to send the answer to!?!?");
-				}
-
-				getRunningAtNode().sendResponse(response, m.getSendingNodeId());
 			} else if (content instanceof ListMethodsContent) {
 				if (!((ListMethodsContent) content).isRequest()) {
 					throw new L2pServiceException("I don't know what to do with a response for a ListMethods request!");
@@ -181,13 +151,7 @@ public class ServiceAgent extends PassphraseAgent {
 					throw new L2pServiceException("If no sendind node is given - where should I send the answer to?!");
 				}
 
-				ListMethodsContent responseContent = new ListMethodsContent(false);
-				for (Method method : getServiceInstance().getClass().getMethods()) {
-					responseContent.addMethod(method);
-				}
-				responseContent.finalize();
-
-				Message response = new Message(m, responseContent);
+				Message response = new Message(m, getMethodList());
 				getRunningAtNode().sendResponse(response, m.getSendingNodeId());
 			} else if (content instanceof ServiceDiscoveryContent) {
 				if (!((ServiceDiscoveryContent) content).isRequest()) {
@@ -200,7 +164,7 @@ public class ServiceAgent extends PassphraseAgent {
 				// only answer if requirements are met
 				if (((ServiceDiscoveryContent) content).accepts(this.getServiceNameVersion())) {
 					ServiceDiscoveryContent result = new ServiceDiscoveryContent(this.getId(),
-							this.getServiceNameVersion());
+							this.getServiceNameVersion(), getRunningAtNode().getLoadDescriptor());
 
 					Message response = new Message(m, result);
 					response.setSendingNodeId(getRunningAtNode().getNodeId());
@@ -233,13 +197,84 @@ public class ServiceAgent extends PassphraseAgent {
 
 	}
 
+	/**
+	 * send the result of a finished invocation back to the invoking node
+	 * 
+	 * @param m the invocation message
+	 * @param task the invoked task
+	 * @param thread the thread the invocation was executed in
+	 * @param failure an exception that prevented the execution, null if the thread was executed
+	 */
+	private void sendInvocationResponse(Message m, RMITask task, L2pThread thread, Throwable failure) {
+		Serializable responseContent;
+		if (failure instanceof RejectedExecutionException) {
+			responseContent = new RMIExceptionContent(new ServiceInvocationException(
+					"node is overloaded, too many service invocations waiting", failure));
+			getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(), m.getSender(),
+					getRunningAtNode().getNodeId(), this, "Exception: " + failure);
+		} else if (failure != null) {
+			responseContent = new RMIExceptionContent(new ServiceInvocationException("execution failed", failure));
+			getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(), m.getSender(),
+					getRunningAtNode().getNodeId(), this, "Exception: " + failure);
+		} else if (thread.hasException()) {
+			if (thread.getException() instanceof InvocationTargetException
+					&& thread.getException().getCause() instanceof AgentLockedException) {
+				getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(),
+						m.getSender(), getRunningAtNode().getNodeId(), this,
+						"Need to unlock agent key for envelope access");
+				responseContent = new RMIExceptionContent(new AgentLockedException("Agent locked on this node!"));
+			} else {
+				responseContent = new RMIExceptionContent(thread.getException());
+				getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(),
+						m.getSender(), getRunningAtNode().getNodeId(), this, "Exception: " + thread.getException());
+			}
+		} else {
+			try {
+				responseContent = new RMIResultContent(thread.getResult());
+				getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FINISHED, m.getSendingNodeId(),
+						m.getSender(), getRunningAtNode().getNodeId(), this,
+						this.getServiceNameVersion() + "/" + task.getMethodName());
+			} catch (NotFinishedException e) {
+				// should not occur, since the thread is completed
+				responseContent = new RMIExceptionContent(e);
+				getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(),
+						m.getSender(), getRunningAtNode().getNodeId(), this, "Exception: " + e);
+			}
+		}
+
+		// let the caller know how busy this node is
+		LoadDescriptor load = getRunningAtNode().getLoadDescriptor();
+		if (responseContent instanceof RMIResultContent) {
+			((RMIResultContent) responseContent).setLoad(load);
+		} else {
+			((RMIExceptionContent) responseContent).setLoad(load);
+		}
+
+		if (m.getSendingNodeId() == null) {
+			System.out.println("Node sender is null - where to send the answer to!?!?");
+		}
+
+		try {
+			Message response = new Message(m, responseContent);
+			response.setSendingNodeId(getRunningAtNode().getNodeId());
+			getRunningAtNode().sendResponse(response, m.getSendingNodeId());
+		} catch (EncodingFailedException | L2pSecurityException | SerializationException | AgentNotKnownException
+				| NodeNotFoundException e) {
+			// nobody waits for this thread, so the invoking node will run into its timeout
+			getRunningAtNode().observerNotice(Event.SERVICE_INVOCATION_FAILED, m.getSendingNodeId(), m.getSender(),
+					getRunningAtNode().getNodeId(), this, "unable to send response: " + e);
+		}
+	}
+
 	@Override
 	public void notifyUnregister() {
+		getRunningAtNode().withdrawService(this);
 		getRunningAtNode().getNodeServiceCache().unregisterLocalService(this);
 
 		if (serviceInstance != null) {
 			serviceInstance.close();
 			serviceInstance = null;
+			methodList = null;
 		}
 		Node runningAt = getRunningAtNode();
 		if (runningAt != null) {
@@ -382,6 +417,7 @@ public class ServiceAgent extends PassphraseAgent {
 
 			Constructor<? extends Service> cons = clServ.getConstructor(new Class<?>[0]);
 			serviceInstance = cons.newInstance();
+			methodList = ListMethodsContent.forClass(clServ);
 
 			// notify the service, that it has been launched
 			serviceInstance.launchedAt(node, this);
@@ -395,6 +431,9 @@ public class ServiceAgent extends PassphraseAgent {
 			// subscribe to service topic
 			node.registerReceiverToTopic(this, serviceNameToTopicId(this.getServiceNameVersion().getName()));
 
+			// let the other nodes know about this service
+			node.announceService(this);
+
 			// register the service alias
 			String alias = serviceInstance.getAlias();
 			if (alias != null) {
@@ -511,4 +550,13 @@ public class ServiceAgent extends PassphraseAgent {
 		return serviceInstance;
 	}
 
+	/**
+	 * get the methods of the service bound to this agent
+	 * 
+	 * @return finalized method listing of the service class or null, if the service is not running
+	 */
+	public ListMethodsContent getMethodList() {
+		return methodList;
+	}
+
 }
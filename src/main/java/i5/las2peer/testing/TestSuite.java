@@ -49,12 +49,28 @@ public class TestSuite {
 	 */
 	public static ArrayList<PastryNodeImpl> launchNetwork(int numOfNodes, STORAGE_MODE storageMode, boolean wipeData)
 			throws Exception {
+		return launchNetwork(numOfNodes, storageMode, wipeData, false);
+	}
+
+	/**
+	 * This method starts a network consisting of the given number of nodes. The nodes should be used for testing only,
+	 * because they are listening only on the loopback address and their ports are choosen by the operating system.
+	 *
+	 * @param numOfNodes The number of nodes that should be in the network.
+	 * @param storageMode A storage mode used by the nodes in the network.
+	 * @param wipeData If true the test storage directory is wiped before launching the network.
+	 * @param sharedEnvironment If true all nodes share one Pastry environment (selector, processor and timer threads).
+	 * @return Returns a list with all nodes from the network.
+	 * @throws Exception If an error occurs.
+	 */
+	public static ArrayList<PastryNodeImpl> launchNetwork(int numOfNodes, STORAGE_MODE storageMode, boolean wipeData,
+			boolean sharedEnvironment) throws Exception {
 		if (wipeData) {
 			wipeTestStorage();
 		}
 		ArrayList<PastryNodeImpl> result = new ArrayList<>();
 		// launch bootstrap node
-		PastryNodeImpl bootstrapNode = new PastryNodeImpl(null, storageMode, TEST_STORAGE_DIR, 0L);
+		PastryNodeImpl bootstrapNode = new PastryNodeImpl(null, storageMode, TEST_STORAGE_DIR, 0L, sharedEnvironment);
 		bootstrapNode.launch();
 		int bootstrapPort = bootstrapNode.getPort();
 		Assert.assertNotEquals(bootstrapPort, 0);
@@ -62,7 +78,7 @@ public class TestSuite {
 		System.out.println("bootstrap node launched with id " + bootstrapNode.getNodeId());
 		// add more nodes
 		for (int num = 1; num <= numOfNodes - 1; num++) {
-			PastryNodeImpl node = addNode(bootstrapPort, storageMode, (long) num);
+			PastryNodeImpl node = addNode(bootstrapPort, storageMode, (long) num, sharedEnvironment);
 			result.add(node);
 			System.out.println("network node launched with id " + node.getNodeId());
 		}
@@ -71,9 +87,14 @@ public class TestSuite {
 
 	public static PastryNodeImpl addNode(int bootstrapPort, STORAGE_MODE storageMode, Long nodeIdSeed)
 			throws Exception {
+		return addNode(bootstrapPort, storageMode, nodeIdSeed, false);
+	}
+
+	public static PastryNodeImpl addNode(int bootstrapPort, STORAGE_MODE storageMode, Long nodeIdSeed,
+			boolean sharedEnvironment) throws Exception {
 		PastryNodeImpl node = new PastryNodeImpl(
 				InetAddress.getLoopbackAddress().getHostAddress() + ":" + bootstrapPort, storageMode, TEST_STORAGE_DIR,
-				nodeIdSeed);
+				nodeIdSeed, sharedEnvironment);
 		node.launch();
 		return node;
 	}
@@ -614,9 +614,7 @@ public class CommandPrompt {
 	 * @param object
 	 */
 	private void printMethodsOfBound(Object object) {
-		ListMethodsContent lmc = new ListMethodsContent(false);
-		for (Method m : object.getClass().getMethods())
-			lmc.addMethod(m);
+		ListMethodsContent lmc = ListMethodsContent.forClass(object.getClass());
 
 		for (String methodName : lmc.getSortedMethodNames()) {
 			boolean namePrinted = false;
@@ -542,6 +542,11 @@ public class L2pNodeLauncher {
 		}
 
 		Agent receiver = node.getServiceAgent(ServiceNameVersion.fromString(serviceNameVersion), currentUser);
+		if (receiver instanceof ServiceAgent && ((ServiceAgent) receiver).getMethodList() != null) {
+			// the service is running at this node
+			return ((ServiceAgent) receiver).getMethodList();
+		}
+
 		Message request = new Message(currentUser, receiver, new ListMethodsContent());
 		request.setSendingNodeId((NodeHandle) node.getNodeId());
 
@@ -740,6 +745,15 @@ public class L2pNodeLauncher {
 		return SimpleTools.join(node.getOtherKnownNodes(), "\n\t");
 	}
 
+	/**
+	 * get the current metrics of the node, e.g. message counts and latencies of the transport layer
+	 * 
+	 * @return string with one line per metric
+	 */
+	public String getMetrics() {
+		return node.getMetrics().toReport();
+	}
+
 	/**
 	 * Creates a new node launcher instance.
 	 * 
@@ -769,6 +783,22 @@ public class L2pNodeLauncher {
 		commandPrompt = new CommandPrompt(this);
 	}
 
+	/**
+	 * apply the given thread pool sizes to the node, invalid sizes are ignored with a warning
+	 * 
+	 * @param threadPools comma separated list of <i>concern=threads[:queue]</i> entries or null
+	 */
+	private void setThreadPoolSizes(String threadPools) {
+		if (threadPools == null) {
+			return;
+		}
+		try {
+			node.setThreadPoolSizes(threadPools);
+		} catch (IllegalArgumentException e) {
+			printWarning("ignored thread pool sizes '" + threadPools + "': " + e.getMessage());
+		}
+	}
+
 	/**
 	 * actually start the node
 	 * 
@@ -824,6 +854,7 @@ public class L2pNodeLauncher {
 		String sLogDir = null;
 		ArrayList<String> serviceDirectories = null;
 		Long nodeIdSeed = null;
+		String threadPools = null;
 		List<String> commands = new ArrayList<>();
 		// parse args
 		Iterator<String> itArg = args.iterator();
@@ -910,6 +941,13 @@ public class L2pNodeLauncher {
 					}
 					itArg.remove();
 				}
+			} else if (larg.equals("-t") == true || larg.equals("--thread-pools") == true) {
+				if (itArg.hasNext() == false) {
+					printWarning("ignored '" + arg + "', because thread pool sizes expected after it");
+				} else {
+					threadPools = itArg.next();
+					itArg.remove();
+				}
 			} else {
 				commands.add(arg);
 			}
@@ -917,7 +955,7 @@ public class L2pNodeLauncher {
 		// check parameters and launch node
 		if (debugMode) {
 			System.err.println("WARNING! Launching node in DEBUG mode! THIS NODE IS NON PERSISTENT!");
-			return launchDebug(port, bootstrap, sLogDir, serviceDirectories, commands);
+			return launchDebug(port, bootstrap, sLogDir, serviceDirectories, threadPools, commands);
 		} else {
 			if (port == null) {
 				printError("no port number specified");
@@ -927,13 +965,35 @@ public class L2pNodeLauncher {
 				return null;
 			}
 			return launchSingle(port, bootstrap, storageMode, observer, sLogDir, serviceDirectories, nodeIdSeed,
-					commands);
+					threadPools, commands);
 		}
 	}
 
 	public static L2pNodeLauncher launchSingle(int port, String bootstrap, STORAGE_MODE storageMode, boolean observer,
 			String sLogDir, Iterable<String> serviceDirectories, Long nodeIdSeed, Iterable<String> commands)
 			throws NodeException {
+		return launchSingle(port, bootstrap, storageMode, observer, sLogDir, serviceDirectories, nodeIdSeed, null,
+				commands);
+	}
+
+	/**
+	 * Launches a single node.
+	 * 
+	 * @param port local port number to open
+	 * @param bootstrap comma separated list of bootstrap nodes to connect to or null for a new network
+	 * @param storageMode A {@link STORAGE_MODE} used by the local node instance for persistence.
+	 * @param observer determines, if the monitoring-observer will be started at this node
+	 * @param sLogDir log directory or null for the default one
+	 * @param serviceDirectories directories to load services from
+	 * @param nodeIdSeed the seed to generate node IDs from
+	 * @param threadPools sizes of the thread pools of the node, see {@link i5.las2peer.p2p.NodeThreadPools#setSizes(String)}
+	 * @param commands commands to handle after the start
+	 * @return the L2pNodeLauncher instance
+	 * @throws NodeException
+	 */
+	public static L2pNodeLauncher launchSingle(int port, String bootstrap, STORAGE_MODE storageMode, boolean observer,
+			String sLogDir, Iterable<String> serviceDirectories, Long nodeIdSeed, String threadPools,
+			Iterable<String> commands) throws NodeException {
 		// check parameters
 		if (sLogDir != null) {
 			try {
@@ -952,6 +1012,7 @@ public class L2pNodeLauncher {
 		// instantiate launcher
 		L2pClassManager cl = new L2pClassManager(repositories, L2pNodeLauncher.class.getClassLoader());
 		L2pNodeLauncher launcher = new L2pNodeLauncher(port, bootstrap, storageMode, observer, cl, nodeIdSeed);
+		launcher.setThreadPoolSizes(threadPools);
 		// handle commands
 		try {
 			launcher.start();
@@ -976,7 +1037,7 @@ public class L2pNodeLauncher {
 	}
 
 	private static L2pNodeLauncher launchDebug(Integer port, String boostrap, String sLogDir,
-			Iterable<String> serviceDirectories, Iterable<String> commands) throws NodeException {
+			Iterable<String> serviceDirectories, String threadPools, Iterable<String> commands) throws NodeException {
 		// check parameters
 		if (sLogDir != null) {
 			try {
@@ -997,6 +1058,7 @@ public class L2pNodeLauncher {
 		L2pClassManager cl = new L2pClassManager(new FileSystemRepository(serviceDirectories, true),
 				L2pNodeLauncher.class.getClassLoader());
 		L2pNodeLauncher launcher = new L2pNodeLauncher(cl, port, boostrap);
+		launcher.setThreadPoolSizes(threadPools);
 		// handle commands
 		try {
 			launcher.start();
@@ -1060,6 +1122,8 @@ public class L2pNodeLauncher {
 				"\t--node-id-seed|-n [long] generates the node id by using this seed to provide persistence\n");
 		System.out
 				.println("\t--storage-mode|-m filesystem|memory sets Pastry's storage mode, defaults to filesystem\n");
+		System.out.println(
+				"\t--thread-pools|-t [sizes] sets the sizes of the node's thread pools as comma separated list of concern=threads[:queue] pairs, e.g. delivery=32:2000,storage=8. Concerns are delivery, execution, storage, crypto and housekeeping.\n");
 
 		System.out.println("The following methods can be used in arbitrary order and number:");
 
@@ -1,6 +1,10 @@
 package i5.las2peer.communication;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -26,4 +30,20 @@ public class ListMethodsContentTest {
 		assertEquals(testee.toXmlString(), andBack.toXmlString());
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void testForClass() throws Exception {
+		ListMethodsContent testee = ListMethodsContent.forClass(ListMethodsContent.class);
+
+		// computed once per class
+		assertSame(testee, ListMethodsContent.forClass(ListMethodsContent.class));
+		assertEquals(1, Arrays.asList(testee.getSortedMethodNames()).stream().filter("forClass"::equals).count());
+
+		try {
+			testee.addMethod(ListMethodsContent.class.getMethods()[0]);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			// intended
+		}
+	}
+
+}
@@ -359,6 +359,7 @@ public class MessageTest {
 		assertEquals(m.getSenderId(), m2.getSenderId());
 		assertEquals(m2.getRecipientId(), null);
 		assertTrue(m2.isTopic());
+		assertEquals(String.class.getCanonicalName(), m2.getTopicContentClass());
 
 		// open
 		m2.open(b, storage);
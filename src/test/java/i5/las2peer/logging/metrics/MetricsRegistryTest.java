@@ -0,0 +1,98 @@
+package i5.las2peer.logging.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void testCounters() {
+		MetricsRegistry testee = new MetricsRegistry();
+		Counter counter = testee.counter("test.counter");
+		assertSame(counter, testee.counter("test.counter"));
+
+		counter.inc();
+		counter.add(41);
+		assertEquals(42, counter.get());
+		assertEquals(Long.valueOf(42), testee.getCounters().get("test.counter"));
+	}
+
+	@Test
+	public void testGauges() {
+		MetricsRegistry testee = new MetricsRegistry();
+		AtomicLong value = new AtomicLong(5);
+		testee.gauge("test.gauge", value::get);
+
+		assertEquals(Long.valueOf(5), testee.getGauges().get("test.gauge"));
+		value.set(7);
+		assertEquals(Long.valueOf(7), testee.getGauges().get("test.gauge"));
+
+		testee.removeGauge("test.gauge");
+		assertTrue(testee.getGauges().isEmpty());
+	}
+
+	@Test
+	public void testHistogram() {
+		LatencyHistogram testee = new LatencyHistogram();
+		assertEquals(0, testee.getPercentile(50));
+
+		for (int i = 1; i <= 100; i++) {
+			testee.record(i * 1000);
+		}
+		testee.record(0);
+
+		assertEquals(101, testee.getCount());
+		assertEquals(100000, testee.getMax());
+		assertEquals(50000, testee.getMean());
+
+		// percentiles are upper bounds within a factor of two
+		long p50 = testee.getPercentile(50);
+		assertTrue(p50 >= 50000 && p50 < 2 * 50000);
+		assertEquals(100000, testee.getPercentile(100));
+	}
+
+	@Test
+	public void testReport() {
+		MetricsRegistry testee = new MetricsRegistry();
+		testee.counter("a.counter").inc();
+		testee.gauge("a.gauge", () -> 3);
+		testee.histogram("a.histogram").record(1500);
+
+		String report = testee.toReport();
+		assertTrue(report.contains("a.counter = 1"));
+		assertTrue(report.contains("a.gauge = 3"));
+		assertTrue(report.contains("a.histogram : count=1"));
+	}
+
+	@Test
+	public void testOverhead() {
+		MetricsRegistry registry = new MetricsRegistry();
+		Counter counter = registry.counter("overhead.count");
+		LatencyHistogram histogram = registry.histogram("overhead.latency");
+
+		final int rounds = 1000000;
+		// warm up
+		for (int i = 0; i < rounds; i++) {
+			long start = System.nanoTime();
+			counter.inc();
+			histogram.recordSince(start);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			long s = System.nanoTime();
+			counter.inc();
+			histogram.recordSince(s);
+		}
+		long perEvent = (System.nanoTime() - start) / rounds;
+
+		System.out.println("recording one event (counter + histogram) takes " + perEvent + "ns");
+		assertEquals(2L * rounds, counter.get());
+	}
+
+}
@@ -0,0 +1,72 @@
+package i5.las2peer.p2p;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import i5.las2peer.p2p.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+
+	@Test
+	public void testStates() throws Exception {
+		List<State> changes = new ArrayList<>();
+		CircuitBreaker testee = new CircuitBreaker(2, 100, (breaker, from, to) -> changes.add(to));
+
+		// a success resets the failure count
+		testee.failure();
+		testee.success();
+		testee.failure();
+		assertEquals(State.CLOSED, testee.getState());
+		assertTrue(testee.tryAcquire());
+
+		testee.failure();
+		assertEquals(State.OPEN, testee.getState());
+		assertFalse(testee.isAvailable());
+		assertFalse(testee.tryAcquire());
+
+		// a single trial after the cooldown
+		Thread.sleep(150);
+		assertTrue(testee.isAvailable());
+		assertTrue(testee.tryAcquire());
+		assertEquals(State.HALF_OPEN, testee.getState());
+		assertFalse(testee.tryAcquire());
+
+		// a failed trial opens the breaker again
+		testee.failure();
+		assertEquals(State.OPEN, testee.getState());
+		assertFalse(testee.tryAcquire());
+
+		Thread.sleep(150);
+		assertTrue(testee.tryAcquire());
+		testee.success();
+		assertEquals(State.CLOSED, testee.getState());
+
+		assertEquals(5, changes.size());
+		assertEquals(State.OPEN, changes.get(0));
+		assertEquals(State.HALF_OPEN, changes.get(1));
+		assertEquals(State.OPEN, changes.get(2));
+		assertEquals(State.HALF_OPEN, changes.get(3));
+		assertEquals(State.CLOSED, changes.get(4));
+	}
+
+	@Test
+	public void testLostTrial() throws Exception {
+		CircuitBreaker testee = new CircuitBreaker(1, 100, null);
+		testee.failure();
+		Thread.sleep(150);
+		assertTrue(testee.tryAcquire());
+
+		// the trial never reports back, another one is allowed after the cooldown
+		assertFalse(testee.tryAcquire());
+		Thread.sleep(150);
+		assertTrue(testee.tryAcquire());
+		assertEquals(State.HALF_OPEN, testee.getState());
+	}
+
+}
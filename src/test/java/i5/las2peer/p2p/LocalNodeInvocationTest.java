@@ -1,6 +1,7 @@
 package i5.las2peer.p2p;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -85,6 +86,50 @@ public class LocalNodeInvocationTest {
 		assertEquals(14, result);
 	}
 
+	@Test
+	public void testColdStartWithAnnouncements() throws MalformedXMLException, IOException, L2pSecurityException,
+			CryptoException, InterruptedException, AgentException, TimeoutException, NodeException {
+		LocalNode serviceNode = LocalNode.newNode();
+		UserAgent eve = MockAgentFactory.getEve();
+
+		eve.unlockPrivateKey("evespass");
+		serviceNode.storeAgent(eve);
+		serviceNode.launch();
+		LocalNode callerNode = LocalNode.launchNode();
+
+		ServiceNameVersion service = ServiceNameVersion.fromString("i5.las2peer.api.TestService@1.0");
+		ServiceAgent testServiceAgent = ServiceAgent.createServiceAgent(service, "a pass");
+		testServiceAgent.unlockPrivateKey("a pass");
+		serviceNode.registerReceiver(testServiceAgent);
+
+		// wait for the announcement to arrive
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!callerNode.getNodeServiceCache().hasGlobalInstances(service, true)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertTrue(callerNode.getNodeServiceCache().hasGlobalInstances(service, true));
+		assertEquals(1, callerNode.getMetrics().getCounters().get("services.announcements.received").longValue());
+
+		// the first invocation uses the announced instance without a discovery
+		long discoveries = callerNode.getMetrics().getCounters().get("services.discovery.sent");
+		Object result = callerNode.invoke(eve, "i5.las2peer.api.TestService@1.0", "inc",
+				new Serializable[] { new Integer(12) });
+		assertEquals(14, result);
+		assertEquals(discoveries, callerNode.getMetrics().getCounters().get("services.discovery.sent").longValue());
+
+		// forget the announcement, the first invocation has to discover the service
+		callerNode.getNodeServiceCache().clear();
+		result = callerNode.invoke(eve, "i5.las2peer.api.TestService@1.0", "inc",
+				new Serializable[] { new Integer(12) });
+		assertEquals(14, result);
+		assertEquals(discoveries + 1,
+				callerNode.getMetrics().getCounters().get("services.discovery.sent").longValue());
+		// the answer reports the load of the service node
+		assertNotNull(callerNode.getNodeServiceCache()
+				.getInvocationStatistics(testServiceAgent.getId(), serviceNode.getNodeId()).getLoad());
+	}
+
 	@Test
 	public void testSubinvocation() throws MalformedXMLException, IOException, L2pSecurityException, CryptoException,
 			InterruptedException, AgentAlreadyRegisteredException, AgentException, TimeoutException, NodeException {
@@ -3,6 +3,7 @@ package i5.las2peer.p2p;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -10,7 +11,10 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -20,6 +24,7 @@ import i5.las2peer.communication.Message;
 import i5.las2peer.communication.PingPongContent;
 import i5.las2peer.p2p.Node.SendMode;
 import i5.las2peer.persistency.EncodingFailedException;
+import i5.las2peer.persistency.EnvelopeFetchResult;
 import i5.las2peer.persistency.MalformedXMLException;
 import i5.las2peer.security.AgentException;
 import i5.las2peer.security.L2pSecurityException;
@@ -491,6 +496,27 @@ public class LocalNodeTest {
 		assertEquals(12, result);
 	}
 
+	@Test
+	public void testNodeInformationCaching() throws L2pSecurityException, CryptoException, AgentException {
+		LocalNode testee = LocalNode.launchNode();
+
+		NodeInformation info = testee.getNodeInformation();
+		info.verifySignature();
+		assertSame(info, testee.getNodeInformation());
+
+		ServiceAgent testService = ServiceAgent.createServiceAgent(
+				ServiceNameVersion.fromString("i5.las2peer.api.TestService@1.0"), "a passphrase");
+		testService.unlockPrivateKey("a passphrase");
+		testee.storeAgent(testService);
+		testee.registerReceiver(testService);
+
+		NodeInformation changed = testee.getNodeInformation();
+		assertNotSame(info, changed);
+		changed.verifySignature();
+		assertEquals(1, changed.getHostedServices().length);
+		assertSame(changed, testee.getNodeInformation());
+	}
+
 	@Test
 	public void testUserRegistry() throws CryptoException, L2pSecurityException, AgentException {
 		UserAgent a = UserAgent.createUserAgent("a");
@@ -534,4 +560,22 @@ public class LocalNodeTest {
 		testee2.getUserManager().getAgentIdByLogin("login_2");
 	}
 
+	@Test
+	public void testFetchEnvelopes() throws Exception {
+		LocalNode testee = LocalNode.launchNode();
+		eve.unlockPrivateKey("evespass");
+		for (int i = 0; i < 5; i++) {
+			testee.storeEnvelope(testee.createUnencryptedEnvelope("batch-" + i, "content " + i), eve);
+		}
+
+		Map<String, EnvelopeFetchResult> results = testee
+				.fetchEnvelopes(Arrays.asList("batch-0", "batch-4", "missing", "batch-2"));
+
+		assertEquals(Arrays.asList("batch-0", "batch-4", "missing", "batch-2"), new ArrayList<>(results.keySet()));
+		assertEquals("content 4", results.get("batch-4").getEnvelope().getContent());
+		assertEquals("content 2", results.get("batch-2").getEnvelope().getContent());
+		assertFalse(results.get("missing").isSuccess());
+		assertTrue(results.get("missing").getException() instanceof ArtifactNotFoundException);
+	}
+
 }
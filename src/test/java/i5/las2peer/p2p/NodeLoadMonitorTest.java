@@ -0,0 +1,76 @@
+package i5.las2peer.p2p;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import i5.las2peer.communication.LoadDescriptor;
+import i5.las2peer.logging.metrics.MetricsRegistry;
+
+public class NodeLoadMonitorTest {
+
+	@Test
+	public void testSampling() throws Exception {
+		AtomicInteger executing = new AtomicInteger(3);
+		MetricsRegistry metrics = new MetricsRegistry();
+		NodeLoadMonitor testee = new NodeLoadMonitor(executing::get, () -> 2, metrics);
+
+		testee.sample();
+		assertTrue(testee.getCpuLoad() >= 0 && testee.getCpuLoad() <= 1);
+		assertTrue(testee.getHeapUsage() > 0 && testee.getHeapUsage() <= 1);
+		assertEquals(3, testee.getExecuting());
+		assertTrue(metrics.getGauges().containsKey("load.heap.permille"));
+
+		// executing and waiting invocations are reported without waiting for the next sample
+		executing.set(5);
+		LoadDescriptor load = testee.getLoadDescriptor();
+		assertEquals(5, load.getExecuting());
+		assertEquals(2, load.getQueued());
+
+		testee.configure(1, -1, 2);
+		assertTrue(testee.isBusy());
+		testee.configure(1, 2, 2);
+		assertFalse(testee.isBusy());
+		testee.configure(1, 2, 0);
+		assertTrue(testee.isBusy());
+	}
+
+	@Test
+	public void testBackgroundSampling() throws Exception {
+		AtomicInteger samples = new AtomicInteger();
+		NodeLoadMonitor testee = new NodeLoadMonitor(samples::incrementAndGet, () -> 0, null);
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			testee.start(executor, 10);
+			Thread.sleep(200);
+			testee.stop();
+			int sampled = samples.get();
+			assertTrue(sampled > 1);
+			Thread.sleep(100);
+			assertEquals(sampled, samples.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testReadWithoutSampling() {
+		AtomicInteger samples = new AtomicInteger();
+		NodeLoadMonitor testee = new NodeLoadMonitor(samples::incrementAndGet, () -> 0, null);
+		testee.sample();
+
+		// reading the load uses the last sample instead of asking the operating system again
+		for (int i = 0; i < 10000; i++) {
+			testee.isBusy();
+			testee.getCpuLoad();
+		}
+		assertEquals(1, samples.get());
+	}
+
+}
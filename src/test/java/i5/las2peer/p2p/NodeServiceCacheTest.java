@@ -6,9 +6,23 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import i5.las2peer.communication.LoadDescriptor;
 import i5.las2peer.p2p.NodeServiceCache.ServiceInstance;
 import i5.las2peer.persistency.MalformedXMLException;
 import i5.las2peer.security.AgentException;
@@ -20,6 +34,12 @@ import i5.las2peer.tools.CryptoException;
 
 public class NodeServiceCacheTest {
 
+	@Before
+	public void reset() {
+		// service agents of other tests would answer discoveries, too
+		LocalNode.reset();
+	}
+
 	@Test
 	public void testLocalServices() throws CryptoException, L2pSecurityException, AgentNotKnownException {
 		Node node = LocalNode.launchNode();
@@ -110,6 +130,8 @@ public class NodeServiceCacheTest {
 		LocalNode node1 = LocalNode.launchNode();
 		LocalNode node2 = LocalNode.launchNode();
 		LocalNode node3 = LocalNode.launchNode();
+		// the invoking node must not consider itself busy while the agents below are generated
+		invokingNode.getLoadMonitor().configure(Node.DEFAULT_LOAD_SMOOTHING, 1, 1);
 
 		// generate services
 		ServiceAgent service2 = ServiceAgent
@@ -202,4 +224,440 @@ public class NodeServiceCacheTest {
 		assertEquals(instance.getNodeId(), node1.getNodeId());
 	}
 
+	@Test
+	public void testSlowInstanceAvoided() throws Exception {
+		Node node = LocalNode.launchNode();
+		NodeServiceCache cache = new NodeServiceCache(node, 60, 0);
+
+		// simulated network: three instances of the same service, one of them on a slow node
+		ServiceNameVersion service = ServiceNameVersion.fromString("test.service@1.0");
+		long[] rtts = new long[] { 10, 12, 200 };
+		for (long i = 0; i < rtts.length; i++) {
+			cache.addGlobalServiceInstance(cache.new ServiceInstance(service, 100 + i, i));
+		}
+
+		final int rounds = 1000;
+		long[] chosen = new long[rounds];
+		for (int i = 0; i < rounds; i++) {
+			ServiceInstance instance = cache.getServiceAgentInstance(service, true, false, null);
+			long rtt = rtts[(int) (long) (Long) instance.getNodeId()];
+			cache.getInvocationStatistics(instance.getServiceAgentId(), instance.getNodeId()).record(rtt);
+			chosen[i] = rtt;
+		}
+
+		// a random choice would hit the slow instance in a third of the rounds, so its p99 would be 200ms
+		long p99 = percentile(chosen, 99);
+		assertEquals(12, p99);
+
+		// the slow instance has only been probed while its round-trip time was unknown
+		assertTrue(cache.getInvocationStatistics(102, 2L).getSamples() < 10);
+	}
+
+	@Test
+	public void testCircuitBreaker() throws Exception {
+		Node node = LocalNode.launchNode();
+		NodeServiceCache cache = new NodeServiceCache(node, 3600, 0);
+		cache.setCircuitBreaker(2, 200);
+
+		ServiceNameVersion service = ServiceNameVersion.fromString("test.service@1.0");
+		cache.addGlobalServiceInstance(cache.new ServiceInstance(service, 100, 1L));
+		cache.addGlobalServiceInstance(cache.new ServiceInstance(service, 101, 2L));
+
+		// instance 2 times out twice
+		CircuitBreaker breaker = cache.getInvocationStatistics(101, 2L).getCircuitBreaker();
+		breaker.failure();
+		breaker.failure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(Long.valueOf(1), node.getMetrics().getCounters().get("services.breaker.opened"));
+		assertEquals(Long.valueOf(1), node.getMetrics().getGauges().get("services.breaker.open"));
+
+		for (int i = 0; i < 50; i++) {
+			assertEquals(1L, cache.getServiceAgentInstance(service, true, false, null).getNodeId());
+		}
+
+		// after the cooldown, the instance gets a single trial
+		Thread.sleep(250);
+		cache.getInvocationStatistics(100, 1L).record(1000);
+		assertEquals(2L, cache.getServiceAgentInstance(service, true, false, null).getNodeId());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertEquals(1L, cache.getServiceAgentInstance(service, true, false, null).getNodeId());
+
+		breaker.success();
+		assertEquals(Long.valueOf(1), node.getMetrics().getCounters().get("services.breaker.closed"));
+		assertEquals(Long.valueOf(0), node.getMetrics().getGauges().get("services.breaker.open"));
+	}
+
+	@Test
+	public void testFailedInvocations() throws Exception {
+		Node node = LocalNode.launchNode();
+		NodeServiceCache cache = new NodeServiceCache(node, 3600, 0);
+		NodeServiceCache.InvocationStatistics statistics = cache.getInvocationStatistics(100, 1L);
+
+		statistics.started();
+		statistics.completed(20);
+
+		// failed requests are left to the circuit breaker, a quick failure is not recorded as a fast answer and a
+		// timeout does not dominate the average
+		statistics.started();
+		statistics.aborted();
+		assertEquals(20, statistics.getRttMs(), 0);
+		assertEquals(1, statistics.getSamples());
+		assertEquals(0, statistics.getOutstanding());
+	}
+
+	@Test
+	public void testCircuitBreakerFallback() throws Exception {
+		LocalNode node = LocalNode.launchNode();
+		UserAgent userAgent = MockAgentFactory.getAdam();
+		userAgent.unlockPrivateKey("adamspass");
+		node.registerReceiver(userAgent);
+		NodeServiceCache cache = new NodeServiceCache(node, 3600, 0);
+		cache.setCircuitBreaker(1, 60000);
+
+		ServiceNameVersion older = ServiceNameVersion.fromString("test.service@1.0");
+		ServiceNameVersion newer = ServiceNameVersion.fromString("test.service@1.1");
+		ServiceNameVersion any = ServiceNameVersion.fromString("test.service@1");
+		cache.addGlobalServiceInstance(cache.new ServiceInstance(older, 100, 1L));
+		cache.addGlobalServiceInstance(cache.new ServiceInstance(newer, 101, 2L));
+		assertEquals(2L, cache.getServiceAgentInstance(any, false, false, null).getNodeId());
+
+		// all instances of the newest version are open, the older version is used
+		cache.getInvocationStatistics(101, 2L).getCircuitBreaker().failure();
+		assertEquals(1L, cache.getServiceAgentInstance(any, false, false, null).getNodeId());
+
+		// all known instances are open, other instances are searched once, the failed search is cached
+		cache.getInvocationStatistics(100, 1L).getCircuitBreaker().failure();
+		for (int i = 0; i < 2; i++) {
+			for (ServiceNameVersion service : Arrays.asList(any, older)) {
+				try {
+					cache.getServiceAgentInstance(service, service == older, false, userAgent);
+					fail("AgentNotKnownException expected");
+				} catch (AgentNotKnownException e) {
+					// expected
+				}
+			}
+		}
+		assertEquals(Long.valueOf(2), node.getMetrics().getCounters().get("services.discovery.sent"));
+		assertEquals(Long.valueOf(2), node.getMetrics().getGauges().get("services.breaker.open"));
+	}
+
+	@Test
+	public void testNegativeCachingAndCoalescing() throws Exception {
+		LocalNode node = LocalNode.launchNode();
+		UserAgent userAgent = MockAgentFactory.getAdam();
+		userAgent.unlockPrivateKey("adamspass");
+		node.registerReceiver(userAgent);
+
+		NodeServiceCache cache = node.getNodeServiceCache();
+		cache.setNegativeLifeTimeSeconds(1);
+		ServiceNameVersion service = ServiceNameVersion.fromString("i5.las2peer.api.NotHosted@1.0");
+
+		// concurrent requests for a service nobody hosts share one discovery
+		final int callers = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(callers);
+		List<Future<?>> results = new ArrayList<>();
+		for (int i = 0; i < callers; i++) {
+			results.add(executor.submit(() -> cache.getServiceAgentInstance(service, true, false, userAgent)));
+		}
+		for (Future<?> result : results) {
+			try {
+				result.get();
+				fail("AgentNotKnownException expected");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof AgentNotKnownException);
+			}
+		}
+		executor.shutdown();
+		assertEquals(Long.valueOf(1), node.getMetrics().getCounters().get("services.discovery.sent"));
+		assertEquals(Long.valueOf(callers - 1), node.getMetrics().getCounters().get("services.discovery.suppressed"));
+
+		// the negative result is cached
+		long start = System.currentTimeMillis();
+		try {
+			cache.getServiceAgentInstance(service, true, false, userAgent);
+			fail("AgentNotKnownException expected");
+		} catch (AgentNotKnownException e) {
+			// expected
+		}
+		assertTrue(System.currentTimeMillis() - start < 500);
+		assertEquals(Long.valueOf(1), node.getMetrics().getCounters().get("services.discovery.sent"));
+
+		// and expires after its lifetime
+		Thread.sleep(1100);
+		try {
+			cache.getServiceAgentInstance(service, true, false, userAgent);
+			fail("AgentNotKnownException expected");
+		} catch (AgentNotKnownException e) {
+			// expected
+		}
+		assertEquals(Long.valueOf(2), node.getMetrics().getCounters().get("services.discovery.sent"));
+	}
+
+	@Test
+	public void testRefreshAhead() throws Exception {
+		LocalNode serviceNode = LocalNode.launchNode();
+		LocalNode callerNode = LocalNode.launchNode();
+		UserAgent userAgent = MockAgentFactory.getAdam();
+		userAgent.unlockPrivateKey("adamspass");
+		callerNode.registerReceiver(userAgent);
+
+		ServiceNameVersion service = ServiceNameVersion.fromString("i5.las2peer.api.TestService@1.0");
+		ServiceAgent serviceAgent = ServiceAgent.createServiceAgent(service, "a pass");
+		serviceAgent.unlockPrivateKey("a pass");
+		serviceNode.registerReceiver(serviceAgent);
+
+		// entries live 2 seconds and are refreshed in the second half of their lifetime
+		NodeServiceCache cache = callerNode.getNodeServiceCache();
+		cache.setLifeTimeSeconds(2);
+		cache.setWaitForResults(1);
+		cache.setRefreshAhead(0.5, 0, 3);
+		cache.clear();
+
+		for (int i = 0; i < 3; i++) {
+			cache.getServiceAgentInstance(service, true, false, userAgent);
+		}
+		assertEquals(Long.valueOf(1), callerNode.getMetrics().getCounters().get("services.discovery.sent"));
+
+		Thread.sleep(1100);
+		long start = System.currentTimeMillis();
+		cache.getServiceAgentInstance(service, true, false, userAgent);
+		assertTrue(System.currentTimeMillis() - start < 500);
+		assertEquals(Long.valueOf(1), callerNode.getMetrics().getCounters().get("services.discovery.refreshed"));
+
+		// the refresh runs in the background
+		while (callerNode.getMetrics().getCounters().get("services.discovery.sent") < 2 && System.currentTimeMillis() - start < 5000) {
+			Thread.sleep(10);
+		}
+		assertEquals(Long.valueOf(2), callerNode.getMetrics().getCounters().get("services.discovery.sent"));
+
+		// the original entry would be outdated by now, the refreshed one is used without a new discovery
+		Thread.sleep(1100);
+		ServiceInstance instance = cache.getServiceAgentInstance(service, true, false, userAgent);
+		assertEquals(serviceAgent.getId(), instance.getServiceAgentId());
+		assertEquals(Long.valueOf(2), callerNode.getMetrics().getCounters().get("services.discovery.sent"));
+	}
+
+	@Test
+	public void testDiscoveryCountsInstances() throws Exception {
+		LocalNode.setMinMessageWait(100);
+		LocalNode.setMaxMessageWait(100);
+		LocalNode serviceNode = LocalNode.launchNode();
+		LocalNode callerNode = LocalNode.launchNode();
+		UserAgent userAgent = MockAgentFactory.getAdam();
+		userAgent.unlockPrivateKey("adamspass");
+		callerNode.registerReceiver(userAgent);
+
+		// one node answers once for all three instances
+		ServiceNameVersion service = ServiceNameVersion.fromString("i5.las2peer.api.TestService@1.0");
+		ServiceAgent serviceAgent = ServiceAgent.createServiceAgent(service, "a pass");
+		serviceAgent.unlockPrivateKey("a pass");
+		serviceNode.registerReceiver(serviceAgent);
+		for (int i = 1; i < 3; i++) {
+			ServiceAgent other = ServiceAgent.createServiceAgent(ServiceNameVersion.fromString(
+					"i5.las2peer.api.TestService@1." + i), "a pass");
+			other.unlockPrivateKey("a pass");
+			serviceNode.registerReceiver(other);
+		}
+
+		NodeServiceCache cache = callerNode.getNodeServiceCache();
+		cache.setWaitForResults(3);
+		cache.clear();
+		long start = System.currentTimeMillis();
+		cache.getServiceAgentInstance(ServiceNameVersion.fromString("i5.las2peer.api.TestService@1"), false, false,
+				userAgent);
+		// the discovery does not wait for answers of further nodes until it times out
+		assertTrue(System.currentTimeMillis() - start < 1000);
+		ServiceInstance instance = cache.getServiceAgentInstance(service, true, false, userAgent);
+		assertEquals(serviceAgent.getId(), instance.getServiceAgentId());
+		assertEquals(Long.valueOf(1), callerNode.getMetrics().getCounters().get("services.discovery.sent"));
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception {
+		Node node = LocalNode.launchNode();
+		NodeServiceCache cache = new NodeServiceCache(node, 3600, 0);
+
+		ServiceNameVersion localService = ServiceNameVersion.fromString("test.local@1.0");
+		cache.registerLocalService(ServiceAgent.createServiceAgent(localService, "test"));
+		ServiceNameVersion globalService = ServiceNameVersion.fromString("test.global@2.1");
+		for (long i = 0; i < 5; i++) {
+			cache.addGlobalServiceInstance(cache.new ServiceInstance(globalService, 100 + i, i));
+			cache.addGlobalServiceInstance(cache.new ServiceInstance(ServiceNameVersion.fromString("test.global@1."
+					+ i), 200 + i, i));
+		}
+		ServiceNameVersion fitting = ServiceNameVersion.fromString("test.global@2");
+
+		final int threads = 32;
+		final int lookups = 5000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean done = new AtomicBoolean();
+
+		// a writer keeps replacing instances while the readers look up services
+		Future<?> writer = executor.submit(() -> {
+			start.await();
+			long id = 1000;
+			while (!done.get()) {
+				ServiceInstance instance = cache.new ServiceInstance(globalService, id++, 42L);
+				cache.addGlobalServiceInstance(instance);
+				cache.removeGlobalServiceInstance(instance);
+			}
+			return null;
+		});
+		List<Future<?>> readers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			readers.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < lookups; i++) {
+					assertTrue(cache.getServiceAgentInstance(localService, true, true, null).local());
+					ServiceInstance instance = cache.getServiceAgentInstance(fitting, false, false, null);
+					assertEquals(globalService, instance.getService());
+				}
+				return null;
+			}));
+		}
+
+		start.countDown();
+		for (Future<?> reader : readers) {
+			reader.get();
+		}
+		done.set(true);
+		writer.get();
+		executor.shutdown();
+	}
+
+	/**
+	 * measures lookups per second with 32 threads looking up services while instances are replaced, run manually
+	 */
+	@Ignore("benchmark")
+	@Test
+	public void benchmarkContendedLookups() throws Exception {
+		Node node = LocalNode.launchNode();
+		NodeServiceCache cache = new NodeServiceCache(node, 3600, 0);
+		ServiceNameVersion globalService = ServiceNameVersion.fromString("test.global@2.1");
+		for (long i = 0; i < 5; i++) {
+			cache.addGlobalServiceInstance(cache.new ServiceInstance(globalService, 100 + i, i));
+		}
+
+		long single = lookupsPerSecond(cache, globalService, 1, 2000);
+		long contended = lookupsPerSecond(cache, globalService, 32, 2000);
+		// lookups do not serialize on a lock, so more threads do not get fewer lookups done
+		assertTrue("1 thread " + single + " lookups/s, 32 threads " + contended + " lookups/s", contended >= single);
+	}
+
+	private static long lookupsPerSecond(NodeServiceCache cache, ServiceNameVersion service, int threads,
+			long durationMs) throws Exception {
+		ServiceNameVersion fitting = ServiceNameVersion.fromString(service.getName() + "@"
+				+ service.getVersion().getMajor());
+		ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicLong lookups = new AtomicLong();
+
+		Future<?> writer = executor.submit(() -> {
+			start.await();
+			long id = 1000;
+			while (!done.get()) {
+				ServiceInstance instance = cache.new ServiceInstance(service, id++, 42L);
+				cache.addGlobalServiceInstance(instance);
+				cache.removeGlobalServiceInstance(instance);
+			}
+			return null;
+		});
+		List<Future<?>> readers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			readers.add(executor.submit(() -> {
+				start.await();
+				long count = 0;
+				while (!done.get()) {
+					cache.getServiceAgentInstance(fitting, false, false, null);
+					count++;
+				}
+				lookups.addAndGet(count);
+				return null;
+			}));
+		}
+
+		start.countDown();
+		Thread.sleep(durationMs);
+		done.set(true);
+		for (Future<?> reader : readers) {
+			reader.get();
+		}
+		writer.get();
+		executor.shutdown();
+		return lookups.get() * 1000 / durationMs;
+	}
+
+	@Test
+	public void testOverloadedNodeAvoided() throws Exception {
+		Node node = LocalNode.launchNode();
+
+		// simulated network: three nodes, one of them needs three times as long per request
+		long[] serviceTimes = new long[] { 5, 5, 15 };
+		final int requests = 3000;
+		final long interval = 4;
+
+		int[] balanced = simulateLoad(new NodeServiceCache(node, 3600, 0), serviceTimes, requests, interval, true);
+		int[] roundRobin = simulateLoad(new NodeServiceCache(node, 3600, 0), serviceTimes, requests, interval, false);
+
+		System.out.println("requests per node with load reports: " + Arrays.toString(Arrays.copyOf(balanced, 3))
+				+ ", max queue " + balanced[3] + "; round robin: " + Arrays.toString(Arrays.copyOf(roundRobin, 3))
+				+ ", max queue " + roundRobin[3]);
+		// round robin overloads the slow node, its queue keeps growing
+		assertTrue(balanced[3] < roundRobin[3]);
+		assertTrue(balanced[2] < requests / 4);
+	}
+
+	/**
+	 * simulates requests to three instances, each node processes one request at a time
+	 * 
+	 * @return number of requests per node and the maximum queue length
+	 */
+	private static int[] simulateLoad(NodeServiceCache cache, long[] serviceTimes, int requests, long interval,
+			boolean useCache) throws Exception {
+		ServiceNameVersion service = ServiceNameVersion.fromString("test.service@1.0");
+		for (long i = 0; i < serviceTimes.length; i++) {
+			cache.addGlobalServiceInstance(cache.new ServiceInstance(service, 100 + i, i));
+		}
+
+		int[] result = new int[serviceTimes.length + 1];
+		long[] busyUntil = new long[serviceTimes.length];
+		// answers in flight: arrival time, node, round-trip time
+		PriorityQueue<long[]> answers = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+		for (int r = 0; r < requests; r++) {
+			long now = r * interval;
+			while (!answers.isEmpty() && answers.peek()[0] <= now) {
+				long[] answer = answers.poll();
+				int n = (int) answer[1];
+				int queued = (int) Math.max(0, (busyUntil[n] - answer[0]) / serviceTimes[n]);
+				NodeServiceCache.InvocationStatistics statistics = cache.getInvocationStatistics(100 + n, (long) n);
+				statistics.updateLoad(new LoadDescriptor(0, 1, queued));
+				statistics.completed(answer[2]);
+			}
+
+			int n;
+			if (useCache) {
+				ServiceInstance instance = cache.getServiceAgentInstance(service, true, false, null);
+				n = (int) (long) (Long) instance.getNodeId();
+				cache.getInvocationStatistics(instance.getServiceAgentId(), instance.getNodeId()).started();
+			} else {
+				n = r % serviceTimes.length;
+			}
+
+			result[n]++;
+			result[serviceTimes.length] = (int) Math.max(result[serviceTimes.length], (busyUntil[n] - now)
+					/ serviceTimes[n]);
+			busyUntil[n] = Math.max(now, busyUntil[n]) + serviceTimes[n];
+			answers.add(new long[] { busyUntil[n], n, busyUntil[n] - now });
+		}
+		return result;
+	}
+
+	private static long percentile(long[] values, int percentile) {
+		long[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[(int) Math.ceil(percentile / 100.0 * sorted.length) - 1];
+	}
+
 }
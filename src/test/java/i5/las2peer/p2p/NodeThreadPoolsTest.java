@@ -0,0 +1,234 @@
+package i5.las2peer.p2p;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import i5.las2peer.execution.L2pThread;
+import i5.las2peer.logging.metrics.MetricsRegistry;
+import i5.las2peer.p2p.NodeThreadPools.Concern;
+
+public class NodeThreadPoolsTest {
+
+	private MetricsRegistry metrics;
+	private NodeThreadPools testee;
+
+	@Before
+	public void setup() {
+		metrics = new MetricsRegistry();
+		testee = new NodeThreadPools("test", metrics);
+	}
+
+	@After
+	public void tearDown() {
+		testee.shutdownNow();
+	}
+
+	@Test
+	public void testThreadNames() throws Exception {
+		AtomicReference<String> name = new AtomicReference<>();
+		CountDownLatch done = new CountDownLatch(1);
+		testee.execute(Concern.STORAGE, () -> {
+			name.set(Thread.currentThread().getName());
+			done.countDown();
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals("test-storage-1", name.get());
+	}
+
+	@Test
+	public void testSizes() {
+		testee.setSizes("delivery=2:5, storage = 3");
+		testee.get(Concern.DELIVERY);
+		testee.get(Concern.STORAGE);
+		assertEquals(Long.valueOf(0), metrics.getGauges().get("pool.delivery.queue"));
+
+		try {
+			testee.setSize(Concern.DELIVERY, 4, 4);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			testee.setSizes("unknown=1");
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			testee.setSizes("crypto=0");
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			testee.setSizes("housekeeping=2:10");
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInvalidSizesNotApplied() throws Exception {
+		try {
+			testee.setSizes("discovery=1:1, crypto=0");
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		// the valid entry before the invalid one has not been applied either
+		CountDownLatch block = new CountDownLatch(1);
+		for (int i = 0; i < 3; i++) {
+			testee.execute(Concern.DISCOVERY, () -> {
+				try {
+					block.await();
+				} catch (InterruptedException e) {
+					// shut down
+				}
+			});
+		}
+		assertEquals(Long.valueOf(0), metrics.getCounters().get("pool.discovery.rejected"));
+		block.countDown();
+	}
+
+	@Test
+	public void testDeliveryRejection() throws Exception {
+		testee.setSize(Concern.DELIVERY, 1, 1);
+		CountDownLatch block = new CountDownLatch(1);
+		Runnable blocking = () -> {
+			try {
+				block.await();
+			} catch (InterruptedException e) {
+				// shut down
+			}
+		};
+
+		testee.execute(Concern.DELIVERY, blocking);
+		testee.execute(Concern.DELIVERY, blocking);
+		try {
+			testee.execute(Concern.DELIVERY, blocking);
+			fail("RejectedExecutionException expected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertEquals(Long.valueOf(1), metrics.getCounters().get("pool.delivery.rejected"));
+		block.countDown();
+	}
+
+	@Test
+	public void testNotRunInCaller() throws Exception {
+		testee.setSize(Concern.CRYPTO, 1, 1);
+		CountDownLatch block = new CountDownLatch(1);
+		Runnable blocking = () -> {
+			try {
+				block.await();
+			} catch (InterruptedException e) {
+				// shut down
+			}
+		};
+
+		testee.execute(Concern.CRYPTO, blocking);
+		testee.execute(Concern.CRYPTO, blocking);
+		AtomicReference<Thread> runner = new AtomicReference<>();
+		try {
+			testee.execute(Concern.CRYPTO, () -> runner.set(Thread.currentThread()));
+			fail("RejectedExecutionException expected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		assertNull(runner.get());
+		assertEquals(Long.valueOf(1), metrics.getCounters().get("pool.crypto.rejected"));
+		block.countDown();
+	}
+
+	@Test
+	public void testHousekeeping() throws Exception {
+		CountDownLatch done = new CountDownLatch(3);
+		testee.getScheduled().scheduleAtFixedRate(done::countDown, 0, 10, TimeUnit.MILLISECONDS);
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testResponsesNotRejected() throws Exception {
+		testee.setSize(Concern.RESPONSE, 1, 0);
+		CountDownLatch block = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(100);
+		testee.execute(Concern.RESPONSE, () -> {
+			try {
+				block.await();
+			} catch (InterruptedException e) {
+				// shut down
+			}
+		});
+		for (int i = 0; i < 100; i++) {
+			testee.execute(Concern.RESPONSE, done::countDown);
+		}
+		block.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(Long.valueOf(0), metrics.getCounters().get("pool.response.rejected"));
+	}
+
+	@Test
+	public void testStartExecution() throws Exception {
+		testee.setSize(Concern.EXECUTION, 1, 1);
+		CountDownLatch block = new CountDownLatch(1);
+		BlockingThread first = new BlockingThread(block);
+		BlockingThread second = new BlockingThread(block);
+
+		// neither the running nor the waiting execution blocks the caller
+		testee.startExecution(first);
+		testee.startExecution(second);
+		assertTrue(first.isAlive());
+		assertFalse(second.isAlive());
+		assertEquals(1, testee.getWaitingExecutions());
+		try {
+			testee.startExecution(new BlockingThread(block));
+			fail("RejectedExecutionException expected");
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+
+		block.countDown();
+		// the waiting execution is started by the one finishing before it
+		second.getCompletion().get(5, TimeUnit.SECONDS);
+		assertEquals(0, testee.getWaitingExecutions());
+	}
+
+	/**
+	 * an execution waiting for a latch instead of invoking a service
+	 */
+	private static class BlockingThread extends L2pThread {
+
+		private final CountDownLatch block;
+
+		private BlockingThread(CountDownLatch block) {
+			super(null, null, null);
+			this.block = block;
+		}
+
+		@Override
+		public void run() {
+			try {
+				block.await();
+			} catch (InterruptedException e) {
+				// shut down
+			} finally {
+				getCompletion().complete(this);
+			}
+		}
+	}
+
+}
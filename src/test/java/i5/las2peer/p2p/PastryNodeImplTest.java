@@ -1,9 +1,23 @@
 package i5.las2peer.p2p;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import i5.las2peer.communication.Message;
+import i5.las2peer.logging.metrics.Counter;
+import i5.las2peer.logging.metrics.LatencyHistogram;
+import i5.las2peer.p2p.Node.SendMode;
+import i5.las2peer.p2p.pastry.NodeApplication;
+import i5.las2peer.persistency.SharedStorage.STORAGE_MODE;
+import i5.las2peer.security.Mediator;
+import i5.las2peer.security.UserAgent;
 import i5.las2peer.testing.TestSuite;
+import rice.p2p.commonapi.NodeHandle;
 
 public class PastryNodeImplTest {
 
@@ -20,4 +34,239 @@ public class PastryNodeImplTest {
 		}
 	}
 
+	@Test
+	public void testBulkRegistration() {
+		final int numOfAgents = 200;
+		try {
+			ArrayList<PastryNodeImpl> nodes = TestSuite.launchNetwork(2);
+			ArrayList<UserAgent> single = new ArrayList<>();
+			ArrayList<UserAgent> bulk = new ArrayList<>();
+			for (int i = 0; i < numOfAgents; i++) {
+				UserAgent a = UserAgent.createUserAgent("pass");
+				a.unlockPrivateKey("pass");
+				single.add(a);
+				UserAgent b = UserAgent.createUserAgent("pass");
+				b.unlockPrivateKey("pass");
+				bulk.add(b);
+			}
+
+			// compare confirmed subscriptions in both cases
+			LatencyHistogram confirmed = nodes.get(0).getMetrics().histogram("pastry.scribe.subscribe.latency");
+			long confirmedBefore = confirmed.getCount();
+			long start = System.currentTimeMillis();
+			for (UserAgent agent : single) {
+				nodes.get(0).registerReceiver(agent);
+			}
+			while (confirmed.getCount() < confirmedBefore + numOfAgents) {
+				Assert.assertTrue("single subscriptions not confirmed",
+						System.currentTimeMillis() - start < NodeApplication.SUBSCRIPTION_TIMEOUT);
+				Thread.sleep(10);
+			}
+			long singleTime = System.currentTimeMillis() - start;
+
+			start = System.currentTimeMillis();
+			nodes.get(1).registerReceivers(bulk);
+			long bulkTime = System.currentTimeMillis() - start;
+
+			System.out.println("registered " + numOfAgents + " agents one by one in " + singleTime
+					+ "ms, in bulk in " + bulkTime + "ms (both confirmed)");
+
+			for (UserAgent agent : bulk) {
+				Assert.assertTrue(nodes.get(1).hasLocalAgent(agent));
+				Assert.assertEquals(1, nodes.get(0).findRegisteredAgent(agent.getId()).length);
+			}
+
+			for (PastryNodeImpl node : nodes) {
+				node.shutDown();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testAnycast() {
+		final int numOfMessages = 20;
+		try {
+			ArrayList<PastryNodeImpl> nodes = TestSuite.launchNetwork(4);
+
+			UserAgent sender = UserAgent.createUserAgent("senderpass");
+			sender.unlockPrivateKey("senderpass");
+			UserAgent recipient = UserAgent.createUserAgent("recipientpass");
+			recipient.unlockPrivateKey("recipientpass");
+			nodes.get(0).storeAgent(sender);
+			nodes.get(0).storeAgent(recipient);
+			nodes.get(0).registerReceiver(new Mediator(nodes.get(0), sender));
+
+			// the same agent is hosted by three nodes
+			ArrayList<Mediator> mediators = new ArrayList<>();
+			for (int i = 1; i < nodes.size(); i++) {
+				Mediator mediator = new Mediator(nodes.get(i), recipient);
+				nodes.get(i).registerReceiver(mediator);
+				mediators.add(mediator);
+			}
+
+			int broadcastCount = sendAndCount(nodes.get(0), sender, recipient, mediators, numOfMessages,
+					SendMode.BROADCAST);
+			int anycastCount = sendAndCount(nodes.get(0), sender, recipient, mediators, numOfMessages,
+					SendMode.ANYCAST);
+
+			System.out.println(numOfMessages + " messages to an agent hosted at " + mediators.size() + " nodes: "
+					+ broadcastCount + " deliveries with broadcast, " + anycastCount + " deliveries with anycast");
+
+			Assert.assertEquals(numOfMessages * mediators.size(), broadcastCount);
+			Assert.assertEquals(numOfMessages, anycastCount);
+
+			for (PastryNodeImpl node : nodes) {
+				node.shutDown();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private int sendAndCount(PastryNodeImpl node, UserAgent sender, UserAgent recipient,
+			ArrayList<Mediator> mediators, int numOfMessages, SendMode mode) throws Exception {
+		for (int i = 0; i < numOfMessages; i++) {
+			node.sendMessage(new Message(sender, recipient, "message " + i), null, mode);
+		}
+
+		// wait until no further messages arrive
+		int count = -1;
+		int newCount = 0;
+		while (count != newCount) {
+			Thread.sleep(2000);
+			count = newCount;
+			newCount = 0;
+			for (Mediator mediator : mediators) {
+				newCount += mediator.getNumberOfWaiting();
+			}
+		}
+
+		for (Mediator mediator : mediators) {
+			while (mediator.hasMessages()) {
+				mediator.getNextMessage();
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testAgentSearch() {
+		try {
+			ArrayList<PastryNodeImpl> nodes = TestSuite.launchNetwork(4);
+			NodeApplication searcher = nodes.get(0).getApplication();
+
+			UserAgent agent = UserAgent.createUserAgent("pass");
+			agent.unlockPrivateKey("pass");
+			registerAndConfirm(nodes.get(1), agent);
+			registerAndConfirm(nodes.get(2), agent);
+
+			// the search completes with the answers, not with the timeout
+			CompletableFuture<Collection<NodeHandle>> search = searcher.searchAgentAsync(agent.getId(), 2);
+			Collection<NodeHandle> found = search.get(NodeApplication.SEARCH_TIMEOUT / 2, TimeUnit.MILLISECONDS);
+			Assert.assertEquals(2, found.size());
+
+			// the first answer is enough, if only one is expected
+			searcher.invalidateAgentSearch(agent.getId());
+			search = searcher.searchAgentAsync(agent.getId(), 1);
+			found = search.get(NodeApplication.SEARCH_TIMEOUT / 2, TimeUnit.MILLISECONDS);
+			Assert.assertFalse(found.isEmpty());
+
+			for (PastryNodeImpl node : nodes) {
+				node.shutDown();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testAgentSearchCache() {
+		try {
+			ArrayList<PastryNodeImpl> nodes = TestSuite.launchNetwork(2);
+			NodeApplication searcher = nodes.get(0).getApplication();
+			Counter searchesSent = nodes.get(0).getMetrics().counter("pastry.send.SearchAgentContent");
+
+			UserAgent agent = UserAgent.createUserAgent("pass");
+			agent.unlockPrivateKey("pass");
+			registerAndConfirm(nodes.get(1), agent);
+
+			Collection<NodeHandle> found = searcher.searchAgentAsync(agent.getId(), 1).get();
+			Assert.assertEquals(1, found.size());
+			Assert.assertEquals(1, searchesSent.get());
+
+			// answered from the cache without publishing a search
+			CompletableFuture<Collection<NodeHandle>> cached = searcher.searchAgentAsync(agent.getId(), 1);
+			Assert.assertTrue(cached.isDone());
+			Assert.assertSame(found, cached.get());
+			Assert.assertEquals(1, searchesSent.get());
+
+			// more answers than cached are searched again
+			searcher.searchAgentAsync(agent.getId(), 2);
+			Assert.assertEquals(2, searchesSent.get());
+
+			// the cached result expires
+			searcher.invalidateAgentSearch(agent.getId());
+			searcher.searchAgentAsync(agent.getId(), 1).get();
+			Assert.assertEquals(3, searchesSent.get());
+			Thread.sleep(NodeApplication.SEARCH_CACHE_LIFETIME + 100);
+			Assert.assertEquals(1, searcher.searchAgentAsync(agent.getId(), 1).get().size());
+			Assert.assertEquals(4, searchesSent.get());
+
+			for (PastryNodeImpl node : nodes) {
+				node.shutDown();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	private void registerAndConfirm(PastryNodeImpl node, UserAgent agent) throws Exception {
+		LatencyHistogram confirmed = node.getMetrics().histogram("pastry.scribe.subscribe.latency");
+		long confirmedBefore = confirmed.getCount();
+		long start = System.currentTimeMillis();
+		node.registerReceiver(agent);
+		while (confirmed.getCount() <= confirmedBefore) {
+			Assert.assertTrue("subscription not confirmed",
+					System.currentTimeMillis() - start < NodeApplication.SUBSCRIPTION_TIMEOUT);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void testSharedEnvironment() {
+		final int numOfNodes = 10;
+		try {
+			for (boolean shared : new boolean[] { false, true }) {
+				int threadsBefore = Thread.activeCount();
+				long start = System.currentTimeMillis();
+				ArrayList<PastryNodeImpl> nodes = TestSuite.launchNetwork(numOfNodes, STORAGE_MODE.MEMORY, false,
+						shared);
+				long bootTime = System.currentTimeMillis() - start;
+				int threads = Thread.activeCount() - threadsBefore;
+
+				System.out.println(numOfNodes + " nodes " + (shared ? "with" : "without")
+						+ " shared environment: boot time " + bootTime + "ms, " + threads + " additional threads");
+
+				// the nodes have to form a working network anyway
+				UserAgent agent = UserAgent.createUserAgent("pass");
+				agent.unlockPrivateKey("pass");
+				nodes.get(numOfNodes - 1).registerReceiver(agent);
+				Assert.assertEquals(1, nodes.get(0).findRegisteredAgent(agent.getId()).length);
+
+				for (PastryNodeImpl node : nodes) {
+					node.shutDown();
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
 }
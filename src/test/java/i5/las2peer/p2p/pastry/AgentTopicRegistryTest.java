@@ -0,0 +1,101 @@
+package i5.las2peer.p2p.pastry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import rice.environment.Environment;
+import rice.p2p.scribe.Topic;
+import rice.pastry.commonapi.PastryIdFactory;
+
+public class AgentTopicRegistryTest {
+
+	private static final int LOOKUPS = 10000;
+
+	private static Environment env;
+	private static PastryIdFactory idFactory;
+
+	@BeforeClass
+	public static void setup() {
+		env = new Environment();
+		idFactory = new PastryIdFactory(env);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		env.destroy();
+	}
+
+	@Test
+	public void testInterning() {
+		AgentTopicRegistry testee = new AgentTopicRegistry(idFactory);
+
+		Topic topic = testee.getTopic(123);
+		assertSame(topic, testee.getTopic(123));
+		assertEquals(new Topic(idFactory, NodeApplication.getAgentTopicId(123)), topic);
+	}
+
+	@Test
+	public void testRegistration() {
+		AgentTopicRegistry testee = new AgentTopicRegistry(idFactory);
+
+		Topic topic = testee.register(123);
+		assertEquals(testee.getTopic(123), topic);
+		assertNull(testee.register(123));
+		assertTrue(testee.isRegistered(123));
+		assertEquals(1, testee.getRegisteredCount());
+
+		assertEquals(Long.valueOf(123), testee.getRegisteredAgent(topic));
+		assertEquals(Long.valueOf(123), testee.getRegisteredAgent(new Topic(idFactory, NodeApplication
+				.getAgentTopicId(123))));
+		assertNull(testee.getRegisteredAgent(testee.getTopic(456)));
+
+		assertEquals(topic, testee.unregister(123));
+		assertNull(testee.unregister(123));
+		assertFalse(testee.isRegistered(123));
+		assertNull(testee.getRegisteredAgent(topic));
+	}
+
+	@Test
+	public void testCacheLimit() {
+		AgentTopicRegistry testee = new AgentTopicRegistry(idFactory, 10);
+		testee.register(1);
+		Topic registered = testee.getTopic(1);
+
+		for (long i = 100; i < 200; i++)
+			testee.getTopic(i);
+
+		// registered topics are not affected by the cache limit
+		assertSame(registered, testee.getTopic(1));
+		assertEquals(Long.valueOf(1), testee.getRegisteredAgent(registered));
+	}
+
+	@Test
+	public void testLookupAtScale() {
+		for (int agents : new int[] { 10, 1000, 10000 }) {
+			AgentTopicRegistry testee = new AgentTopicRegistry(idFactory);
+			Topic[] topics = new Topic[agents];
+			for (int i = 0; i < agents; i++) {
+				topics[i] = testee.register(i);
+			}
+			assertEquals(agents, testee.getRegisteredCount());
+
+			for (int i = 0; i < LOOKUPS; i++) {
+				int agent = i % agents;
+				// received topics are equal, but not the same objects, they are found by the index anyway
+				Topic received = new Topic(idFactory, NodeApplication.getAgentTopicId(agent));
+				assertEquals(Long.valueOf(agent), testee.getRegisteredAgent(received));
+				// the registered topic is reused instead of creating another one
+				assertSame(topics[agent], testee.getTopic(agent));
+			}
+			assertNull(testee.getRegisteredAgent(new Topic(idFactory, NodeApplication.getAgentTopicId(agents))));
+		}
+	}
+
+}
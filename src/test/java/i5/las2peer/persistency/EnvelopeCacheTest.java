@@ -0,0 +1,121 @@
+package i5.las2peer.persistency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.junit.Test;
+
+import i5.las2peer.logging.metrics.MetricsRegistry;
+import i5.las2peer.security.Agent;
+
+public class EnvelopeCacheTest {
+
+	@Test
+	public void testVersions() throws Exception {
+		MetricsRegistry metrics = new MetricsRegistry();
+		EnvelopeCache testee = new EnvelopeCache(1000, 0, metrics);
+		Envelope first = new Envelope("test", "version 1", new ArrayList<Agent>());
+		Envelope second = new Envelope(first, "version 2");
+
+		assertNull(testee.get("test", 1));
+		testee.put(first, 100);
+		testee.put(second, 100);
+		assertSame(first, testee.get("test", 1));
+		assertSame(second, testee.get("test", 2));
+		assertEquals(200, testee.getSize());
+
+		// latest versions are not answered without a maximum age
+		testee.setLatest("test", 2);
+		assertNull(testee.getLatest("test"));
+
+		Map<String, Long> counters = metrics.getCounters();
+		assertEquals(2, (long) counters.get("storage.envelopes.cache.hits"));
+		assertEquals(1, (long) counters.get("storage.envelopes.cache.misses"));
+		assertEquals(200, metrics.getGauges().get("storage.envelopes.cache.bytes").longValue());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		MetricsRegistry metrics = new MetricsRegistry();
+		EnvelopeCache testee = new EnvelopeCache(250, 0, metrics);
+		Envelope first = new Envelope("first", "content", new ArrayList<Agent>());
+		Envelope second = new Envelope("second", "content", new ArrayList<Agent>());
+		Envelope third = new Envelope("third", "content", new ArrayList<Agent>());
+
+		testee.put(first, 100);
+		testee.put(second, 100);
+		// use first, so second is the least recently used one
+		testee.get("first", first.getVersion());
+		testee.put(third, 100);
+		assertNull(testee.get("second", second.getVersion()));
+		assertSame(first, testee.get("first", first.getVersion()));
+		assertSame(third, testee.get("third", third.getVersion()));
+		assertEquals(200, testee.getSize());
+
+		// too big to be cached at all
+		testee.put(second, 251);
+		assertNull(testee.get("second", second.getVersion()));
+
+		testee.configure(0, 0);
+		assertEquals(0, testee.getSize());
+		assertEquals(3, (long) metrics.getCounters().get("storage.envelopes.cache.evictions"));
+	}
+
+	@Test
+	public void testLatest() throws Exception {
+		EnvelopeCache testee = new EnvelopeCache(1000, 100, new MetricsRegistry());
+		Envelope first = new Envelope("test", "version 1", new ArrayList<Agent>());
+		Envelope second = new Envelope(first, "version 2");
+
+		testee.put(first, 10);
+		testee.put(second, 10);
+		assertNull(testee.getLatest("test"));
+		testee.setLatest("test", 2);
+		assertSame(second, testee.getLatest("test"));
+		// an older version does not replace the latest one
+		testee.setLatest("test", 1);
+		assertSame(second, testee.getLatest("test"));
+
+		Thread.sleep(150);
+		assertNull(testee.getLatest("test"));
+		// versions themselves do not expire
+		assertSame(second, testee.get("test", 2));
+	}
+
+	@Test
+	public void testLatestOnlyCached() throws Exception {
+		EnvelopeCache testee = new EnvelopeCache(100, 1000, new MetricsRegistry());
+		Envelope first = new Envelope("test", "version 1", new ArrayList<Agent>());
+		Envelope second = new Envelope(first, "version 2");
+
+		// not cached, so the latest version is not remembered
+		testee.setLatest("test", 1);
+		assertEquals(0, testee.getLatestCount());
+		// too big to be cached
+		testee.put(first, 101);
+		testee.setLatest("test", 1);
+		assertEquals(0, testee.getLatestCount());
+
+		testee.put(first, 10);
+		testee.setLatest("test", 1);
+		assertSame(first, testee.getLatest("test"));
+		// a newer uncached version replaces the known one
+		testee.setLatest("test", 2);
+		assertNull(testee.getLatest("test"));
+		assertEquals(0, testee.getLatestCount());
+
+		// disabled latest versions are forgotten
+		testee.put(second, 10);
+		testee.setLatest("test", 2);
+		assertEquals(1, testee.getLatestCount());
+		testee.configure(100, 0);
+		assertEquals(0, testee.getLatestCount());
+		testee.setLatest("test", 2);
+		assertEquals(0, testee.getLatestCount());
+	}
+
+}
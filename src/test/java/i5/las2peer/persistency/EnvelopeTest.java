@@ -3,9 +3,14 @@ package i5.las2peer.persistency;
 import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -22,6 +27,7 @@ import i5.las2peer.api.exceptions.ArtifactNotFoundException;
 import i5.las2peer.api.exceptions.EnvelopeAlreadyExistsException;
 import i5.las2peer.api.exceptions.StopMergingException;
 import i5.las2peer.api.exceptions.StorageException;
+import i5.las2peer.p2p.Node;
 import i5.las2peer.p2p.PastryNodeImpl;
 import i5.las2peer.security.GroupAgent;
 import i5.las2peer.security.UserAgent;
@@ -120,6 +126,84 @@ public class EnvelopeTest {
 		}
 	}
 
+	@Test
+	public void testStoreAndFetchFutures() {
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			PastryNodeImpl node2 = nodes.get(1);
+			UserAgent smith = MockAgentFactory.getAdam();
+			smith.unlockPrivateKey("adamspass");
+			Envelope envelope1 = node1.createUnencryptedEnvelope("test", "Hello World!");
+			// store and fetch from another node without blocking in between
+			CompletableFuture<Envelope> fetched = node1.storeEnvelopeAsync(envelope1, smith)
+					.thenCompose(stored -> node2.fetchEnvelopeAsync("test"));
+			Assert.assertEquals("Hello World!", fetched.get(10, TimeUnit.SECONDS).getContent());
+			// collisions are reported as exceptional completion
+			Envelope envelope2 = node1.createUnencryptedEnvelope("test", "Hello World 2!");
+			try {
+				node1.storeEnvelopeAsync(envelope2, smith).get(10, TimeUnit.SECONDS);
+				Assert.fail("Exception expected!");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof EnvelopeAlreadyExistsException);
+			}
+			// the blocking variant reports the same exception
+			try {
+				node1.storeEnvelope(envelope2, smith, 10000);
+				Assert.fail("Exception expected!");
+			} catch (EnvelopeAlreadyExistsException e) {
+				// expected
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testChunkReuse() {
+		// chunks are off by default
+		for (PastryNodeImpl node : nodes) {
+			node.getSharedStorage().setChunkSize(65536);
+		}
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			PastryNodeImpl node2 = nodes.get(1);
+			UserAgent smith = MockAgentFactory.getAdam();
+			smith.unlockPrivateKey("adamspass");
+			Map<String, Long> counters = node1.getMetrics().getCounters();
+			long storedBefore = counters.getOrDefault("storage.chunks.stored.bytes", 0L);
+			byte[] content = new byte[2 * 1000 * 1000];
+			new Random(1).nextBytes(content);
+			Envelope envelope = node1.createUnencryptedEnvelope("test", content);
+			node1.storeEnvelope(envelope, smith);
+			counters = node1.getMetrics().getCounters();
+			long initial = counters.get("storage.chunks.stored.bytes") - storedBefore;
+			// append and edit workloads, measured as bytes uploaded compared to the envelope size
+			byte[] appended = Arrays.copyOf(content, content.length + 1000);
+			byte[] edited = appended.clone();
+			for (int i = 0; i < 100; i++) {
+				edited[1000 * 1000 + i] ^= 1;
+			}
+			for (byte[] update : Arrays.asList(appended, edited)) {
+				long stored = counters.get("storage.chunks.stored.bytes");
+				long reused = counters.getOrDefault("storage.chunks.reused.bytes", 0L);
+				envelope = node1.createUnencryptedEnvelope(envelope, update);
+				node1.storeEnvelope(envelope, smith);
+				counters = node1.getMetrics().getCounters();
+				stored = counters.get("storage.chunks.stored.bytes") - stored;
+				reused = counters.get("storage.chunks.reused.bytes") - reused;
+				String measured = "update stored " + stored + " bytes, reused " + reused + " of " + initial
+						+ " bytes initially stored";
+				Assert.assertTrue(measured, stored < initial / 4);
+				Assert.assertTrue(measured, reused > initial / 2);
+				Assert.assertArrayEquals(update, (byte[]) node2.fetchEnvelope("test").getContent());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
 	@Test
 	public void testStoreAndFetchBig1() {
 		testStoreAndFetchBig(100000);
@@ -447,6 +531,96 @@ public class EnvelopeTest {
 		}
 	}
 
+	@Test
+	public void testLatestVersionFromHead() {
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			PastryNodeImpl node2 = nodes.get(1);
+			UserAgent smith = MockAgentFactory.getAdam();
+			smith.unlockPrivateKey("adamspass");
+			Envelope updated = node1.createUnencryptedEnvelope("test", "envelope version number 1");
+			node1.storeEnvelope(updated, smith);
+			for (int c = 2; c <= 20; c++) {
+				updated = node1.createUnencryptedEnvelope(updated, "envelope version number " + c);
+				node1.storeEnvelope(updated, smith);
+			}
+			// node2 never read this envelope, the head points it directly to the latest version
+			Map<String, Long> before = node2.getMetrics().getCounters();
+			Envelope fetched = node2.fetchEnvelope(updated.getIdentifier());
+			Assert.assertEquals(20, fetched.getVersion());
+			Assert.assertEquals("envelope version number 20", fetched.getContent());
+			Map<String, Long> after = node2.getMetrics().getCounters();
+			Assert.assertEquals(before.getOrDefault("storage.heads.used", 0L) + 1,
+					(long) after.get("storage.heads.used"));
+			Assert.assertEquals(before.getOrDefault("storage.heads.stale", 0L),
+					after.getOrDefault("storage.heads.stale", 0L));
+			// without head the version search is used
+			try {
+				node2.fetchEnvelope("missing");
+				Assert.fail("Exception expected!");
+			} catch (ArtifactNotFoundException e) {
+				Assert.assertEquals(after.getOrDefault("storage.heads.missing", 0L) + 1,
+						(long) node2.getMetrics().getCounters().get("storage.heads.missing"));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testDecodedEnvelopeCache() {
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			PastryNodeImpl node2 = nodes.get(1);
+			UserAgent smith = MockAgentFactory.getAdam();
+			smith.unlockPrivateKey("adamspass");
+			Envelope envelope = node1.createUnencryptedEnvelope("test", "Hello World!");
+			node1.storeEnvelope(envelope, smith);
+			// read-through, the second fetch does not decode the envelope again
+			long hits = node2.getMetrics().getCounters().getOrDefault("storage.envelopes.cache.hits", 0L);
+			Assert.assertEquals("Hello World!", node2.fetchEnvelope("test").getContent());
+			Assert.assertEquals("Hello World!", node2.fetchEnvelope("test").getContent());
+			Assert.assertEquals(hits + 1, (long) node2.getMetrics().getCounters().get("storage.envelopes.cache.hits"));
+			// write-through, with a maximum age the storing node answers latest reads locally
+			node1.getEnvelopeCache().configure(Node.DEFAULT_ENVELOPE_CACHE_SIZE, 60000);
+			Envelope updated = node1.createUnencryptedEnvelope(envelope, "Hello again!");
+			node1.storeEnvelope(updated, smith);
+			hits = node1.getMetrics().getCounters().getOrDefault("storage.envelopes.cache.hits", 0L);
+			Assert.assertSame(updated, node1.fetchEnvelope("test"));
+			Assert.assertEquals(hits + 1, (long) node1.getMetrics().getCounters().get("storage.envelopes.cache.hits"));
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
+	@Test
+	public void testReplicaSelection() {
+		try {
+			PastryNodeImpl node1 = nodes.get(0);
+			PastryNodeImpl node2 = nodes.get(1);
+			UserAgent smith = MockAgentFactory.getAdam();
+			smith.unlockPrivateKey("adamspass");
+			Envelope updated = node1.createUnencryptedEnvelope("test", "envelope version number 1");
+			node1.storeEnvelope(updated, smith);
+			for (int c = 2; c <= 10; c++) {
+				updated = node1.createUnencryptedEnvelope(updated, "envelope version number " + c);
+				node1.storeEnvelope(updated, smith);
+			}
+			long fetched = node2.getMetrics().histogram("storage.fetch.latency").getCount();
+			for (int c = 0; c < 10; c++) {
+				Assert.assertEquals("envelope version number 10", node2.fetchEnvelope("test").getContent());
+			}
+			// each fetch of a head and a metadata artifact is timed to rank the replicas
+			Assert.assertTrue(node2.getMetrics().histogram("storage.fetch.latency").getCount() >= fetched + 20);
+			Assert.assertEquals(0, (long) node2.getMetrics().getCounters().getOrDefault("storage.fetch.failovers", 0L));
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.toString());
+		}
+	}
+
 	@Test
 	public void testFetchNonExisting() {
 		try {
@@ -0,0 +1,178 @@
+package i5.las2peer.persistency.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import i5.las2peer.api.exceptions.ArtifactNotFoundException;
+import i5.las2peer.api.exceptions.StorageException;
+import i5.las2peer.persistency.Envelope;
+import i5.las2peer.persistency.EnvelopeFetchResult;
+import i5.las2peer.persistency.LocalStorage;
+
+public class EnvelopeBatchFetcherTest {
+
+	private static final long LATENCY = 20; // ms
+
+	private ScheduledExecutorService scheduler;
+	private HashMap<String, Envelope> stored;
+	private AtomicInteger running;
+	private AtomicInteger maxRunning;
+
+	@Before
+	public void startScheduler() throws Exception {
+		scheduler = Executors.newScheduledThreadPool(4);
+		stored = new HashMap<>();
+		LocalStorage storage = new LocalStorage();
+		for (int i = 0; i < 64; i++) {
+			stored.put("envelope-" + i, storage.createUnencryptedEnvelope("envelope-" + i, "content " + i));
+		}
+		running = new AtomicInteger();
+		maxRunning = new AtomicInteger();
+	}
+
+	@After
+	public void stopScheduler() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * simulates a network fetch that answers after a fixed latency
+	 */
+	private CompletableFuture<Envelope> fetch(String identifier) {
+		CompletableFuture<Envelope> result = new CompletableFuture<>();
+		maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+		scheduler.schedule(() -> {
+			running.decrementAndGet();
+			Envelope envelope = stored.get(identifier);
+			if (envelope != null) {
+				result.complete(envelope);
+			} else {
+				result.completeExceptionally(new ArtifactNotFoundException("'" + identifier + "' not found"));
+			}
+		}, LATENCY, TimeUnit.MILLISECONDS);
+		return result;
+	}
+
+	@Test
+	public void testResults() throws Exception {
+		List<String> identifiers = Arrays.asList("envelope-3", "missing", "envelope-1", "envelope-3");
+		Map<String, EnvelopeFetchResult> results = EnvelopeBatchFetcher
+				.await(EnvelopeBatchFetcher.start(this::fetch, identifiers, 2), 5000);
+
+		assertEquals(Arrays.asList("envelope-3", "missing", "envelope-1"), new ArrayList<>(results.keySet()));
+		assertTrue(results.get("envelope-3").isSuccess());
+		assertSame(stored.get("envelope-3"), results.get("envelope-3").getEnvelope());
+		assertSame(stored.get("envelope-1"), results.get("envelope-1").getEnvelope());
+		assertFalse(results.get("missing").isSuccess());
+		assertTrue(results.get("missing").getException() instanceof ArtifactNotFoundException);
+	}
+
+	@Test
+	public void testParallelism() throws Exception {
+		Map<String, EnvelopeFetchResult> results = EnvelopeBatchFetcher
+				.await(EnvelopeBatchFetcher.start(this::fetch, stored.keySet(), 5), 5000);
+
+		assertEquals(stored.size(), results.size());
+		for (EnvelopeFetchResult result : results.values()) {
+			assertSame(stored.get(result.getIdentifier()), result.getEnvelope());
+		}
+		assertEquals(5, maxRunning.get());
+	}
+
+	@Test
+	public void testImmediateAnswers() throws Exception {
+		// answers from a cache complete right away and must not grow the stack per envelope
+		ArrayList<String> identifiers = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			identifiers.add("cached-" + i);
+		}
+		Envelope envelope = stored.get("envelope-0");
+		Function<String, CompletableFuture<Envelope>> cached = identifier -> CompletableFuture
+				.completedFuture(envelope);
+		Map<String, CompletableFuture<Envelope>> fetches = EnvelopeBatchFetcher.start(cached, identifiers, 1);
+		for (CompletableFuture<Envelope> fetch : fetches.values()) {
+			assertSame(envelope, fetch.getNow(null));
+		}
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ArrayList<CompletableFuture<Envelope>> started = new ArrayList<>();
+		Function<String, CompletableFuture<Envelope>> never = identifier -> {
+			CompletableFuture<Envelope> fetching = new CompletableFuture<>();
+			started.add(fetching);
+			return fetching;
+		};
+		Map<String, CompletableFuture<Envelope>> fetches = EnvelopeBatchFetcher.start(never,
+				Arrays.asList("first", "second", "third"), 1);
+		Map<String, EnvelopeFetchResult> results = EnvelopeBatchFetcher.await(fetches, 50);
+
+		for (EnvelopeFetchResult result : results.values()) {
+			assertTrue(result.getException() instanceof StorageException);
+		}
+		// the running fetch was canceled and the waiting ones were never started
+		assertEquals(1, started.size());
+		assertTrue(started.get(0).isCancelled());
+		assertTrue(fetches.get("third").isCancelled());
+	}
+
+	@Test
+	public void testCanceledFetchFreesSlot() throws Exception {
+		CompletableFuture<Envelope> hanging = new CompletableFuture<>();
+		Function<String, CompletableFuture<Envelope>> fetchHanging = identifier -> identifier.equals("hanging")
+				? hanging : fetch(identifier);
+		Map<String, CompletableFuture<Envelope>> fetches = EnvelopeBatchFetcher.start(fetchHanging,
+				Arrays.asList("hanging", "envelope-1", "envelope-2"), 1);
+		fetches.get("hanging").cancel(false);
+		Map<String, EnvelopeFetchResult> results = EnvelopeBatchFetcher.await(fetches, 5000);
+
+		assertTrue(hanging.isCancelled());
+		assertFalse(results.get("hanging").isSuccess());
+		assertSame(stored.get("envelope-1"), results.get("envelope-1").getEnvelope());
+		assertSame(stored.get("envelope-2"), results.get("envelope-2").getEnvelope());
+	}
+
+	/**
+	 * compares fetching envelopes one after another with overlapping round trips, run manually
+	 */
+	@Ignore("benchmark")
+	@Test
+	public void benchmarkSequentialVsParallel() throws Exception {
+		long start = System.nanoTime();
+		for (String identifier : stored.keySet()) {
+			assertSame(stored.get(identifier), fetch(identifier).get());
+		}
+		long sequential = System.nanoTime() - start;
+		start = System.nanoTime();
+		Map<String, EnvelopeFetchResult> results = EnvelopeBatchFetcher
+				.await(EnvelopeBatchFetcher.start(this::fetch, stored.keySet(), 16), 5000);
+		long parallel = System.nanoTime() - start;
+
+		for (EnvelopeFetchResult result : results.values()) {
+			assertTrue(result.isSuccess());
+		}
+		// 64 round trips in 4 rounds of 16 overlapping ones instead of one after another
+		assertTrue("sequential " + TimeUnit.NANOSECONDS.toMillis(sequential) + " ms, parallel "
+				+ TimeUnit.NANOSECONDS.toMillis(parallel) + " ms", parallel * 4 < sequential);
+	}
+
+}
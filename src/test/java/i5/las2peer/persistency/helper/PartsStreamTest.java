@@ -0,0 +1,209 @@
+package i5.las2peer.persistency.helper;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import i5.las2peer.persistency.ChunkArtifact;
+
+public class PartsStreamTest {
+
+	@Test
+	public void testSplit() throws IOException {
+		List<byte[]> parts = new ArrayList<>();
+		PartsOutputStream out = new PartsOutputStream(4, (index, content) -> {
+			assertEquals(parts.size(), index);
+			parts.add(content);
+		});
+		out.write(new byte[] { 1, 2, 3 });
+		assertEquals(0, out.getParts());
+		out.write(new byte[] { 4, 5, 6, 7, 8, 9 });
+		assertEquals(2, out.getParts());
+		out.write(10);
+		out.close();
+		assertEquals(3, out.getParts());
+		assertArrayEquals(new byte[] { 1, 2, 3, 4 }, parts.get(0));
+		assertArrayEquals(new byte[] { 5, 6, 7, 8 }, parts.get(1));
+		assertArrayEquals(new byte[] { 9, 10 }, parts.get(2));
+
+		// an empty stream still results in one part
+		PartsOutputStream empty = new PartsOutputStream(4, (index, content) -> assertEquals(0, content.length));
+		empty.close();
+		assertEquals(1, empty.getParts());
+	}
+
+	@Test
+	public void testContentDefinedParts() throws IOException {
+		byte[] data = new byte[4 * 1000 * 1000];
+		new Random(7).nextBytes(data);
+		// insert some bytes near the start, this shifts all following data
+		byte[] edited = new byte[data.length + 10];
+		System.arraycopy(data, 0, edited, 0, 400 * 1000);
+		System.arraycopy(data, 400 * 1000, edited, 400 * 1000 + 10, data.length - 400 * 1000);
+
+		Set<String> original = new HashSet<>();
+		split(data, 64 * 1024, original);
+		long reused = split(edited, 64 * 1024, original);
+		long fixedReused = splitFixed(edited, 64 * 1024, splitFixedHashes(data, 64 * 1024));
+		String measured = "content defined parts reuse " + reused + " bytes, fixed size parts reuse " + fixedReused
+				+ " bytes of " + edited.length + " bytes";
+		assertTrue(measured, reused > edited.length * 9 / 10);
+		assertTrue(measured, fixedReused < edited.length / 5);
+
+		// parts stay within their bounds
+		List<byte[]> parts = new ArrayList<>();
+		PartsOutputStream out = new PartsOutputStream(1000, 1000, 5000, (index, content) -> parts.add(content));
+		out.write(data);
+		out.close();
+		for (int i = 0; i < parts.size() - 1; i++) {
+			assertTrue(parts.get(i).length >= 1000 && parts.get(i).length <= 5000);
+		}
+	}
+
+	private static long split(byte[] data, int chunkSize, Set<String> known) throws IOException {
+		long[] reused = new long[1];
+		PartsOutputStream out = new PartsOutputStream(chunkSize / 2, chunkSize / 2, chunkSize * 8,
+				(index, content) -> {
+					if (!known.add(ChunkArtifact.hash(content))) {
+						reused[0] += content.length;
+					}
+				});
+		out.write(data);
+		out.close();
+		return reused[0];
+	}
+
+	private static Set<String> splitFixedHashes(byte[] data, int partSize) throws IOException {
+		Set<String> hashes = new HashSet<>();
+		splitFixed(data, partSize, hashes);
+		return hashes;
+	}
+
+	private static long splitFixed(byte[] data, int partSize, Set<String> known) throws IOException {
+		long[] reused = new long[1];
+		PartsOutputStream out = new PartsOutputStream(partSize, (index, content) -> {
+			if (!known.add(ChunkArtifact.hash(content))) {
+				reused[0] += content.length;
+			}
+		});
+		out.write(data);
+		out.close();
+		return reused[0];
+	}
+
+	@Test
+	public void testWindow() throws IOException {
+		List<Integer> requested = new ArrayList<>();
+		PartsInputStream in = new PartsInputStream(4, 2, 1000);
+		in.start(requested::add);
+		assertEquals(2, requested.size());
+
+		// parts arrive out of order
+		in.offer(1, new byte[] { 3, 4 });
+		in.offer(0, new byte[] { 1, 2 });
+		// not requested yet, ignored
+		in.offer(3, new byte[] { 99 });
+		assertEquals(1, in.read());
+		assertEquals(3, requested.size());
+		assertEquals(2, in.read());
+		assertEquals(3, in.read());
+		assertEquals(4, requested.size());
+		in.offer(3, new byte[] { 7 });
+		in.offer(2, new byte[] { 5, 6 });
+		byte[] rest = new byte[10];
+		assertEquals(1, in.read(rest, 0, rest.length));
+		assertEquals(4, rest[0]);
+		assertEquals(2, in.read(rest, 0, rest.length));
+		assertEquals(1, in.read(rest, 0, rest.length));
+		assertEquals(7, rest[0]);
+		assertEquals(-1, in.read());
+		assertEquals(4, requested.size());
+	}
+
+	@Test
+	public void testFailure() {
+		PartsInputStream in = new PartsInputStream(2, 2, 1000);
+		in.start(index -> {
+		});
+		in.offer(0, new byte[] { 1 });
+		in.fail(new IllegalStateException("test"));
+		try {
+			assertEquals(1, in.read());
+			in.read();
+			fail("Exception expected");
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void testTimeout() {
+		PartsInputStream in = new PartsInputStream(1, 1, 50);
+		in.start(index -> {
+		});
+		long start = System.currentTimeMillis();
+		try {
+			in.read();
+			fail("Exception expected");
+		} catch (IOException e) {
+			assertTrue(System.currentTimeMillis() - start >= 50);
+		}
+	}
+
+	@Test
+	public void testWhenReceived() throws IOException {
+		PartsInputStream in = new PartsInputStream(2, 2, 1000);
+		List<String> actions = new ArrayList<>();
+		in.whenReceived(() -> actions.add("received"));
+		in.start(index -> {
+		});
+		in.offer(1, new byte[] { 2 });
+		assertTrue(actions.isEmpty());
+		in.offer(0, new byte[] { 1 });
+		assertEquals(1, actions.size());
+		// all parts are there, reading does not block
+		assertEquals(1, in.read());
+		assertEquals(2, in.read());
+		assertEquals(-1, in.read());
+		// runs only once
+		in.fail(new IOException("late failure"));
+		assertEquals(1, actions.size());
+
+		PartsInputStream failing = new PartsInputStream(2, 2, 1000);
+		failing.whenReceived(() -> actions.add("failed"));
+		failing.fail(new IOException("lost part"));
+		assertEquals("failed", actions.get(1));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		byte[] data = new byte[10000];
+		new Random(42).nextBytes(data);
+		List<byte[]> parts = new ArrayList<>();
+		PartsOutputStream out = new PartsOutputStream(1000, (index, content) -> parts.add(content));
+		try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeObject(data);
+		}
+		assertTrue(parts.size() > 10);
+
+		// deliver the parts asynchronously, they may arrive in any order
+		PartsInputStream in = new PartsInputStream(parts.size(), 3, 1000);
+		in.start(index -> new Thread(() -> in.offer(index, parts.get(index))).start());
+		try (ObjectInputStream ois = new ObjectInputStream(in)) {
+			assertArrayEquals(data, (byte[]) ois.readObject());
+		}
+	}
+
+}
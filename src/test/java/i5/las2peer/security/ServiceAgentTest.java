@@ -2,6 +2,8 @@ package i5.las2peer.security;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -9,6 +11,7 @@ import java.io.IOException;
 
 import org.junit.Test;
 
+import i5.las2peer.communication.ListMethodsContent;
 import i5.las2peer.communication.Message;
 import i5.las2peer.communication.ServiceDiscoveryContent;
 import i5.las2peer.p2p.AgentAlreadyRegisteredException;
@@ -99,20 +102,24 @@ public class ServiceAgentTest {
 
 		Message[] answers = node.sendMessageAndCollectAnswers(request, 4);
 
-		assertEquals(answers.length, 2);
+		// the node answers once for both matching versions
+		assertEquals(answers.length, 1);
 
 		boolean found10 = false, found11 = false;
-		for (Message m : answers) {
-			m.open(userAgent, node);
-			ServiceDiscoveryContent c = (ServiceDiscoveryContent) m.getContent();
-			if (c.getService().getVersion().toString().equals("1.0")) {
+		answers[0].open(userAgent, node);
+		ServiceDiscoveryContent aggregated = (ServiceDiscoveryContent) answers[0].getContent();
+		assertEquals(2, aggregated.getInstances().size());
+		assertTrue(aggregated.getInstances().containsKey(answers[0].getSenderId()));
+		for (ServiceNameVersion service : aggregated.getInstances().values()) {
+			if (service.getVersion().toString().equals("1.0")) {
 				found10 = true;
-			} else if (c.getService().getVersion().toString().equals("1.1")) {
+			} else if (service.getVersion().toString().equals("1.1")) {
 				found11 = true;
 			}
 		}
 		assertTrue(found10);
 		assertTrue(found11);
+		assertNotNull(aggregated.getLoad());
 
 		// invoke (exact)
 
@@ -127,6 +134,23 @@ public class ServiceAgentTest {
 		answers[0].open(userAgent, node);
 		ServiceDiscoveryContent c = (ServiceDiscoveryContent) answers[0].getContent();
 		assertTrue(c.getService().getVersion().toString().equals("1.1"));
+		assertNull(c.getMethods(answers[0].getSenderId()));
+
+		// invoke (with methods)
+
+		request = new Message(userAgent, ServiceAgent.serviceNameToTopicId("i5.las2peer.api.TestService"),
+				new ServiceDiscoveryContent(ServiceNameVersion.fromString("i5.las2peer.api.TestService@1.1"), true,
+						true), 30000);
+
+		answers = node.sendMessageAndCollectAnswers(request, 4);
+
+		assertEquals(answers.length, 1);
+
+		answers[0].open(userAgent, node);
+		c = (ServiceDiscoveryContent) answers[0].getContent();
+		ListMethodsContent methods = c.getMethods(answers[0].getSenderId());
+		assertNotNull(methods);
+		assertEquals(testServiceAgent1.getMethodList().toXmlString(), methods.toXmlString());
 
 	}
 }